@@ -0,0 +1,135 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import com.diakonovtomer.projektObjektorientierung.model.map.PassabilityMask;
+
+/**
+ * Bidirectional A*: one search grows from the start, one from the goal, and they
+ * stop once a meeting point proves the shortest connection.
+ * <p>
+ * For a long path a single A* frontier balloons around the start; two frontiers
+ * of roughly half the radius usually cover far fewer cells. Each step expands the
+ * direction with the smaller frontier. Every relaxation that touches a cell already
+ * reached by the other direction yields a candidate path of cost {@code μ}; a
+ * direction stops the search as soon as the smallest f it pops is not below
+ * {@code μ}, because no path through its unexpanded cells can be cheaper (the
+ * heuristics are admissible). Cells already settled by the other direction are not
+ * expanded further, and cells whose f cannot beat {@code μ} are not queued.
+ * </p>
+ *
+ * <p>
+ * Steps are symmetric, so the backward search uses the same neighbour rules and
+ * costs as {@link AStar}; {@link DirMode#JUMP_POINT} falls back to {@link DirMode#OCTILE}.
+ * Both directions run on the calling thread.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class BidirectionalAStar {
+
+    /** Prevent instantiation of static utility class */
+    private BidirectionalAStar() {}
+
+    /**
+     * Performs a bidirectional search.
+     *
+     * @param grid     passability of the map
+     * @param forward  search context of the start side; receives the path
+     * @param backward search context of the goal side
+     * @param startY   starting row (Y)
+     * @param startX   starting column (X)
+     * @param goalY    goal row (Y)
+     * @param goalX    goal column (X)
+     * @param mode     movement mode
+     * @param open     open list implementation
+     * @return the number of cells in the path (available through
+     *         {@code forward.getPath()}), or 0 if no path was found
+     */
+    static int findPath(PassabilityMask grid, PathContext forward, PathContext backward,
+                        int startY, int startX, int goalY, int goalX, DirMode mode, OpenListType open) {
+        final int rows = grid.getHeight(), cols = grid.getWidth();
+        if (mode.jumpPoints) mode = DirMode.OCTILE;
+        forward.begin(open);
+        backward.begin(open);
+        if (!AStar.isInside(startY, startX, rows, cols) || !AStar.isInside(goalY, goalX, rows, cols)) return 0;
+        if (!grid.isPassable(startY, startX) || !grid.isPassable(goalY, goalX)) return 0;
+
+        final int start = startY * cols + startX;
+        final int goal = goalY * cols + goalX;
+        forward.relax(start, 0, PathContext.NO_PARENT);
+        forward.push(start, AStar.heuristic(startY, startX, goalY, goalX, mode));
+        backward.relax(goal, 0, PathContext.NO_PARENT);
+        backward.push(goal, AStar.heuristic(goalY, goalX, startY, startX, mode));
+
+        // Cost and meeting cell of the best connection found so far
+        int[] best = { start == goal ? 0 : PathContext.INF, start == goal ? start : -1 };
+        while (!forward.isOpenEmpty() && !backward.isOpenEmpty()) {
+            // Grow the smaller frontier: keeps the two balls balanced around dead ends
+            boolean done = forward.getOpenCount() <= backward.getOpenCount()
+                    ? expand(grid, forward, backward, goalY, goalX, mode, best)
+                    : expand(grid, backward, forward, startY, startX, mode, best);
+            if (done || forward.isCancelled()) break;
+        }
+        if (best[1] < 0 || forward.isCancelled()) return 0;
+
+        // start..meet from the forward tree, then meet..goal from the backward tree
+        int length = forward.rebuildPath(best[1]);
+        int back = 0;
+        for (int c = backward.parent(best[1]); c != PathContext.NO_PARENT; c = backward.parent(c)) back++;
+        int[] path = forward.reservePath(length + back);
+        for (int c = backward.parent(best[1]); c != PathContext.NO_PARENT; c = backward.parent(c)) path[length++] = c;
+        forward.setPathLength(length);
+        return length;
+    }
+
+    /**
+     * Expands the cheapest open cell of one direction.
+     *
+     * @param self   context of the expanding direction
+     * @param other  context of the opposite direction
+     * @param toY    row the expanding direction is heading to
+     * @param toX    column the expanding direction is heading to
+     * @param best   {@code [μ, meeting cell]}, updated in place
+     * @return true if the search can stop
+     */
+    private static boolean expand(PassabilityMask grid, PathContext self, PathContext other,
+                                  int toY, int toX, DirMode mode, int[] best) {
+        final int cols = grid.getWidth();
+        int cur = self.pop();
+        if (self.isClosed(cur)) return false; // stale duplicate (binary heap only)
+        int r = cur / cols, c = cur - r * cols;
+        int curG = self.g(cur);
+        if (curG + AStar.heuristic(r, c, toY, toX, mode) >= best[0]) return true;
+        self.close(cur);
+        if (other.isClosed(cur)) {
+            // Settled from both sides: every path through its neighbours costs at least this
+            if (curG + other.g(cur) < best[0]) {
+                best[0] = curG + other.g(cur);
+                best[1] = cur;
+            }
+            return false;
+        }
+
+        final int[] dr = mode.dr, dc = mode.dc;
+        for (int i = 0; i < dr.length; i++) {
+            int nr = r + dr[i];
+            int nc = c + dc[i];
+            if (!grid.isPassable(nr, nc)) continue; // off-map cells read the blocked border
+            boolean diagonal = dr[i] != 0 && dc[i] != 0;
+            if (diagonal && (!grid.isPassable(r, nc) || !grid.isPassable(nr, c))) continue;
+
+            int next = nr * cols + nc;
+            int tentativeG = curG + (diagonal ? 14 : 10);
+            if (tentativeG >= self.g(next)) continue;
+            self.relax(next, tentativeG, cur);
+
+            int otherG = other.g(next);
+            if (otherG != PathContext.INF && tentativeG + otherG < best[0]) {
+                best[0] = tentativeG + otherG;
+                best[1] = next;
+            }
+            int f = tentativeG + AStar.heuristic(nr, nc, toY, toX, mode);
+            if (f < best[0]) self.push(next, f); // otherwise it can never improve μ
+        }
+        return false;
+    }
+}
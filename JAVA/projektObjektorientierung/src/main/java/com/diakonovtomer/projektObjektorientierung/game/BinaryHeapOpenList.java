@@ -0,0 +1,61 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of {@code (f << 32) | cell} entries.
+ * <p>
+ * Has no decrease-key: a better f simply pushes another entry, and the search
+ * skips the stale one when it is polled after the cell was closed.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class BinaryHeapOpenList implements OpenList {
+
+    /** Initial capacity of the heap; grows by doubling and is kept afterwards. */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** Heap entries, packed as {@code (f << 32) | cell}. */
+    private long[] heap = new long[INITIAL_CAPACITY];
+
+    /** Number of entries in {@link #heap}. */
+    private int size = 0;
+
+    @Override
+    public void clear() { size = 0; }
+
+    @Override
+    public void insertOrDecrease(int cell, int f) {
+        if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+        long entry = ((long) f << 32) | cell;
+        int i = size++;
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (heap[up] <= entry) break;
+            heap[i] = heap[up];
+            i = up;
+        }
+        heap[i] = entry;
+    }
+
+    @Override
+    public int pop() {
+        long top = heap[0];
+        long last = heap[--size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (last <= heap[child]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return (int) top;
+    }
+
+    @Override
+    public boolean isEmpty() { return size == 0; }
+}
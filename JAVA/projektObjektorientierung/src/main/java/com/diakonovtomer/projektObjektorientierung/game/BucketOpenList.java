@@ -0,0 +1,156 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import java.util.Arrays;
+
+/**
+ * Circular bucket queue (one-level radix heap) keyed on integer f-scores.
+ * <p>
+ * Grid costs are small integers (10 and 14 per step) and, with a consistent heuristic,
+ * the f-score of a new entry never lies more than one step cost plus one heuristic
+ * change above the current minimum. All queued keys therefore fit in a small window,
+ * mapped onto a power-of-two ring of buckets. Each bucket is an intrusive doubly-linked
+ * list over per-cell arrays, so insert, decrease-key and pop are O(1) amortized.
+ * </p>
+ *
+ * <p>
+ * If a key falls outside the window (e.g. long jumps of Jump Point Search),
+ * the ring grows and the queued cells are redistributed.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class BucketOpenList implements OpenList {
+
+    /** Initial ring size; covers the f-spread of plain 8-directional A*. */
+    private static final int INITIAL_BUCKETS = 64;
+
+    /** Marker for "no cell". */
+    private static final int NIL = -1;
+
+    /** First cell of every bucket, {@link #NIL} if empty. */
+    private int[] head = new int[INITIAL_BUCKETS];
+
+    /** Bucket index mask, {@code head.length - 1}. */
+    private int mask = INITIAL_BUCKETS - 1;
+
+    /** Next cell in the same bucket. */
+    private final int[] next;
+
+    /** Previous cell in the same bucket. */
+    private final int[] prev;
+
+    /** Current key of every queued cell. */
+    private final int[] key;
+
+    /** Generation stamp marking queued cells. */
+    private final int[] queued;
+
+    /** Current generation; bumped by {@link #clear()}. */
+    private int generation = 1;
+
+    /** Lowest key that may still be queued. */
+    private int cursor;
+
+    /** Highest key inserted since the last clear. */
+    private int maxKey;
+
+    /** Number of queued cells. */
+    private int size = 0;
+
+    /**
+     * Creates a queue able to hold every cell of the grid.
+     *
+     * @param cellCount number of grid cells
+     */
+    BucketOpenList(int cellCount) {
+        this.next = new int[cellCount];
+        this.prev = new int[cellCount];
+        this.key = new int[cellCount];
+        this.queued = new int[cellCount];
+        Arrays.fill(head, NIL);
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) Arrays.fill(head, NIL);
+        size = 0;
+        generation++;
+        if (generation == 0) {
+            Arrays.fill(queued, 0);
+            generation = 1;
+        }
+    }
+
+    @Override
+    public void insertOrDecrease(int cell, int f) {
+        if (queued[cell] == generation) {
+            if (key[cell] <= f) return;
+            unlink(cell);
+        } else if (size == 0) {
+            cursor = f;
+            maxKey = f;
+        }
+        if (f < cursor) cursor = f;
+        if (f > maxKey) maxKey = f;
+        if (maxKey - cursor > mask) grow(maxKey - cursor);
+        key[cell] = f;
+        link(cell);
+    }
+
+    @Override
+    public int pop() {
+        while (head[cursor & mask] == NIL) cursor++;
+        int cell = head[cursor & mask];
+        unlink(cell);
+        return cell;
+    }
+
+    @Override
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * Pushes a cell at the front of the bucket of its key.
+     */
+    private void link(int cell) {
+        int b = key[cell] & mask;
+        int first = head[b];
+        next[cell] = first;
+        prev[cell] = NIL;
+        if (first != NIL) prev[first] = cell;
+        head[b] = cell;
+        queued[cell] = generation;
+        size++;
+    }
+
+    /**
+     * Removes a cell from its bucket.
+     */
+    private void unlink(int cell) {
+        int n = next[cell], p = prev[cell];
+        if (p != NIL) next[p] = n; else head[key[cell] & mask] = n;
+        if (n != NIL) prev[n] = p;
+        queued[cell] = 0;
+        size--;
+    }
+
+    /**
+     * Enlarges the ring so that {@code span + 1} consecutive keys fit,
+     * and redistributes the queued cells.
+     */
+    private void grow(int span) {
+        int[] oldHead = head;
+        int oldMask = mask;
+        int buckets = Integer.highestOneBit(span) << 1;
+        head = new int[buckets];
+        mask = buckets - 1;
+        Arrays.fill(head, NIL);
+        size = 0;
+        for (int b = 0; b <= oldMask; b++) {
+            for (int c = oldHead[b]; c != NIL; ) {
+                int n = next[c];
+                link(c);
+                c = n;
+            }
+        }
+    }
+}
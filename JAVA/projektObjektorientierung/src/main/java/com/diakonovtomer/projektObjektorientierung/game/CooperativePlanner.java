@@ -0,0 +1,695 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import com.diakonovtomer.projektObjektorientierung.model.map.PassabilityMask;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Windowed cooperative A* (WHCA*) for many agents sharing the map.
+ * <p>
+ * Agents are planned one after another in priority order. Every plan covers the next
+ * {@code window} time steps and is written into a space-time reservation table, a
+ * hash of {@code (time, cell)} to the agent standing there. Later searches run in
+ * space-time (a step to a neighbour or a wait, one time step each) and treat existing
+ * reservations as obstacles, including head-on swaps, so planned moves never
+ * collide. The last tile of every plan stays reserved after the window ("parked")
+ * until the agent plans again, so an agent resting on its goal is walked around
+ * rather than through. Reservations are never taken away: an agent displaced at
+ * short notice could be boxed in, so priority decides who picks first, not who wins.
+ * </p>
+ *
+ * <p>
+ * The heuristic is the true walking distance to the goal ignoring other agents,
+ * computed by a reverse A* from the goal toward the agent that is resumed only as
+ * far as the queried cells need (reverse resumable A*). Distance fields are cached
+ * per goal, so a crowd heading to the same place shares one field; agents with more
+ * distinct goals than cached fields pay one reverse search per plan.
+ * </p>
+ *
+ * <p>
+ * Re-planning is partial: a batch only plans agents that are new, changed their
+ * goal or have used up half of their window. Steps follow the rules of
+ * {@link AStar} in {@link DirMode#OCTILE}; waiting costs a straight step except on
+ * the goal, where it is free.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class CooperativePlanner {
+
+    private static final int INF = PathContext.INF;
+    private static final int STRAIGHT = 10;
+    private static final int DIAGONAL = 14;
+
+    /** The 8 neighbour moves followed by the wait move. */
+    private static final int[] DR = { -1, 1, 0, 0, -1, -1, 1, 1, 0 };
+    private static final int[] DC = { 0, 0, -1, 1, -1, 1, -1, 1, 0 };
+    private static final int WAIT = 8;
+
+    /** Grid size in cells. */
+    private final int width, height;
+
+    /** Number of time steps every plan covers. */
+    private final int window;
+
+    /** Number of goal distance fields kept (12 bytes per tile each). */
+    private final int maxFields;
+
+    /** Expansion limit per agent search; the deepest node found so far is used beyond it. */
+    private final int maxExpansions;
+
+    /** Current time step. */
+    private int now = 0;
+
+    // Agents, indexed by id
+    private int agentCount = 0;
+    private int[] position = new int[16];
+    private int[] goal = new int[16];
+    private int[] priority = new int[16];
+    private int[] planStart = new int[16];
+    private int[][] plans = new int[16][];
+    private boolean[] active = new boolean[16];
+    private boolean[] dirty = new boolean[16];
+    private boolean[] queued = new boolean[16];
+
+    /** {@code (time, cell)} to the agent holding it. */
+    private final LongIntMap reservations = new LongIntMap(1024);
+
+    /** Cell to the agent parked on it after the end of its plan. */
+    private final LongIntMap parked = new LongIntMap(256);
+
+    /** Scratch of {@link #advance()}: next tile per agent, and tile to agent now / next step. */
+    private int[] next = new int[16];
+    private final LongIntMap standing = new LongIntMap(256);
+    private final LongIntMap claims = new LongIntMap(256);
+
+    /** Goal distance fields, least recently used first. */
+    private final LinkedHashMap<Integer, DistanceField> fields = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Map version the distance fields and plans were computed for. */
+    private int version = -1;
+
+    // Space-time search scratch: nodes are (cell, time) pairs
+    private final LongIntMap nodeIndex = new LongIntMap(1024);
+    private int nodeCount = 0;
+    private int[] nodeCell = new int[256];
+    private int[] nodeTime = new int[256];
+    private int[] nodeG = new int[256];
+    private int[] nodeParent = new int[256];
+    private boolean[] nodeClosed = new boolean[256];
+    private long[] heap = new long[256];
+    private int heapSize = 0;
+
+    /** Number of agents planned by the last batch (for profiling). */
+    private int planned;
+
+    /**
+     * Creates a planner for a grid of the given size.
+     *
+     * @param width  grid width in cells
+     * @param height grid height in cells
+     * @param window time steps covered by every plan, at least 1
+     * @param fields number of goal distance fields to keep, at least 1
+     */
+    CooperativePlanner(int width, int height, int window, int fields) {
+        this.width = width;
+        this.height = height;
+        this.window = Math.max(1, window);
+        this.maxFields = Math.max(1, fields);
+        this.maxExpansions = this.window * 32;
+    }
+
+    // === GETTERS ===
+
+    int getTime() { return now; }
+
+    int getWindow() { return window; }
+
+    int getPlanned() { return planned; }
+
+    /**
+     * @param agent agent id
+     * @return the packed cell the agent currently stands on
+     */
+    int getPosition(int agent) { return position[agent]; }
+
+    /**
+     * Returns the cell an agent is planned to stand on a number of steps from now.
+     *
+     * @param agent agent id
+     * @param ahead steps into the future, 0 for the current cell
+     * @return the packed cell; the last planned cell if the plan is shorter
+     */
+    int getPlannedCell(int agent, int ahead) {
+        if (planStart[agent] < 0) return position[agent];
+        int step = Math.min(now - planStart[agent] + ahead, window);
+        return plans[agent][step];
+    }
+
+    // === AGENTS ===
+
+    /**
+     * Registers an agent; it is planned by the next {@link #plan(PassabilityMask, int)}.
+     *
+     * @param cell     packed start cell
+     * @param goalCell packed goal cell
+     * @param rank     priority, higher values plan first within a batch
+     * @return the agent id
+     */
+    int addAgent(int cell, int goalCell, int rank) {
+        int id = agentCount++;
+        if (id == position.length) grow(id * 2);
+        position[id] = cell;
+        goal[id] = goalCell;
+        priority[id] = rank;
+        planStart[id] = -1;
+        plans[id] = new int[window + 1];
+        active[id] = true;
+        dirty[id] = true;
+        return id;
+    }
+
+    /**
+     * Changes the goal of an agent; it is re-planned by the next batch.
+     */
+    void setGoal(int agent, int goalCell) {
+        if (goal[agent] == goalCell) return;
+        goal[agent] = goalCell;
+        dirty[agent] = true;
+    }
+
+    /**
+     * Removes an agent and frees its reservations.
+     */
+    void removeAgent(int agent) {
+        release(agent);
+        long k = key(now, position[agent]);
+        if (reservations.get(k) == agent) reservations.remove(k);
+        active[agent] = false;
+    }
+
+    private void grow(int capacity) {
+        position = Arrays.copyOf(position, capacity);
+        goal = Arrays.copyOf(goal, capacity);
+        priority = Arrays.copyOf(priority, capacity);
+        planStart = Arrays.copyOf(planStart, capacity);
+        plans = Arrays.copyOf(plans, capacity);
+        active = Arrays.copyOf(active, capacity);
+        dirty = Arrays.copyOf(dirty, capacity);
+        queued = Arrays.copyOf(queued, capacity);
+    }
+
+    // === PLANNING ===
+
+    /**
+     * Plans every agent that needs it: new agents, changed goals and agents past
+     * half of their window. A map change re-plans everybody.
+     *
+     * @param grid       passability of the map
+     * @param mapVersion current map version
+     * @return the number of agents planned
+     */
+    int plan(PassabilityMask grid, int mapVersion) {
+        if (mapVersion != version) {
+            fields.clear();
+            version = mapVersion;
+            Arrays.fill(dirty, 0, agentCount, true);
+        }
+        PriorityQueue<Integer> pending = new PriorityQueue<>((a, b) -> a.intValue() == b.intValue() ? 0 : outranks(a, b) ? -1 : 1);
+        for (int a = 0; a < agentCount; a++) {
+            if (!active[a]) continue;
+            if (dirty[a] || planStart[a] < 0 || now - planStart[a] >= (window + 1) / 2) {
+                release(a);
+                // Keeps others from stepping onto it before it has a new plan
+                reservations.put(key(now, position[a]), a);
+                queued[a] = true;
+                pending.add(a);
+            }
+        }
+        planned = pending.size();
+        while (!pending.isEmpty()) {
+            int a = pending.poll();
+            queued[a] = false;
+            planAgent(grid, a);
+        }
+        return planned;
+    }
+
+    /**
+     * Moves every agent one step along its plan and advances the clock.
+     * <p>
+     * Plans only collide when a boxed-in agent could not find a free continuation
+     * (head-on in a corridor, a crowd around one goal). As a guard, an agent whose
+     * next tile is claimed by another agent, or who would swap tiles with one, waits
+     * instead and is re-planned by the next batch; this can chain back along a queue.
+     * </p>
+     */
+    void advance() {
+        if (next.length < agentCount) next = new int[position.length];
+        standing.clear();
+        for (int a = 0; a < agentCount; a++) {
+            if (!active[a]) continue;
+            next[a] = position[a];
+            standing.put(position[a], a);
+            if (planStart[a] < 0) continue;
+            int step = now - planStart[a];
+            if (step < window) next[a] = plans[a][step + 1];
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            claims.clear();
+            for (int a = 0; a < agentCount; a++) {
+                if (!active[a]) continue;
+                int other = claims.get(next[a]);
+                if (other < 0) {
+                    claims.put(next[a], a);
+                    int b = next[a] != position[a] ? standing.get(next[a]) : -1;
+                    if (b < 0 || next[b] != position[a]) continue;
+                    other = b; // head-on swap
+                }
+                changed |= stay(a) | stay(other);
+            }
+        }
+        for (int a = 0; a < agentCount; a++) {
+            if (!active[a]) continue;
+            if (planStart[a] >= 0 && now - planStart[a] <= window) {
+                int step = now - planStart[a];
+                long k = key(now, plans[a][step]);
+                if (reservations.get(k) == a) reservations.remove(k);
+                if (step < window && next[a] != plans[a][step + 1]) dirty[a] = true;
+            }
+            position[a] = next[a];
+        }
+        now++;
+    }
+
+    /**
+     * Cancels the move of an agent in {@link #advance()}.
+     *
+     * @return true if the agent was moving
+     */
+    private boolean stay(int agent) {
+        if (next[agent] == position[agent]) return false;
+        next[agent] = position[agent];
+        return true;
+    }
+
+    /**
+     * Drops the remaining reservations of an agent.
+     */
+    private void release(int agent) {
+        if (planStart[agent] < 0) return;
+        int last = plans[agent][window];
+        if (parked.get(last) == agent) parked.remove(last);
+        for (int t = Math.max(now, planStart[agent]); t <= planStart[agent] + window; t++) {
+            long k = key(t, plans[agent][t - planStart[agent]]);
+            if (reservations.get(k) == agent) reservations.remove(k);
+        }
+        planStart[agent] = -1;
+    }
+
+    /**
+     * True if agent {@code a} plans before (and may not be blocked by) agent {@code b}.
+     */
+    private boolean outranks(int a, int b) {
+        return priority[a] != priority[b] ? priority[a] > priority[b] : a < b;
+    }
+
+    /**
+     * True if {@code (time, cell)} is reserved by another agent, or another agent
+     * parks on the cell from before that time on.
+     */
+    private boolean blocked(int agent, int time, int cell) {
+        int holder = reservations.get(key(time, cell));
+        if (holder >= 0 && holder != agent) return true;
+        int parker = parked.get(cell);
+        return parker >= 0 && parker != agent && time > planStart[parker] + window;
+    }
+
+    private long key(int time, int cell) { return (long) time * width * height + cell; }
+
+    /**
+     * Runs the space-time search for one agent and reserves its plan.
+     */
+    private void planAgent(PassabilityMask grid, int agent) {
+        final int start = position[agent], target = goal[agent];
+        DistanceField field = field(grid, target, start);
+        int end = search(grid, agent, start, target, field);
+
+        // Plan: the chain of the end node, then waiting on its cell
+        int[] plan = plans[agent];
+        int t = nodeTime[end];
+        for (int s = window; s > t; s--) plan[s] = nodeCell[end];
+        for (int n = end; n >= 0; n = nodeParent[n]) plan[nodeTime[n]] = nodeCell[n];
+        planStart[agent] = now;
+        dirty[agent] = false;
+
+        for (int s = 0; s <= window; s++) {
+            long k = key(now + s, plan[s]);
+            // Taken slots only occur while waiting after a cut-off search
+            if (reservations.get(k) < 0) reservations.put(k, agent);
+        }
+        if (parked.get(plan[window]) < 0) parked.put(plan[window], agent);
+    }
+
+    /**
+     * Space-time A* from {@code (start, 0)}.
+     *
+     * @return the node to follow: the goal once it can be held until the end of the
+     *         window, the first node at the window's end, or the deepest node found
+     *         before the expansion limit
+     */
+    private int search(PassabilityMask grid, int agent, int start, int target, DistanceField field) {
+        nodeIndex.clear();
+        nodeCount = 0;
+        heapSize = 0;
+        int first = node(start, 0, 0, -1);
+        push(first, field.distance(grid, start));
+        int best = first;
+        int expansions = 0;
+        while (heapSize > 0) {
+            int cur = pop();
+            if (nodeClosed[cur]) continue;
+            nodeClosed[cur] = true;
+            int cell = nodeCell[cur], t = nodeTime[cur];
+            if (t > nodeTime[best] || (t == nodeTime[best] && field.distance(grid, cell) < field.distance(grid, nodeCell[best]))) best = cur;
+            if (t == window || (cell == target && goalFree(agent, target, t))) return cur;
+            if (++expansions > maxExpansions) break;
+
+            int r = cell / width, c = cell - r * width;
+            int g = nodeG[cur];
+            for (int i = 0; i < DR.length; i++) {
+                int nr = r + DR[i], nc = c + DC[i];
+                int step;
+                if (i == WAIT) {
+                    step = cell == target ? 0 : STRAIGHT;
+                } else {
+                    if (!canStep(grid, r, c, nr, nc)) continue;
+                    step = i < 4 ? STRAIGHT : DIAGONAL;
+                }
+                int next = nr * width + nc;
+                int h = field.distance(grid, next);
+                if (h == INF) continue;
+                if (blocked(agent, now + t + 1, next)) continue;
+                if (i != WAIT && t == 0) {
+                    // Agents still waiting for their plan may not be able to step aside
+                    int occupant = reservations.get(key(now, next));
+                    if (occupant >= 0 && occupant != agent && queued[occupant]) continue;
+                }
+                if (i != WAIT) {
+                    // Head-on swap: someone moves from next into cell at the same time
+                    int other = reservations.get(key(now + t, next));
+                    if (other >= 0 && other != agent && reservations.get(key(now + t + 1, cell)) == other) continue;
+                }
+                int ng = g + step;
+                int existing = nodeIndex.get((long) (t + 1) * width * height + next);
+                if (existing >= 0) {
+                    if (nodeClosed[existing] || ng >= nodeG[existing]) continue;
+                    nodeG[existing] = ng;
+                    nodeParent[existing] = cur;
+                    push(existing, ng + h);
+                } else {
+                    push(node(next, t + 1, ng, cur), ng + h);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * True if nobody else needs the goal from {@code t} on, so the agent can stay.
+     */
+    private boolean goalFree(int agent, int target, int t) {
+        int parker = parked.get(target);
+        if (parker >= 0 && parker != agent) return false;
+        for (int s = t + 1; s <= window; s++) {
+            if (blocked(agent, now + s, target)) return false;
+        }
+        return true;
+    }
+
+    private int node(int cell, int time, int g, int parent) {
+        if (nodeCount == nodeCell.length) {
+            int capacity = nodeCount * 2;
+            nodeCell = Arrays.copyOf(nodeCell, capacity);
+            nodeTime = Arrays.copyOf(nodeTime, capacity);
+            nodeG = Arrays.copyOf(nodeG, capacity);
+            nodeParent = Arrays.copyOf(nodeParent, capacity);
+            nodeClosed = Arrays.copyOf(nodeClosed, capacity);
+        }
+        int n = nodeCount++;
+        nodeCell[n] = cell;
+        nodeTime[n] = time;
+        nodeG[n] = g;
+        nodeParent[n] = parent;
+        nodeClosed[n] = false;
+        nodeIndex.put((long) time * width * height + cell, n);
+        return n;
+    }
+
+    /** Pushes a node with priority f; stale duplicates are skipped when popped. */
+    private void push(int node, int f) {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+        long value = ((long) f << 32) | node;
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= value) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    private int pop() {
+        int top = (int) heap[0];
+        long value = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= value) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (heapSize > 0) heap[i] = value;
+        return top;
+    }
+
+    /**
+     * Returns the distance field of a goal, reusing the least recently used field when
+     * the cache is full. A new field aims its search at {@code origin}.
+     */
+    private DistanceField field(PassabilityMask grid, int target, int origin) {
+        DistanceField field = fields.get(target);
+        if (field == null) {
+            if (fields.size() < maxFields) {
+                field = new DistanceField(width, height);
+            } else {
+                Map.Entry<Integer, DistanceField> eldest = fields.entrySet().iterator().next();
+                fields.remove(eldest.getKey());
+                field = eldest.getValue();
+            }
+            field.reset(grid, target, origin);
+            fields.put(target, field);
+        }
+        return field;
+    }
+
+    /**
+     * Checks a single step between neighbouring tiles, applying the no-corner-cutting
+     * rule of {@link AStar} to diagonals.
+     */
+    private static boolean canStep(PassabilityMask grid, int r, int c, int nr, int nc) {
+        if (!grid.isPassable(nr, nc)) return false; // off-map cells read the blocked border
+        return nr == r || nc == c || (grid.isPassable(r, nc) && grid.isPassable(nr, c));
+    }
+
+    /**
+     * Walking distances to one goal: a reverse A* from the goal toward the agent that
+     * created the field. A settled cell has its exact distance (the octile heuristic is
+     * consistent); other cells are settled by resuming the search on demand.
+     */
+    private static final class DistanceField {
+
+        private final int width;
+        private final int[] g;
+        private final int[] stamp;
+        private final int[] settled;
+        private int generation = 0;
+        private long[] open = new long[256];
+        private int size = 0;
+        private int originY, originX;
+
+        DistanceField(int width, int height) {
+            this.width = width;
+            this.g = new int[width * height];
+            this.stamp = new int[width * height];
+            this.settled = new int[width * height];
+        }
+
+        /**
+         * Restarts the field for a goal; stamps make this O(1) in the map size.
+         */
+        void reset(PassabilityMask grid, int goal, int origin) {
+            if (++generation == 0) {
+                Arrays.fill(stamp, 0);
+                Arrays.fill(settled, 0);
+                generation = 1;
+            }
+            size = 0;
+            originY = origin / width;
+            originX = origin % width;
+            if (grid.isPassable(goal / width, goal % width)) {
+                stamp[goal] = generation;
+                g[goal] = 0;
+                push(goal, heuristic(goal));
+            }
+        }
+
+        /**
+         * @return the walking cost from the cell to the goal, {@link PathContext#INF} if unreachable
+         */
+        int distance(PassabilityMask grid, int cell) {
+            while (settled[cell] != generation && size > 0) settleNext(grid);
+            return settled[cell] == generation ? g[cell] : INF;
+        }
+
+        private int g(int cell) { return stamp[cell] == generation ? g[cell] : INF; }
+
+        private int heuristic(int cell) {
+            int r = cell / width;
+            return AStar.heuristic(r, cell - r * width, originY, originX, DirMode.OCTILE);
+        }
+
+        private void settleNext(PassabilityMask grid) {
+            long top = open[0];
+            long last = open[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && open[child + 1] < open[child]) child++;
+                if (open[child] >= last) break;
+                open[i] = open[child];
+                i = child;
+            }
+            if (size > 0) open[i] = last;
+
+            int cell = (int) top;
+            if (settled[cell] == generation) return; // stale duplicate
+            settled[cell] = generation;
+            int d = g[cell];
+            int r = cell / width, c = cell - r * width;
+            for (int k = 0; k < WAIT; k++) {
+                int nr = r + DR[k], nc = c + DC[k];
+                if (!canStep(grid, r, c, nr, nc)) continue;
+                int next = nr * width + nc;
+                int nd = d + (k < 4 ? STRAIGHT : DIAGONAL);
+                if (nd >= g(next)) continue;
+                stamp[next] = generation;
+                g[next] = nd;
+                push(next, nd + heuristic(next));
+            }
+        }
+
+        private void push(int cell, int f) {
+            if (size == open.length) open = Arrays.copyOf(open, size * 2);
+            long value = ((long) f << 32) | cell;
+            int j = size++;
+            while (j > 0) {
+                int parent = (j - 1) >>> 1;
+                if (open[parent] <= value) break;
+                open[j] = open[parent];
+                j = parent;
+            }
+            open[j] = value;
+        }
+    }
+
+    /**
+     * Open-addressing hash map from non-negative long keys to non-negative ints,
+     * with linear probing and backward-shift deletion.
+     */
+    private static final class LongIntMap {
+
+        private static final long EMPTY = -1L;
+
+        private long[] keys;
+        private int[] values;
+        private int size = 0;
+
+        LongIntMap(int capacity) {
+            int cap = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1);
+            keys = new long[cap];
+            values = new int[cap];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        /** @return the value, or -1 if absent */
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) rehash(keys.length * 2);
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != EMPTY && keys[i] != key) i = (i + 1) & mask;
+            if (keys[i] == EMPTY) size++;
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int hole = hash(key) & mask;
+            while (keys[hole] != key) {
+                if (keys[hole] == EMPTY) return;
+                hole = (hole + 1) & mask;
+            }
+            // Shift later entries of the probe run back so lookups never stop early
+            for (int j = (hole + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                boolean stays = hole < j ? (home > hole && home <= j) : (home > hole || home <= j);
+                if (stays) continue;
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+            keys[hole] = EMPTY;
+            size--;
+        }
+
+        void clear() {
+            if (size == 0) return;
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
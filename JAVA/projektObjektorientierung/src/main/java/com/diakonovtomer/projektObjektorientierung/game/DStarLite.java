@@ -0,0 +1,379 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import com.diakonovtomer.projektObjektorientierung.model.map.PassabilityMask;
+import java.util.Arrays;
+
+/**
+ * D* Lite incremental planner for a single walker and a fixed goal.
+ * <p>
+ * The search runs backwards from the goal, so the g-values of all cells that were
+ * needed for the current path stay valid while the walker moves. When tiles change
+ * (a door opens or closes) only the changed tiles and their neighbours are updated
+ * and the search repairs the affected part of the tree instead of starting over.
+ * </p>
+ *
+ * <p>
+ * Neighbours, costs, heuristic and the no-corner-cutting rule are those of {@link AStar}
+ * in the planner's movement mode, so {@link DirMode#CROSS} plans 4-directional paths.
+ * A tile change also affects the diagonal steps that pass the tile as a corner; these
+ * all connect neighbours of the tile, so updating the tile and its 8 neighbours is enough.
+ * </p>
+ *
+ * <p>
+ * Per-cell state uses generation stamps like {@link PathContext}, so starting a new
+ * goal does not clear the arrays. The priority queue is a binary heap of packed
+ * {@code (k1, k2)} keys with lazy deletion: an entry is only valid while it matches
+ * the key currently recorded for its cell.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class DStarLite {
+
+    private static final int INF = PathContext.INF;
+
+    /** Grid width and height in cells. */
+    private int width, height;
+
+    /** Movement mode: neighbours and heuristic of the search. */
+    private final DirMode dirMode;
+
+    /** Current generation; cells with an older stamp have g = rhs = INF. */
+    private int generation = 0;
+
+    private int[] stamp;
+    private int[] g;
+    private int[] rhs;
+
+    /** Generation in which the cell was put into the queue; 0 after removal. */
+    private int[] openStamp;
+
+    /** Packed key the cell is queued with (valid if {@code openStamp[cell] == generation}). */
+    private long[] openKey;
+
+    /** Heap of packed keys and the matching cells. */
+    private long[] heapKeys = new long[256];
+    private int[] heapCells = new int[256];
+    private int heapSize = 0;
+
+    /** Grid of the running plan. */
+    private PassabilityMask grid;
+
+    /** Walker position, goal, and the position at the last replan. */
+    private int start, goal, lastStart;
+
+    /** Accumulated heuristic offset (k_m) after walker moves. */
+    private int km;
+
+    /** Path from the walker to the goal. */
+    private int[] path;
+
+    /** Number of cells expanded by the last plan or repair (for profiling). */
+    private int expanded;
+
+    /**
+     * Creates a planner for a grid of the given size.
+     *
+     * @param width  grid width in cells
+     * @param height grid height in cells
+     * @param dirMode movement mode (4- or 8-directional)
+     */
+    DStarLite(int width, int height, DirMode dirMode) {
+        this.dirMode = dirMode;
+        allocate(width, height);
+    }
+
+    private void allocate(int width, int height) {
+        int cells = width * height;
+        this.width = width;
+        this.height = height;
+        this.stamp = new int[cells];
+        this.g = new int[cells];
+        this.rhs = new int[cells];
+        this.openStamp = new int[cells];
+        this.openKey = new long[cells];
+        this.path = new int[cells];
+        this.generation = 0;
+    }
+
+    // === GETTERS ===
+
+    int[] getPath() { return path; }
+
+    int getExpanded() { return expanded; }
+
+    /**
+     * Plans a new path from scratch.
+     *
+     * @param grid   passability of the map
+     * @param startY walker row
+     * @param startX walker column
+     * @param goalY  goal row
+     * @param goalX  goal column
+     * @return the number of cells in {@link #getPath()}, 0 if the goal is unreachable
+     */
+    int plan(PassabilityMask grid, int startY, int startX, int goalY, int goalX) {
+        if (grid.getHeight() != height || grid.getWidth() != width) allocate(grid.getWidth(), grid.getHeight());
+        this.grid = grid;
+        if (++generation == 0) { // wrapped around: stale stamps could collide, clear once
+            Arrays.fill(stamp, 0);
+            Arrays.fill(openStamp, 0);
+            generation = 1;
+        }
+        heapSize = 0;
+        km = 0;
+        expanded = 0;
+        start = lastStart = startY * width + startX;
+        goal = goalY * width + goalX;
+
+        touch(goal);
+        rhs[goal] = 0;
+        queue(goal);
+        computeShortestPath();
+        return extractPath();
+    }
+
+    /**
+     * Repairs the path after tiles changed, with the walker now at a new position.
+     *
+     * @param startY  walker row
+     * @param startX  walker column
+     * @param changed packed indices of the changed tiles
+     * @param count   number of valid entries in {@code changed}
+     * @return the number of cells in {@link #getPath()}, 0 if the goal became unreachable
+     */
+    int repair(int startY, int startX, int[] changed, int count) {
+        expanded = 0;
+        start = startY * width + startX;
+        km += heuristic(lastStart, start);
+        lastStart = start;
+        for (int i = 0; i < count; i++) {
+            int y = changed[i] / width, x = changed[i] % width;
+            for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+                for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+                    updateVertex(ny * width + nx);
+                }
+            }
+        }
+        computeShortestPath();
+        return extractPath();
+    }
+
+    // === SEARCH ===
+
+    /**
+     * Expands inconsistent cells until the walker's cell is consistent and no queued
+     * key is smaller than its key.
+     */
+    private void computeShortestPath() {
+        final int[] dr = dirMode.dr, dc = dirMode.dc;
+        while (true) {
+            dropStaleTop();
+            if (heapSize == 0) return;
+            long top = heapKeys[0];
+            if (top >= key(start) && g(start) == rhs(start)) return;
+
+            int u = heapCells[0];
+            long fresh = key(u);
+            if (top < fresh) {
+                queue(u); // heuristic offset grew since it was queued
+                continue;
+            }
+            openStamp[u] = 0;
+            expanded++;
+            int r = u / width, c = u - r * width;
+            if (g[u] > rhs[u]) {
+                g[u] = rhs[u];
+                for (int i = 0; i < dr.length; i++) {
+                    int nr = r + dr[i], nc = c + dc[i];
+                    if (AStar.isInside(nr, nc, height, width)) updateVertex(nr * width + nc);
+                }
+            } else {
+                g[u] = INF;
+                updateVertex(u);
+                for (int i = 0; i < dr.length; i++) {
+                    int nr = r + dr[i], nc = c + dc[i];
+                    if (AStar.isInside(nr, nc, height, width)) updateVertex(nr * width + nc);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes rhs of a cell from its successors and fixes its queue membership.
+     */
+    private void updateVertex(int u) {
+        touch(u);
+        if (u != goal) {
+            int best = INF;
+            int r = u / width, c = u - r * width;
+            final int[] dr = dirMode.dr, dc = dirMode.dc;
+            for (int i = 0; i < dr.length; i++) {
+                int cost = cost(r, c, r + dr[i], c + dc[i]);
+                if (cost == INF) continue;
+                int gs = g((r + dr[i]) * width + c + dc[i]);
+                if (gs != INF && gs + cost < best) best = gs + cost;
+            }
+            rhs[u] = best;
+        }
+        if (g[u] != rhs[u]) queue(u);
+        else openStamp[u] = 0;
+    }
+
+    /**
+     * Cost of a single step, {@link #INF} if it is blocked or cuts a corner.
+     */
+    private int cost(int r, int c, int nr, int nc) {
+        if (!grid.isPassable(r, c) || !grid.isPassable(nr, nc)) return INF; // border is blocked
+        if (r == nr || c == nc) return 10;
+        return grid.isPassable(r, nc) && grid.isPassable(nr, c) ? 14 : INF;
+    }
+
+    /**
+     * Packs the D* Lite key {@code [min(g, rhs) + h + km, min(g, rhs)]} into a long
+     * that compares lexicographically.
+     */
+    private long key(int cell) {
+        int m = Math.min(g(cell), rhs(cell));
+        if (m == INF) return Long.MAX_VALUE;
+        return ((long) (m + heuristic(start, cell) + km) << 32) | m;
+    }
+
+    private int heuristic(int a, int b) {
+        int ar = a / width, br = b / width;
+        return AStar.heuristic(ar, a - ar * width, br, b - br * width, dirMode);
+    }
+
+    // === CELL STATE ===
+
+    private int g(int cell) { return stamp[cell] == generation ? g[cell] : INF; }
+
+    private int rhs(int cell) { return stamp[cell] == generation ? rhs[cell] : INF; }
+
+    /**
+     * Makes the g and rhs entries of a cell valid for the current generation.
+     */
+    private void touch(int cell) {
+        if (stamp[cell] == generation) return;
+        stamp[cell] = generation;
+        g[cell] = INF;
+        rhs[cell] = INF;
+    }
+
+    // === QUEUE ===
+
+    /**
+     * Inserts a cell with its current key; older entries of the cell become stale.
+     * Does nothing if the cell is already queued with that key.
+     */
+    private void queue(int cell) {
+        long k = key(cell);
+        if (openStamp[cell] == generation && openKey[cell] == k) return; // already queued
+        openStamp[cell] = generation;
+        openKey[cell] = k;
+        if (heapSize == heapKeys.length) {
+            // Too many stale entries: rebuild from the live ones before growing
+            if (heapSize > 4 * stamp.length) compact();
+            if (heapSize == heapKeys.length) {
+                heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+                heapCells = Arrays.copyOf(heapCells, heapSize * 2);
+            }
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapKeys[parent] <= k) break;
+            heapKeys[i] = heapKeys[parent];
+            heapCells[i] = heapCells[parent];
+            i = parent;
+        }
+        heapKeys[i] = k;
+        heapCells[i] = cell;
+    }
+
+    /**
+     * Removes heap entries that no longer match the key recorded for their cell.
+     */
+    private void dropStaleTop() {
+        while (heapSize > 0) {
+            int cell = heapCells[0];
+            if (openStamp[cell] == generation && openKey[cell] == heapKeys[0]) return;
+            removeTop();
+        }
+    }
+
+    private void removeTop() {
+        heapSize--;
+        if (heapSize == 0) return;
+        heapKeys[0] = heapKeys[heapSize];
+        heapCells[0] = heapCells[heapSize];
+        siftDown(0);
+    }
+
+    /**
+     * Drops all stale entries and re-heapifies the live ones.
+     */
+    private void compact() {
+        int n = 0;
+        for (int i = 0; i < heapSize; i++) {
+            int cell = heapCells[i];
+            if (openStamp[cell] == generation && openKey[cell] == heapKeys[i]) {
+                heapKeys[n] = heapKeys[i];
+                heapCells[n] = cell;
+                n++;
+            }
+        }
+        heapSize = n;
+        for (int i = n / 2 - 1; i >= 0; i--) siftDown(i);
+    }
+
+    private void siftDown(int i) {
+        long k = heapKeys[i];
+        int cell = heapCells[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) child++;
+            if (heapKeys[child] >= k) break;
+            heapKeys[i] = heapKeys[child];
+            heapCells[i] = heapCells[child];
+            i = child;
+        }
+        heapKeys[i] = k;
+        heapCells[i] = cell;
+    }
+
+    // === PATH ===
+
+    /**
+     * Follows the cheapest successors from the walker to the goal.
+     *
+     * @return the number of cells in the path, 0 if the goal is unreachable
+     */
+    private int extractPath() {
+        if (g(start) == INF) return 0;
+        final int[] dr = dirMode.dr, dc = dirMode.dc;
+        int length = 0;
+        int cur = start;
+        path[length++] = cur;
+        while (cur != goal) {
+            if (length == path.length) return 0; // inconsistent values, should not happen
+            int r = cur / width, c = cur - r * width;
+            int best = INF, next = -1;
+            for (int i = 0; i < dr.length; i++) {
+                int cost = cost(r, c, r + dr[i], c + dc[i]);
+                if (cost == INF) continue;
+                int n = (r + dr[i]) * width + c + dc[i];
+                int gn = g(n);
+                if (gn != INF && gn + cost < best) {
+                    best = gn + cost;
+                    next = n;
+                }
+            }
+            if (next < 0) return 0;
+            path[length++] = next;
+            cur = next;
+        }
+        return length;
+    }
+}
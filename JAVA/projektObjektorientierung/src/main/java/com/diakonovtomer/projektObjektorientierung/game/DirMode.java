@@ -0,0 +1,56 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+/**
+ * Defines movement directions used in the algorithm:
+ * 4-directional (up, down, left, right) or 8-directional (diagonals allowed).
+ *
+ * @author Artiem
+ */
+enum DirMode {
+    
+    /** 4-directional movement (no diagonals). */
+    CROSS(false, false, new int[]{-1,0,1,0}, new int[]{0,1,0,-1}),
+    
+    /** 8-directional movement (diagonals allowed). */
+    OCTILE(true , false, new int[]{-1,-1,-1,0,1,1,1,0}, new int[]{-1,0,1,1,1,0,-1,-1}),
+    
+    /** 8-directional movement searched with Jump Point Search (uniform-cost grids only). */
+    JUMP_POINT(true, true, new int[]{-1,-1,-1,0,1,1,1,0}, new int[]{-1,0,1,1,1,0,-1,-1});
+
+    /** Whether diagonal movement is allowed. */
+    final boolean allowDiagonal;
+    
+    /** Whether cutting corners (diagonal through blocked adjacent tiles) is allowed. */
+    final boolean canCutCorners;
+    
+    /** Whether symmetric paths are pruned with Jump Point Search. */
+    final boolean jumpPoints;
+    
+    /** Row direction offsets. */
+    final int[] dr;
+    
+    /** Column direction offsets. */
+    final int[] dc;
+
+    DirMode(boolean corners, boolean jumpPoints, int[] dr, int[] dc) {
+        this.allowDiagonal = (dr.length == 8);
+        this.canCutCorners = corners;
+        this.jumpPoints = jumpPoints;
+        this.dr = dr;
+        this.dc = dc;
+    }
+    
+    /**
+     * Parses a configuration value, falling back to {@link #OCTILE}.
+     *
+     * @param value the configured name (case-insensitive), may be {@code null}
+     * @return the matching mode
+     */
+    static DirMode fromConfig(String value) {
+        if (value == null) return OCTILE;
+        for (DirMode m : values()) {
+            if (m.name().equalsIgnoreCase(value.trim())) return m;
+        }
+        return OCTILE;
+    }
+}
@@ -0,0 +1,191 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import com.diakonovtomer.projektObjektorientierung.model.entities.Direction;
+import com.diakonovtomer.projektObjektorientierung.model.map.MapManager;
+import com.diakonovtomer.projektObjektorientierung.model.map.PassabilityMask;
+import java.util.stream.IntStream;
+
+/**
+ * Flow field (Dijkstra map) toward a single target tile, usually the player.
+ * <p>
+ * One Dijkstra pass from the target assigns every reachable tile its walking cost
+ * to the target; a second pass stores for every tile the {@link Direction} of the
+ * neighbour a shortest path continues with. Any number of agents can then steer
+ * toward the target with a single array lookup per step instead of running their
+ * own A*.
+ * </p>
+ *
+ * <p>
+ * The field is recomputed lazily: {@link #setTarget(int, int)} is cheap and may be
+ * called every frame, the passes only run on the first query after the target crossed
+ * a tile boundary or the map changed. The direction pass is independent per row and
+ * runs in parallel on large maps.
+ * </p>
+ *
+ * @author Artiem
+ */
+public final class FlowField {
+
+    /** Maps with at least this many tiles compute directions in parallel. */
+    private static final int PARALLEL_MIN_CELLS = 64 * 1024;
+
+    /** Direction constants indexed by the ordinals stored in {@link #directions}. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** The map the field is computed on. */
+    private final MapManager mapManager;
+
+    /** Dijkstra state; its g-scores are the distances of the current field. */
+    private final PathContext context;
+
+    /** {@link Direction#ordinal()} toward the target per tile ({@code y * width + x}). */
+    private byte[] directions;
+
+    /** Target tile of the field. */
+    private int targetY = -1, targetX = -1;
+
+    /** Target and map version the field was last computed for. */
+    private int computedTarget = -1, computedVersion = -1;
+
+    /**
+     * Creates a flow field for a map; nothing is computed or allocated before the
+     * first query, which sizes the buffers for the map.
+     *
+     * @param mapManager the map to navigate
+     */
+    public FlowField(MapManager mapManager) {
+        this.mapManager = mapManager;
+        this.context = new PathContext(0, 0);
+        this.directions = new byte[0];
+    }
+
+    /**
+     * Moves the target of the field. Cheap; the field is rebuilt on the next query.
+     *
+     * @param tileY target tile row
+     * @param tileX target tile column
+     */
+    public void setTarget(int tileY, int tileX) {
+        this.targetY = tileY;
+        this.targetX = tileX;
+    }
+
+    /**
+     * Returns the direction an agent standing on a tile should step to approach the target.
+     *
+     * @param tileY tile row
+     * @param tileX tile column
+     * @return the step direction, {@link Direction#NONE} on the target, on unreachable
+     *         tiles or outside the map
+     */
+    public Direction getDirection(int tileY, int tileX) {
+        if (!mapManager.checkMapBoundaries(tileY, tileX) || !ensureComputed()) return Direction.NONE;
+        return DIRECTIONS[directions[tileY * mapManager.getWidth() + tileX]];
+    }
+
+    /**
+     * Returns the walking cost from a tile to the target (10 per straight, 14 per diagonal step).
+     *
+     * @param tileY tile row
+     * @param tileX tile column
+     * @return the cost, or -1 if the target cannot be reached from the tile
+     */
+    public int getDistance(int tileY, int tileX) {
+        if (!mapManager.checkMapBoundaries(tileY, tileX) || !ensureComputed()) return -1;
+        int g = context.g(tileY * mapManager.getWidth() + tileX);
+        return g == PathContext.INF ? -1 : g;
+    }
+
+    /**
+     * Rebuilds the field if the target or the map changed since the last build.
+     *
+     * @return false if no valid target is set
+     */
+    private boolean ensureComputed() {
+        if (!mapManager.checkMapBoundaries(targetY, targetX)) return false;
+        int target = targetY * mapManager.getWidth() + targetX;
+        if (target == computedTarget && mapManager.getVersion() == computedVersion) return true;
+        compute(target);
+        computedTarget = target;
+        computedVersion = mapManager.getVersion();
+        return true;
+    }
+
+    /**
+     * Dijkstra from the target followed by the direction pass.
+     */
+    private void compute(int target) {
+        final PassabilityMask grid = mapManager.getPassability();
+        final int rows = grid.getHeight(), cols = grid.getWidth();
+        if (context.getWidth() != cols || context.getHeight() != rows) {
+            context.resize(cols, rows);
+            directions = new byte[rows * cols];
+        }
+        final int[] dr = DirMode.OCTILE.dr, dc = DirMode.OCTILE.dc;
+
+        // Costs are small integers, the bucket queue keeps Dijkstra linear
+        context.begin(OpenListType.BUCKET);
+        if (grid.isPassable(targetY, targetX)) {
+            context.relax(target, 0, PathContext.NO_PARENT);
+            context.push(target, 0);
+        }
+        while (!context.isOpenEmpty()) {
+            int cur = context.pop();
+            if (context.isClosed(cur)) continue;
+            context.close(cur);
+            int r = cur / cols, c = cur - r * cols;
+            int curG = context.g(cur);
+            for (int i = 0; i < dr.length; i++) {
+                int nr = r + dr[i], nc = c + dc[i];
+                if (!canStep(grid, r, c, nr, nc)) continue;
+                int next = nr * cols + nc;
+                int g = curG + (dr[i] != 0 && dc[i] != 0 ? 14 : 10);
+                if (g >= context.g(next)) continue;
+                context.relax(next, g, cur);
+                context.push(next, g);
+            }
+        }
+
+        IntStream rowsStream = IntStream.range(0, rows);
+        if (rows * cols >= PARALLEL_MIN_CELLS) rowsStream = rowsStream.parallel();
+        rowsStream.forEach(r -> directionRow(grid, r));
+    }
+
+    /**
+     * Stores for every tile of a row the direction of the neighbour on a shortest path.
+     * Only reads the finished distances, so rows can be processed concurrently.
+     */
+    private void directionRow(PassabilityMask grid, int r) {
+        final int cols = grid.getWidth();
+        for (int c = 0; c < cols; c++) {
+            int cell = r * cols + c;
+            int own = context.g(cell);
+            Direction step = Direction.NONE;
+            if (own != PathContext.INF && own != 0) {
+                int best = PathContext.INF;
+                for (int d = 1; d < DIRECTIONS.length; d++) {
+                    Direction dir = DIRECTIONS[d];
+                    int nr = r + dir.dy, nc = c + dir.dx;
+                    if (!canStep(grid, r, c, nr, nc)) continue;
+                    int g = context.g(nr * cols + nc);
+                    if (g == PathContext.INF) continue;
+                    g += (dir.dx != 0 && dir.dy != 0) ? 14 : 10;
+                    if (g < best) {
+                        best = g;
+                        step = dir;
+                    }
+                }
+            }
+            directions[cell] = (byte) step.ordinal();
+        }
+    }
+
+    /**
+     * Checks a single step between neighbouring tiles, applying the no-corner-cutting
+     * rule of {@link AStar} to diagonals.
+     */
+    private static boolean canStep(PassabilityMask grid, int r, int c, int nr, int nc) {
+        if (!grid.isPassable(nr, nc)) return false; // off-map cells read the blocked border
+        return nr == r || nc == c || (grid.isPassable(r, nc) && grid.isPassable(nr, c));
+    }
+}
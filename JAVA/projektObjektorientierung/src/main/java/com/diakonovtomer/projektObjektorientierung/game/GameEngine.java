@@ -1,21 +1,29 @@
 package com.diakonovtomer.projektObjektorientierung.game;
 
+import com.diakonovtomer.projektObjektorientierung.Config;
 import com.diakonovtomer.projektObjektorientierung.Constant;
+import com.diakonovtomer.projektObjektorientierung.model.map.ChunkedWorld;
+import com.diakonovtomer.projektObjektorientierung.model.map.MapCodec;
 import com.diakonovtomer.projektObjektorientierung.model.map.MapGenerator;
 import com.diakonovtomer.projektObjektorientierung.model.map.MapManager;
+import com.diakonovtomer.projektObjektorientierung.model.map.TileGrid;
+import com.diakonovtomer.projektObjektorientierung.model.map.WorldStore;
 import com.diakonovtomer.projektObjektorientierung.model.entities.Player;
 import com.diakonovtomer.projektObjektorientierung.graphics.Camera;
 import com.diakonovtomer.projektObjektorientierung.graphics.RendererManager;
 import com.diakonovtomer.projektObjektorientierung.input.MouseHandler;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 
 /**
  * Core game engine that handles rendering, player updates, and input events.
  * <p>
  * Responsible for controlling the main game loop, maintaining camera position,
- * and rendering the tile map, player, and UI highlights.
+ * and rendering the tile map, player, and UI highlights on separate canvas layers.
  * </p>
  *
  * <p>The engine supports both starting from a saved ASCII map or generating
@@ -25,10 +33,16 @@ import java.util.Map;
  */
 public class GameEngine {
     
-    /** The main canvas for rendering. */
+    /** The top canvas (UI layer); its size is the view size and it receives mouse input. */
     private final Canvas canvas;
     
-    /** 2D graphics context used to draw on the canvas. */
+    /** Canvas of the map layer. */
+    private final Canvas mapCanvas;
+    
+    /** Canvas of the entity layer. */
+    private final Canvas entityCanvas;
+    
+    /** 2D graphics context of the entity layer. */
     private final GraphicsContext gc;
     
     /** The player entity. */
@@ -40,12 +54,24 @@ public class GameEngine {
     /** Manager for the tile map and player start position. */
     private final MapManager mapManager;
     
+    /** Memory-mapped world file backing the map, null if the map lives on the heap. */
+    private WorldStore worldStore;
+    
+    /** Chunk-streamed world file backing the map, null if the map is not chunked. */
+    private ChunkedWorld chunkedWorld;
+    
+    /** Player tile of the previous frame and the last direction it moved in (chunk prefetch). */
+    private int lastPlayerTileY, lastPlayerTileX, moveDirY, moveDirX;
+    
     /** Handles rendering of map, player, and UI elements. */
     private RendererManager rendererManager;
     
     /** Handles mouse interactions such as hover and clicks. */
     private final MouseHandler mouseHandler;
     
+    /** Directions toward the player for any number of chasing agents. */
+    private final FlowField playerFlowField;
+    
     /** Highlighted tile coordinates. */
     private int highlightTileY = -1;
     private int highlightTileX = -1;
@@ -56,14 +82,18 @@ public class GameEngine {
     /**
      * Initializes the game engine with either a new or loaded map.
      *
-     * @param canvas the JavaFX canvas to draw on
+     * @param mapCanvas the canvas of the map layer (bottom)
+     * @param entityCanvas the canvas of the entity layer
+     * @param сanvas the canvas of the UI layer (top), receives mouse input
      * @param asciiMap ASCII map representation (optional, can be null to generate new)
      * @param positionTileY the Y tile position for the player (if map is loaded)
      * @param positionTileX the X tile position for the player (if map is loaded)
      */
-    public GameEngine(Canvas сanvas, String asciiMap, int positionTileY, int positionTileX) {
+    public GameEngine(Canvas mapCanvas, Canvas entityCanvas, Canvas сanvas, String asciiMap, int positionTileY, int positionTileX) {
         this.canvas = сanvas; // Canvas
-        this.gc = canvas.getGraphicsContext2D(); // Graphics Context 2D
+        this.mapCanvas = mapCanvas;
+        this.entityCanvas = entityCanvas;
+        this.gc = entityCanvas.getGraphicsContext2D(); // Graphics Context 2D
         
         System.out.println(positionTileY + " - " + positionTileX);
         
@@ -72,16 +102,16 @@ public class GameEngine {
             this.mapManager = new MapManager(asciiMap, positionTileY, positionTileX);
             //this.mapManager.setStartPlayerPositionCellY(positionTileY);
            // this.mapManager.setStartPlayerPositionCellX(positionTileX);
-        } else { // generate a new one
-             System.out.println("generate a new one");
-            MapGenerator gen = new MapGenerator(Constant.MAP_WIDTH, Constant.MAP_HEIGHT);
-            this.mapManager = new MapManager(gen.generate());
+        } else { // map the world file, or generate a new one
+            this.mapManager = createWorld();
         }
 System.out.println(mapManager.getStartPlayerPositionCellX() + " - " + mapManager.getStartPlayerPositionCellY());
         
         this.player = new Player(gc, mapManager);
+        this.playerFlowField = new FlowField(mapManager);
         this.camera = new Camera(canvas, mapManager.getWidth(), mapManager.getHeight(), player);
         recalcRenderers();
+        mapManager.addTileListener((tileY, tileX) -> rendererManager.invalidateTile(tileY, tileX)); // renderers are replaced on resize
         this.mouseHandler = new MouseHandler(canvas, camera, this::onTileHover, this::onTileClick);
     }
     
@@ -105,20 +135,123 @@ System.out.println(mapManager.getStartPlayerPositionCellX() + " - " + mapManager
         double deltaTime = (now - lastUpdateTime) / 1_000_000_000.0;
         lastUpdateTime = now;
         player.update(deltaTime); // update the player
+        playerFlowField.setTarget(player.getPositionTeilY(), player.getPositionTeilX()); // rebuilt lazily on tile change
         camera.update();
-        this.rendererManager.cleaningScreen(); // Clearing the screen
-        this.rendererManager.renderMap();
-        this.rendererManager.renderPlayer();
-        this.rendererManager.renderHighlightTile(highlightTileY, highlightTileX); //--- Default Highlight
+        if (chunkedWorld != null) prefetchChunks();
+        this.rendererManager.render(highlightTileY, highlightTileX); // redraws only the layers that changed
     }               
     
+    /**
+     * Creates the map of a new game. If {@code WORLD_FILE} is configured the map is
+     * read from that file, which is generated on first use: memory-mapped, or streamed
+     * in chunks if {@code WORLD_CHUNKED} is set. Otherwise (or if the file cannot be
+     * used) a new map is generated on the heap.
+     *
+     * @return the map manager of the new game
+     */
+    private MapManager createWorld() {
+        String worldFile = Config.get("WORLD_FILE", "");
+        if (!worldFile.isEmpty()) {
+            try {
+                Path file = Path.of(worldFile);
+                return Boolean.parseBoolean(Config.get("WORLD_CHUNKED", "false")) ? openChunkedWorld(file) : openWorldStore(file);
+            } catch (IOException | IllegalStateException e) {
+                System.err.println("Failed to open world file: " + e.getMessage());
+                this.worldStore = null;
+                this.chunkedWorld = null;
+            }
+        }
+        System.out.println("generate a new one");
+        return new MapManager(generateTiles());
+    }
+    
+    /**
+     * Generates the tiles of a new map on the heap.
+     *
+     * @return the generated tiles, with a PLAYER tile at the start point
+     */
+    private static TileGrid generateTiles() {
+        return new TileGrid(new MapGenerator(Constant.MAP_WIDTH, Constant.MAP_HEIGHT).generate());
+    }
+    
+    /**
+     * Maps a world file, generating it first if it does not exist.
+     * The player start is read from the file header, not searched for in the tiles.
+     *
+     * @param file the world file
+     * @return the map manager over the mapped tiles
+     * @throws IOException if the file cannot be created or opened
+     */
+    private MapManager openWorldStore(Path file) throws IOException {
+        if (Files.exists(file)) {
+            this.worldStore = WorldStore.open(file);
+        } else {
+            TileGrid tiles = generateTiles();
+            MapManager generated = new MapManager(tiles); // turns the PLAYER tile into FLOOR
+            this.worldStore = WorldStore.create(file, tiles, generated.getStartPlayerPositionCellY(), generated.getStartPlayerPositionCellX());
+        }
+        return new MapManager(worldStore.getGrid(), worldStore.getStartY(), worldStore.getStartX());
+    }
+    
+    /**
+     * Opens a chunked world file, generating it first if it does not exist.
+     * The chunk cache is limited to {@code WORLD_CHUNK_CACHE_MB}.
+     *
+     * @param file the world file
+     * @return the map manager over the streamed tiles
+     * @throws IOException if the file cannot be created or opened
+     */
+    private MapManager openChunkedWorld(Path file) throws IOException {
+        long cacheBytes = Long.parseLong(Config.get("WORLD_CHUNK_CACHE_MB", "16")) << 20;
+        if (Files.exists(file)) {
+            this.chunkedWorld = ChunkedWorld.open(file, cacheBytes);
+        } else {
+            TileGrid tiles = generateTiles();
+            MapManager generated = new MapManager(tiles); // turns the PLAYER tile into FLOOR
+            this.chunkedWorld = ChunkedWorld.create(file, tiles, generated.getStartPlayerPositionCellY(), generated.getStartPlayerPositionCellX(), cacheBytes);
+        }
+        return new MapManager(chunkedWorld, chunkedWorld.getStartY(), chunkedWorld.getStartX());
+    }
+    
+    /**
+     * Loads the chunks around the player before they are drawn, one ring further
+     * in the direction the player last moved.
+     */
+    private void prefetchChunks() {
+        int tileY = player.getPositionTeilY(), tileX = player.getPositionTeilX();
+        if (tileY != lastPlayerTileY || tileX != lastPlayerTileX) {
+            moveDirY = Integer.signum(tileY - lastPlayerTileY);
+            moveDirX = Integer.signum(tileX - lastPlayerTileX);
+            lastPlayerTileY = tileY;
+            lastPlayerTileX = tileX;
+        }
+        // The whole canvas extent in tiles: covers the view in both projections
+        int radius = (int) Math.ceil(Math.max(canvas.getWidth() / Constant.TILE_W, canvas.getHeight() / Constant.TILE_H));
+        chunkedWorld.prefetch(tileY, tileX, radius, moveDirY, moveDirX);
+    }
+    
+    /**
+     * Writes pending tile changes of a file-backed world to its file.
+     * Does nothing for maps on the heap.
+     */
+    public void flushWorld() {
+        if (worldStore != null) worldStore.flush();
+        if (chunkedWorld != null) {
+            try {
+                chunkedWorld.flush();
+            } catch (IOException e) {
+                System.err.println("Failed to write world file: " + e.getMessage());
+            }
+        }
+    }
+    
     /**
      * Recalculates renderers to center the camera on the player.
      * Useful after resizing or map changes.
      */
     private void recalcRenderers() {
         camera.update();
-        this.rendererManager = new RendererManager(gc, canvas, camera, mapManager.getMap());
+        this.rendererManager = new RendererManager(mapCanvas, entityCanvas, canvas, camera, mapManager.getGrid());
     }
     
     /**
@@ -154,6 +287,14 @@ System.out.println(mapManager.getStartPlayerPositionCellX() + " - " + mapManager
         player.goTo(ty, tx); // Player movement with pathfinding
     }
  
+    /**
+     * Returns the flow field leading to the player's tile.
+     * Agents query it with their own tile to get the next step toward the player.
+     *
+     * @return the player flow field
+     */
+    public FlowField getPlayerFlowField() { return playerFlowField; }
+    
     /**
      * Returns the current hero (player) position as a key-value map.
      *
@@ -197,4 +338,14 @@ System.out.println(mapManager.getStartPlayerPositionCellX() + " - " + mapManager
     public String getAsciiMapRepresentation() {
         return mapManager.getAsciiMap();
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the current map encoded for a save game, in the format set by
+     * {@code SAVE_MAP_FORMAT} ({@code ASCII} or {@code BINARY}).
+     *
+     * @return the encoded map string
+     */
+    public String getMapRepresentation() {
+        return mapManager.getEncodedMap(MapCodec.Format.valueOf(Config.get("SAVE_MAP_FORMAT", "ASCII")));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,427 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import com.diakonovtomer.projektObjektorientierung.model.map.MapManager;
+import com.diakonovtomer.projektObjektorientierung.model.map.PassabilityMask;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchical pathfinding (HPA*) over fixed-size map clusters.
+ * <p>
+ * The grid is split into square clusters. Along every border between two clusters,
+ * each maximal run of cells that is passable on both sides becomes one entrance
+ * (two, one at each end, for long runs). Entrance cells are the nodes of a small
+ * abstract graph:
+ * </p>
+ * <ul>
+ *   <li>inter-cluster edges join the two cells of an entrance (one orthogonal step)</li>
+ *   <li>intra-cluster edges join all entrance cells of a cluster, weighted with the
+ *       shortest distance inside that cluster (precomputed)</li>
+ * </ul>
+ *
+ * <p>
+ * A query connects start and goal to the entrances of their clusters, searches the
+ * abstract graph and then refines only the intra-cluster segments with {@link AStar};
+ * inter-cluster edges are already single steps. Paths are near-optimal: the detour
+ * through entrance cells is usually a few tiles.
+ * </p>
+ *
+ * <p>
+ * All searches use the movement mode of the layer, so with {@link DirMode#CROSS}
+ * the cluster distances, the abstract heuristic and the refined paths are
+ * 4-directional like the flat search.
+ * </p>
+ *
+ * <p>
+ * The layer listens to {@link MapManager#addTileListener} and rebuilds only the
+ * borders and clusters around a changed tile.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class HierarchicalPathfinder {
+
+    /** Runs of at least this many cells get an entrance at each end instead of one in the middle. */
+    private static final int LONG_ENTRANCE = 6;
+
+    /** Cost of an orthogonal step. */
+    private static final int STRAIGHT = 10;
+
+    /** Cost of a diagonal step. */
+    private static final int DIAGONAL = 14;
+
+    /** Map providing the tile grid. */
+    private final MapManager mapManager;
+
+    /** Map size in tiles. */
+    private final int width, height;
+
+    /** Side length of a cluster in tiles. */
+    private final int clusterSize;
+
+    /** Movement mode of all searches. */
+    private final DirMode dirMode;
+
+    /** Number of clusters per row / column. */
+    private final int clustersX, clustersY;
+
+    /** Per cluster: entrance pairs {@code [cellInCluster, cellInRightNeighbour, ...]}. */
+    private final int[][] borderRight;
+
+    /** Per cluster: entrance pairs {@code [cellInCluster, cellInLowerNeighbour, ...]}. */
+    private final int[][] borderDown;
+
+    /** Per cluster: entrance cells (abstract nodes) of the cluster. */
+    private final int[][] nodes;
+
+    /** Per cluster: {@code n * n} matrix of intra-cluster distances between its nodes. */
+    private final int[][] distances;
+
+    /** Per cluster and node: cells in neighbouring clusters reachable in one step. */
+    private final int[][][] links;
+
+    /** Index of every abstract node inside its cluster's {@link #nodes} array. */
+    private final Map<Integer, Integer> nodeIndex = new HashMap<>();
+
+    /** Scratch distances of the cluster-bounded Dijkstra, indexed by local cell. */
+    private final int[] localDist;
+
+    /** Scratch open list of the cluster-bounded Dijkstra. */
+    private final BinaryHeapOpenList localOpen = new BinaryHeapOpenList();
+
+    /** Search context used to refine abstract segments into tile paths. */
+    private final PathContext refineContext;
+
+    /** Concatenated result path (packed cell indices); grows, never shrinks. */
+    private int[] path = new int[64];
+
+    /** Number of valid entries in {@link #path}. */
+    private int pathLength = 0;
+
+    /**
+     * Builds the abstract graph for the current map.
+     *
+     * @param mapManager  map providing the tile grid and change notifications
+     * @param clusterSize side length of a cluster in tiles
+     * @param dirMode     movement mode (4- or 8-directional)
+     */
+    HierarchicalPathfinder(MapManager mapManager, int clusterSize, DirMode dirMode) {
+        this.mapManager = mapManager;
+        this.dirMode = dirMode;
+        this.width = mapManager.getWidth();
+        this.height = mapManager.getHeight();
+        this.clusterSize = clusterSize;
+        this.clustersX = (width + clusterSize - 1) / clusterSize;
+        this.clustersY = (height + clusterSize - 1) / clusterSize;
+        int count = clustersX * clustersY;
+        this.borderRight = new int[count][];
+        this.borderDown = new int[count][];
+        this.nodes = new int[count][];
+        this.distances = new int[count][];
+        this.links = new int[count][][];
+        this.localDist = new int[clusterSize * clusterSize];
+        this.refineContext = new PathContext(width, height);
+
+        PassabilityMask grid = mapManager.getPassability();
+        for (int c = 0; c < count; c++) buildBorders(grid, c);
+        for (int c = 0; c < count; c++) buildCluster(grid, c);
+        mapManager.addTileListener(this::onTileChanged);
+    }
+
+    // === GETTERS ===
+
+    /**
+     * @return packed cell indices of the last path; only {@link #getPathLength()} entries are valid
+     */
+    int[] getPath() { return path; }
+
+    int getPathLength() { return pathLength; }
+
+    int getClusterSize() { return clusterSize; }
+
+    // === INCREMENTAL UPDATE ===
+
+    /**
+     * Rebuilds the borders touching the cluster of a changed tile, then the
+     * cluster itself and its four neighbours (their entrance sets may have moved).
+     *
+     * @param tileY row of the changed tile
+     * @param tileX column of the changed tile
+     */
+    void onTileChanged(int tileY, int tileX) {
+        PassabilityMask grid = mapManager.getPassability();
+        int cx = tileX / clusterSize, cy = tileY / clusterSize;
+        int c = cy * clustersX + cx;
+        buildBorders(grid, c);
+        if (cx > 0) buildBorders(grid, c - 1);
+        if (cy > 0) buildBorders(grid, c - clustersX);
+
+        buildCluster(grid, c);
+        if (cx > 0) buildCluster(grid, c - 1);
+        if (cx < clustersX - 1) buildCluster(grid, c + 1);
+        if (cy > 0) buildCluster(grid, c - clustersX);
+        if (cy < clustersY - 1) buildCluster(grid, c + clustersX);
+    }
+
+    // === BUILD ===
+
+    /**
+     * Finds the entrances on the right and lower border of a cluster.
+     */
+    private void buildBorders(PassabilityMask grid, int cluster) {
+        int cx = cluster % clustersX, cy = cluster / clustersX;
+        int x0 = cx * clusterSize, y0 = cy * clusterSize;
+        int x1 = Math.min(x0 + clusterSize, width), y1 = Math.min(y0 + clusterSize, height);
+
+        borderRight[cluster] = (x1 < width) ? scanBorder(grid, y0, x1 - 1, y1 - y0, 1, 0, 0, 1) : new int[0];
+        borderDown[cluster] = (y1 < height) ? scanBorder(grid, y1 - 1, x0, x1 - x0, 0, 1, 1, 0) : new int[0];
+    }
+
+    /**
+     * Scans one border and places entrances on runs passable on both sides.
+     *
+     * @param y      row of the first cell on the inner side of the border
+     * @param x      column of the first cell on the inner side of the border
+     * @param length number of cells along the border
+     * @param sy     row step along the border
+     * @param sx     column step along the border
+     * @param oy     row offset from an inner cell to its outer partner
+     * @param ox     column offset from an inner cell to its outer partner
+     * @return entrance pairs {@code [inner, outer, ...]}
+     */
+    private int[] scanBorder(PassabilityMask grid, int y, int x, int length, int sy, int sx, int oy, int ox) {
+        int[] pairs = new int[8];
+        int count = 0;
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean open = i < length
+                    && grid.isPassable(y + i * sy, x + i * sx)
+                    && grid.isPassable(y + i * sy + oy, x + i * sx + ox);
+            if (open && runStart < 0) runStart = i;
+            if (!open && runStart >= 0) {
+                int runLength = i - runStart;
+                int[] at = runLength >= LONG_ENTRANCE ? new int[]{runStart, i - 1} : new int[]{runStart + runLength / 2};
+                for (int k : at) {
+                    if (count + 2 > pairs.length) pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                    int iy = y + k * sy, ix = x + k * sx;
+                    pairs[count++] = iy * width + ix;
+                    pairs[count++] = (iy + oy) * width + ix + ox;
+                }
+                runStart = -1;
+            }
+        }
+        return Arrays.copyOf(pairs, count);
+    }
+
+    /**
+     * Collects the entrance cells of a cluster from its four borders and
+     * computes the intra-cluster distance matrix between them.
+     */
+    private void buildCluster(PassabilityMask grid, int cluster) {
+        int cx = cluster % clustersX, cy = cluster / clustersX;
+        Map<Integer, Set<Integer>> found = new HashMap<>();
+        collect(found, borderRight[cluster], 0);
+        collect(found, borderDown[cluster], 0);
+        if (cx > 0) collect(found, borderRight[cluster - 1], 1);
+        if (cy > 0) collect(found, borderDown[cluster - clustersX], 1);
+
+        if (nodes[cluster] != null) {
+            for (int cell : nodes[cluster]) nodeIndex.remove(cell);
+        }
+        int n = found.size();
+        int[] clusterNodes = new int[n];
+        int[][] clusterLinks = new int[n][];
+        int k = 0;
+        for (Map.Entry<Integer, Set<Integer>> e : found.entrySet()) {
+            clusterNodes[k] = e.getKey();
+            clusterLinks[k] = e.getValue().stream().mapToInt(Integer::intValue).toArray();
+            nodeIndex.put(e.getKey(), k);
+            k++;
+        }
+
+        int[] dist = new int[n * n];
+        for (int i = 0; i < n; i++) {
+            dijkstraInCluster(grid, cluster, clusterNodes[i]);
+            for (int j = 0; j < n; j++) dist[i * n + j] = localDist[localIndex(cluster, clusterNodes[j])];
+        }
+        nodes[cluster] = clusterNodes;
+        links[cluster] = clusterLinks;
+        distances[cluster] = dist;
+    }
+
+    /**
+     * Adds entrance pairs to the node map of a cluster.
+     *
+     * @param side 0 if the cluster owns the first cell of each pair, 1 for the second
+     */
+    private static void collect(Map<Integer, Set<Integer>> found, int[] pairs, int side) {
+        for (int i = 0; i < pairs.length; i += 2) {
+            found.computeIfAbsent(pairs[i + side], key -> new HashSet<>()).add(pairs[i + 1 - side]);
+        }
+    }
+
+    /**
+     * Runs Dijkstra from a cell, restricted to its cluster, into {@link #localDist}.
+     * Uses the same neighbours, step costs and no-corner-cutting rule as {@link AStar}.
+     */
+    private void dijkstraInCluster(PassabilityMask grid, int cluster, int source) {
+        int x0 = (cluster % clustersX) * clusterSize, y0 = (cluster / clustersX) * clusterSize;
+        int x1 = Math.min(x0 + clusterSize, width), y1 = Math.min(y0 + clusterSize, height);
+        int[] dr = dirMode.dr, dc = dirMode.dc;
+
+        Arrays.fill(localDist, PathContext.INF);
+        localOpen.clear();
+        int src = localIndex(cluster, source);
+        localDist[src] = 0;
+        localOpen.insertOrDecrease(src, 0);
+        while (!localOpen.isEmpty()) {
+            int cur = localOpen.pop();
+            int r = y0 + cur / clusterSize, c = x0 + cur % clusterSize;
+            int d = localDist[cur];
+            for (int i = 0; i < dr.length; i++) {
+                int nr = r + dr[i], nc = c + dc[i];
+                if (nr < y0 || nr >= y1 || nc < x0 || nc >= x1) continue;
+                if (!grid.isPassable(nr, nc)) continue;
+                boolean diagonal = dr[i] != 0 && dc[i] != 0;
+                if (diagonal && (!grid.isPassable(r, nc) || !grid.isPassable(nr, c))) continue;
+                int next = (nr - y0) * clusterSize + (nc - x0);
+                int nd = d + (diagonal ? DIAGONAL : STRAIGHT);
+                if (nd >= localDist[next]) continue;
+                localDist[next] = nd;
+                localOpen.insertOrDecrease(next, nd);
+            }
+        }
+    }
+
+    private int localIndex(int cluster, int cell) {
+        int x0 = (cluster % clustersX) * clusterSize, y0 = (cluster / clustersX) * clusterSize;
+        return (cell / width - y0) * clusterSize + (cell % width - x0);
+    }
+
+    private int clusterOf(int cell) {
+        return (cell / width / clusterSize) * clustersX + (cell % width) / clusterSize;
+    }
+
+    // === QUERY ===
+
+    /**
+     * Finds a path through the abstract graph and refines it into single steps.
+     *
+     * @param startY starting row (Y)
+     * @param startX starting column (X)
+     * @param goalY  goal row (Y)
+     * @param goalX  goal column (X)
+     * @return the number of cells in the path (see {@link #getPath()}), 0 if none
+     */
+    int findPath(int startY, int startX, int goalY, int goalX) {
+        pathLength = 0;
+        PassabilityMask grid = mapManager.getPassability();
+        if (!AStar.isInside(startY, startX, height, width) || !AStar.isInside(goalY, goalX, height, width)) return 0;
+        if (!grid.isPassable(goalY, goalX)) return 0;
+
+        int start = startY * width + startX, goal = goalY * width + goalX;
+        int cs = clusterOf(start), cg = clusterOf(goal);
+
+        // Connect start and goal to the entrances of their clusters
+        dijkstraInCluster(grid, cs, start);
+        int[] startCost = new int[nodes[cs].length];
+        for (int i = 0; i < startCost.length; i++) startCost[i] = localDist[localIndex(cs, nodes[cs][i])];
+        int direct = (cs == cg) ? localDist[localIndex(cs, goal)] : PathContext.INF;
+        dijkstraInCluster(grid, cg, goal);
+        int[] goalCost = new int[nodes[cg].length];
+        for (int i = 0; i < goalCost.length; i++) goalCost[i] = localDist[localIndex(cg, nodes[cg][i])];
+
+        int[] route = abstractSearch(start, goal, cs, cg, startCost, goalCost, direct);
+        if (route == null) return 0;
+        return refine(grid, route);
+    }
+
+    /**
+     * A* over the abstract graph. The start and goal are virtual nodes with
+     * ids {@code width * height} and {@code width * height + 1}.
+     *
+     * @return the route as cell indices from start to goal, or {@code null}
+     */
+    private int[] abstractSearch(int start, int goal, int cs, int cg, int[] startCost, int[] goalCost, int direct) {
+        final int startId = width * height, goalId = startId + 1;
+        Map<Integer, Integer> g = new HashMap<>();
+        Map<Integer, Integer> parent = new HashMap<>();
+        Set<Integer> closed = new HashSet<>();
+        BinaryHeapOpenList open = new BinaryHeapOpenList();
+        int gy = goal / width, gx = goal % width;
+
+        g.put(startId, 0);
+        open.insertOrDecrease(startId, 0);
+        while (!open.isEmpty()) {
+            int cur = open.pop();
+            if (!closed.add(cur)) continue;
+            if (cur == goalId) break;
+            int curG = g.get(cur);
+
+            if (cur == startId) {
+                for (int i = 0; i < startCost.length; i++) {
+                    relax(g, parent, open, cur, nodes[cs][i], curG + startCost[i], gy, gx, goalId);
+                }
+                relax(g, parent, open, cur, goalId, curG + direct, gy, gx, goalId);
+                continue;
+            }
+            int cluster = clusterOf(cur);
+            int k = nodeIndex.get(cur);
+            int[] clusterNodes = nodes[cluster];
+            int n = clusterNodes.length;
+            for (int j = 0; j < n; j++) {
+                if (j != k) relax(g, parent, open, cur, clusterNodes[j], curG + distances[cluster][k * n + j], gy, gx, goalId);
+            }
+            for (int other : links[cluster][k]) relax(g, parent, open, cur, other, curG + STRAIGHT, gy, gx, goalId);
+            if (cluster == cg) relax(g, parent, open, cur, goalId, curG + goalCost[k], gy, gx, goalId);
+        }
+        if (!parent.containsKey(goalId)) return null;
+
+        int length = 0;
+        for (int id = goalId; id != startId; id = parent.get(id)) length++;
+        int[] route = new int[length + 1];
+        int i = length;
+        for (int id = goalId; id != startId; id = parent.get(id)) route[i--] = (id == goalId) ? goal : id;
+        route[0] = start;
+        return route;
+    }
+
+    private void relax(Map<Integer, Integer> g, Map<Integer, Integer> parent, BinaryHeapOpenList open,
+                       int from, int to, int cost, int gy, int gx, int goalId) {
+        if (cost >= PathContext.INF || cost >= g.getOrDefault(to, PathContext.INF)) return;
+        g.put(to, cost);
+        parent.put(to, from);
+        int h = (to == goalId) ? 0 : AStar.heuristic(to / width, to % width, gy, gx, dirMode);
+        open.insertOrDecrease(to, cost + h);
+    }
+
+    /**
+     * Turns an abstract route into a tile path. Adjacent route cells (inter-cluster
+     * edges) are appended directly; other segments are searched with {@link AStar}.
+     */
+    private int refine(PassabilityMask grid, int[] route) {
+        append(route[0]);
+        for (int i = 1; i < route.length; i++) {
+            int a = route[i - 1], b = route[i];
+            int ay = a / width, ax = a % width, by = b / width, bx = b % width;
+            if (a == b) continue;
+            if (Math.abs(ay - by) + Math.abs(ax - bx) == 1) {
+                append(b);
+                continue;
+            }
+            int length = AStar.findPath(grid, refineContext, ay, ax, by, bx, dirMode);
+            if (length == 0) { pathLength = 0; return 0; }
+            int[] segment = refineContext.getPath();
+            for (int k = 1; k < length; k++) append(segment[k]);
+        }
+        return pathLength;
+    }
+
+    private void append(int cell) {
+        if (pathLength == path.length) path = Arrays.copyOf(path, path.length * 2);
+        path[pathLength++] = cell;
+    }
+}
@@ -0,0 +1,103 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap with decrease-key.
+ * <p>
+ * Every cell appears at most once. A per-cell position table lets
+ * {@link #insertOrDecrease(int, int)} sift an existing entry up instead of
+ * adding a duplicate, so the heap never holds more entries than open cells.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class IndexedHeapOpenList implements OpenList {
+
+    /** Cells in heap order. */
+    private final int[] cells;
+
+    /** f-scores in heap order (parallel to {@link #cells}). */
+    private final int[] keys;
+
+    /** Heap position of every cell, -1 if the cell is not queued. */
+    private final int[] position;
+
+    /** Number of entries in the heap. */
+    private int size = 0;
+
+    /**
+     * Creates a heap able to hold every cell of the grid.
+     *
+     * @param cellCount number of grid cells
+     */
+    IndexedHeapOpenList(int cellCount) {
+        this.cells = new int[cellCount];
+        this.keys = new int[cellCount];
+        this.position = new int[cellCount];
+        Arrays.fill(position, -1);
+    }
+
+    @Override
+    public void clear() {
+        // Only the leftover entries need their position reset
+        for (int i = 0; i < size; i++) position[cells[i]] = -1;
+        size = 0;
+    }
+
+    @Override
+    public void insertOrDecrease(int cell, int f) {
+        int i = position[cell];
+        if (i < 0) {
+            i = size++;
+        } else if (keys[i] <= f) {
+            return; // not an improvement
+        }
+        siftUp(i, cell, f);
+    }
+
+    @Override
+    public int pop() {
+        int top = cells[0];
+        position[top] = -1;
+        if (--size > 0) siftDown(0, cells[size], keys[size]);
+        return top;
+    }
+
+    @Override
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * Moves an entry towards the root until the heap order holds.
+     */
+    private void siftUp(int i, int cell, int f) {
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (keys[up] <= f) break;
+            place(i, cells[up], keys[up]);
+            i = up;
+        }
+        place(i, cell, f);
+    }
+
+    /**
+     * Moves an entry towards the leaves until the heap order holds.
+     */
+    private void siftDown(int i, int cell, int f) {
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+            if (f <= keys[child]) break;
+            place(i, cells[child], keys[child]);
+            i = child;
+        }
+        place(i, cell, f);
+    }
+
+    private void place(int i, int cell, int f) {
+        cells[i] = cell;
+        keys[i] = f;
+        position[cell] = i;
+    }
+}
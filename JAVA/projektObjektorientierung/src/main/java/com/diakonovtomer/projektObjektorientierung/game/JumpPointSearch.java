@@ -0,0 +1,219 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import com.diakonovtomer.projektObjektorientierung.model.map.PassabilityMask;
+
+/**
+ * Jump Point Search (JPS) for uniform-cost 8-directional grids.
+ * <p>
+ * Large open rooms contain many symmetric shortest paths that plain A* expands one
+ * cell at a time. JPS only inserts "jump points" into the open list: cells where
+ * an obstacle forces the optimal path to turn. Straight and diagonal runs between
+ * jump points are scanned without touching the open list.
+ * </p>
+ *
+ * <p>
+ * This is the variant for grids where a diagonal step is only allowed if both
+ * orthogonal neighbours are passable, i.e. the same no-corner-cutting rule as
+ * {@link AStar}. Under that rule diagonal moves have no forced neighbours; a
+ * diagonal run stops where one of its straight sub-runs finds a jump point.
+ * The returned path lengths are identical to {@link AStar} in {@link DirMode#OCTILE}.
+ * </p>
+ *
+ * <p>
+ * The resulting jump points are expanded back into single steps, so callers get the
+ * usual cell-by-cell path in {@link PathContext#getPath()}.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class JumpPointSearch {
+
+    /** Sentinel for "no jump point found". */
+    private static final int NONE = -1;
+
+    /** Prevent instantiation of static utility class */
+    private JumpPointSearch() {}
+
+    /**
+     * Performs Jump Point Search on a {@link PassabilityMask}.
+     *
+     * @param grid   passability of the map
+     * @param ctx    reusable search context sized for the grid
+     * @param startY starting row (Y)
+     * @param startX starting column (X)
+     * @param goalY  goal row (Y)
+     * @param goalX  goal column (X)
+     * @param open   open list implementation
+     * @return the number of cells in the path, or 0 if no path was found
+     */
+    static int findPath(PassabilityMask grid, PathContext ctx, int startY, int startX, int goalY, int goalX, OpenListType open) {
+        final int rows = grid.getHeight(), cols = grid.getWidth();
+        ctx.begin(open);
+        if (!AStar.isInside(startY, startX, rows, cols) || !AStar.isInside(goalY, goalX, rows, cols)) return 0;
+        if (!walkable(grid, goalY, goalX)) return 0;
+
+        final int start = startY * cols + startX;
+        final int goal = goalY * cols + goalX;
+        final int[] dr = DirMode.JUMP_POINT.dr, dc = DirMode.JUMP_POINT.dc;
+
+        ctx.relax(start, 0, PathContext.NO_PARENT);
+        ctx.push(start, AStar.heuristic(startY, startX, goalY, goalX, DirMode.JUMP_POINT));
+
+        while (!ctx.isOpenEmpty()) {
+            int cur = ctx.pop();
+            if (ctx.isClosed(cur)) continue;
+            if (cur == goal) return expand(ctx, ctx.rebuildPath(goal), cols);
+            ctx.close(cur);
+            if (ctx.isCancelled()) return 0;
+
+            int r = cur / cols, c = cur - r * cols;
+            int from = ctx.parent(cur);
+            if (from == PathContext.NO_PARENT) {
+                for (int i = 0; i < dr.length; i++) {
+                    if (canStep(grid, r, c, dr[i], dc[i])) {
+                        visit(grid, ctx, cur, r + dr[i], c + dc[i], dr[i], dc[i], goalY, goalX);
+                    }
+                }
+                continue;
+            }
+
+            // Direction of travel into the current jump point
+            int pr = from / cols;
+            int sr = Integer.signum(r - pr), sc = Integer.signum(c - (from - pr * cols));
+            if (sr != 0 && sc != 0) {
+                boolean vertical = walkable(grid, r + sr, c);
+                boolean horizontal = walkable(grid, r, c + sc);
+                if (vertical) visit(grid, ctx, cur, r + sr, c, sr, 0, goalY, goalX);
+                if (horizontal) visit(grid, ctx, cur, r, c + sc, 0, sc, goalY, goalX);
+                if (vertical && horizontal) visit(grid, ctx, cur, r + sr, c + sc, sr, sc, goalY, goalX);
+            } else if (sc != 0) {
+                boolean ahead = walkable(grid, r, c + sc);
+                boolean up = walkable(grid, r - 1, c), down = walkable(grid, r + 1, c);
+                if (ahead) {
+                    visit(grid, ctx, cur, r, c + sc, 0, sc, goalY, goalX);
+                    if (up) visit(grid, ctx, cur, r - 1, c + sc, -1, sc, goalY, goalX);
+                    if (down) visit(grid, ctx, cur, r + 1, c + sc, 1, sc, goalY, goalX);
+                }
+                if (up) visit(grid, ctx, cur, r - 1, c, -1, 0, goalY, goalX);
+                if (down) visit(grid, ctx, cur, r + 1, c, 1, 0, goalY, goalX);
+            } else {
+                boolean ahead = walkable(grid, r + sr, c);
+                boolean left = walkable(grid, r, c - 1), right = walkable(grid, r, c + 1);
+                if (ahead) {
+                    visit(grid, ctx, cur, r + sr, c, sr, 0, goalY, goalX);
+                    if (left) visit(grid, ctx, cur, r + sr, c - 1, sr, -1, goalY, goalX);
+                    if (right) visit(grid, ctx, cur, r + sr, c + 1, sr, 1, goalY, goalX);
+                }
+                if (left) visit(grid, ctx, cur, r, c - 1, 0, -1, goalY, goalX);
+                if (right) visit(grid, ctx, cur, r, c + 1, 0, 1, goalY, goalX);
+            }
+        }
+        return 0; // path not found
+    }
+
+    /**
+     * Jumps from a neighbour of {@code cur} and relaxes the jump point it reaches.
+     */
+    private static void visit(PassabilityMask grid, PathContext ctx, int cur, int r, int c, int dr, int dc, int goalY, int goalX) {
+        int jp = (dr != 0 && dc != 0)
+                ? jumpDiagonal(grid, r, c, dr, dc, goalY, goalX)
+                : jumpStraight(grid, r, c, dr, dc, goalY, goalX);
+        if (jp == NONE || ctx.isClosed(jp)) return;
+
+        int cols = grid.getWidth();
+        int cr = cur / cols, cc = cur - cr * cols;
+        int jr = jp / cols, jc = jp - jr * cols;
+        int tentativeG = ctx.g(cur) + AStar.heuristic(cr, cc, jr, jc, DirMode.JUMP_POINT);
+        if (tentativeG >= ctx.g(jp)) return;
+
+        ctx.relax(jp, tentativeG, cur);
+        ctx.push(jp, tentativeG + AStar.heuristic(jr, jc, goalY, goalX, DirMode.JUMP_POINT));
+    }
+
+    /**
+     * Scans horizontally or vertically starting at (r, c) until a jump point,
+     * the goal or an obstacle is reached.
+     *
+     * @return packed index of the jump point, or {@link #NONE}
+     */
+    private static int jumpStraight(PassabilityMask grid, int r, int c, int dr, int dc, int goalY, int goalX) {
+        while (walkable(grid, r, c)) {
+            if (r == goalY && c == goalX) return r * grid.getWidth() + c;
+            if (dr == 0) {
+                // A side cell that could not be reached diagonally from behind is a forced neighbour
+                if ((walkable(grid, r - 1, c) && !walkable(grid, r - 1, c - dc))
+                        || (walkable(grid, r + 1, c) && !walkable(grid, r + 1, c - dc))) {
+                    return r * grid.getWidth() + c;
+                }
+            } else {
+                if ((walkable(grid, r, c - 1) && !walkable(grid, r - dr, c - 1))
+                        || (walkable(grid, r, c + 1) && !walkable(grid, r - dr, c + 1))) {
+                    return r * grid.getWidth() + c;
+                }
+            }
+            r += dr;
+            c += dc;
+        }
+        return NONE;
+    }
+
+    /**
+     * Scans diagonally starting at (r, c). Every diagonal cell launches the two
+     * straight scans it dominates; the run stops where one of them succeeds.
+     *
+     * @return packed index of the jump point, or {@link #NONE}
+     */
+    private static int jumpDiagonal(PassabilityMask grid, int r, int c, int dr, int dc, int goalY, int goalX) {
+        while (walkable(grid, r, c)) {
+            if (r == goalY && c == goalX) return r * grid.getWidth() + c;
+            if (jumpStraight(grid, r + dr, c, dr, 0, goalY, goalX) != NONE
+                    || jumpStraight(grid, r, c + dc, 0, dc, goalY, goalX) != NONE) {
+                return r * grid.getWidth() + c;
+            }
+            if (!canStep(grid, r, c, dr, dc)) return NONE;
+            r += dr;
+            c += dc;
+        }
+        return NONE;
+    }
+
+    /**
+     * Checks a single step, applying the no-corner-cutting rule to diagonals.
+     */
+    private static boolean canStep(PassabilityMask grid, int r, int c, int dr, int dc) {
+        if (!walkable(grid, r + dr, c + dc)) return false;
+        return dr == 0 || dc == 0 || (walkable(grid, r + dr, c) && walkable(grid, r, c + dc));
+    }
+
+    private static boolean walkable(PassabilityMask grid, int r, int c) {
+        return grid.isPassable(r, c); // jumps stop at the blocked border of the mask
+    }
+
+    /**
+     * Expands the jump points in the path buffer into single steps, in place.
+     * Consecutive jump points always lie on a straight or diagonal line.
+     *
+     * @param ctx    the context holding the jump point path
+     * @param points number of jump points in the path buffer
+     * @param cols   grid width
+     * @return the number of cells in the expanded path
+     */
+    private static int expand(PathContext ctx, int points, int cols) {
+        int[] path = ctx.getPath();
+        int length = 1;
+        for (int i = 1; i < points; i++) {
+            length += Math.max(Math.abs(path[i] / cols - path[i - 1] / cols),
+                               Math.abs(path[i] % cols - path[i - 1] % cols));
+        }
+        path = ctx.reservePath(length);
+        // Fill from the back: the write position never overtakes an unread jump point
+        int w = length - 1;
+        for (int i = points - 1; i > 0; i--) {
+            int to = path[i], from = path[i - 1];
+            int step = Integer.signum(from / cols - to / cols) * cols + Integer.signum(from % cols - to % cols);
+            for (int cell = to; cell != from; cell += step) path[w--] = cell;
+        }
+        ctx.setPathLength(length);
+        return length;
+    }
+}
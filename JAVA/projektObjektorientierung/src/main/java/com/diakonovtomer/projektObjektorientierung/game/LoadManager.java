@@ -1,5 +1,6 @@
 package com.diakonovtomer.projektObjektorientierung.game;
 
+import com.diakonovtomer.projektObjektorientierung.model.map.MapCodec;
 import com.diakonovtomer.projektObjektorientierung.network.ApiService;
 import javafx.application.Platform;
 
@@ -27,7 +28,7 @@ public class LoadManager {
     /** The map level number. */
     private static int map_level = 0;
     
-    /** ASCII representation of the map layout. */
+    /** Encoded map layout: ASCII, or binary behind {@link MapCodec#BINARY_PREFIX}. */
     private static String ascii_map = "";
     
     /** Last updated timestamp string. */
@@ -73,9 +74,10 @@ public class LoadManager {
     public static void setMapLevel(int value){ map_level = value; }
     
     /**
-     * Sets the ASCII map representation.
+     * Sets the encoded map. Both formats of {@link MapCodec} are accepted;
+     * the game detects the format when it builds the map.
      *
-     * @param value the ASCII map string
+     * @param value the ASCII or binary map string
      */
     public static void setAsciiMap(String value){ ascii_map = value; }
     
@@ -0,0 +1,40 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+/**
+ * Priority queue of grid cells ordered by an integer f-score.
+ * <p>
+ * Implementations work over primitive arrays sized for the grid and are reused
+ * between searches through {@link #clear()}. Cells are packed indices
+ * ({@code y * width + x}).
+ * </p>
+ *
+ * @author Artiem
+ */
+interface OpenList {
+
+    /**
+     * Removes all entries. Must be cheap enough to call before every search.
+     */
+    void clear();
+
+    /**
+     * Inserts a cell, or lowers its priority if it is already queued.
+     * Implementations without decrease-key may keep a stale duplicate instead.
+     *
+     * @param cell packed cell index
+     * @param f    priority (g + h)
+     */
+    void insertOrDecrease(int cell, int f);
+
+    /**
+     * Removes the cell with the lowest f-score.
+     *
+     * @return packed cell index
+     */
+    int pop();
+
+    /**
+     * @return true if no entries remain
+     */
+    boolean isEmpty();
+}
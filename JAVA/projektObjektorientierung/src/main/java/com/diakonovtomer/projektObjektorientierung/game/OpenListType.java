@@ -0,0 +1,32 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+/**
+ * Selects the open list implementation used by grid searches.
+ *
+ * @author Artiem
+ */
+enum OpenListType {
+
+    /** Binary heap over packed longs; decrease-key pushes a duplicate, stale entries are skipped. */
+    BINARY_HEAP,
+
+    /** Indexed binary heap with true decrease-key, no duplicates. */
+    INDEXED_HEAP,
+
+    /** Circular bucket (radix) queue keyed on the integer f-score. */
+    BUCKET;
+
+    /**
+     * Parses a configuration value, falling back to {@link #BINARY_HEAP}.
+     *
+     * @param value the configured name (case-insensitive), may be {@code null}
+     * @return the matching type
+     */
+    static OpenListType fromConfig(String value) {
+        if (value == null) return BINARY_HEAP;
+        for (OpenListType t : values()) {
+            if (t.name().equalsIgnoreCase(value.trim())) return t;
+        }
+        return BINARY_HEAP;
+    }
+}
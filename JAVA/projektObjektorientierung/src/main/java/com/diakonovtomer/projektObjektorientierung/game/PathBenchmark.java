@@ -0,0 +1,281 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import com.diakonovtomer.projektObjektorientierung.model.map.MapManager;
+import com.diakonovtomer.projektObjektorientierung.model.map.PassabilityMask;
+import com.diakonovtomer.projektObjektorientierung.model.map.TileType;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Console benchmark for the grid pathfinding code.
+ * <p>
+ * Generates a corridor-heavy dungeon (a maze of one-tile corridors with a few rooms
+ * carved into it), picks random reachable start/goal pairs and reports node-expansion
+ * throughput and open list operations for every search variant, followed by the
+ * throughput of cooperative planning (agents planned per millisecond).
+ * </p>
+ *
+ * <pre>{@code
+ * java -cp target/classes:... com.diakonovtomer.projektObjektorientierung.game.PathBenchmark 320 500 42
+ * }</pre>
+ * Arguments (all optional): map size in tiles, number of queries, random seed.
+ *
+ * @author Artiem
+ */
+public final class PathBenchmark {
+
+    /** Number of untimed passes used to warm up the JIT. */
+    private static final int WARMUP_PASSES = 3;
+
+    /** Prevent instantiation of static utility class */
+    private PathBenchmark() {}
+
+    public static void main(String[] args) {
+        int size    = args.length > 0 ? Integer.parseInt(args[0]) : 320;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        long seed   = args.length > 2 ? Long.parseLong(args[2])   : 42L;
+
+        MapManager map = new MapManager(corridorDungeon(size, size, seed));
+        int[] pairs = randomQueries(map, queries, seed);
+        System.out.printf("Map %dx%d, %d queries%n", size, size, queries);
+
+        for (OpenListType type : OpenListType.values()) {
+            report("A* " + type, map, pairs, DirMode.OCTILE, type);
+        }
+        for (OpenListType type : OpenListType.values()) {
+            report("JPS " + type, map, pairs, DirMode.JUMP_POINT, type);
+        }
+        for (OpenListType type : OpenListType.values()) {
+            reportBidirectional("BiA* " + type, map, pairs, type);
+        }
+        reportCooperative(map, queries, seed);
+    }
+
+    /** Time steps of the cooperative planning window. */
+    private static final int COOP_WINDOW = 16;
+
+    /** Goal distance fields of the cooperative planner. */
+    private static final int COOP_FIELDS = 16;
+
+    /** Steps the crowd walks (with partial re-planning) after the first batch. */
+    private static final int COOP_STEPS = 64;
+
+    /** Number of goals the agents share in the crowd scenario (e.g. chasing the player). */
+    private static final int COOP_SHARED_GOALS = 4;
+
+    /**
+     * Plans a crowd of agents cooperatively, lets it walk for {@link #COOP_STEPS}
+     * steps with partial re-planning, and prints the planning throughput. Runs once
+     * with a few shared goals and once with a distinct goal per agent.
+     */
+    private static void reportCooperative(MapManager map, int agents, long seed) {
+        int[] pairs = randomQueries(map, agents, seed + 1);
+        int[] shared = pairs.clone();
+        for (int i = 3; i < shared.length; i += 2) shared[i] = shared[1 + 2 * (i / 2 % COOP_SHARED_GOALS)];
+        for (int pass = 0; pass < WARMUP_PASSES; pass++) runCooperative(map, shared, null);
+        runCooperative(map, shared, COOP_SHARED_GOALS + " goals");
+        runCooperative(map, pairs, "own goals");
+    }
+
+    /**
+     * Runs one cooperative scenario; prints the result unless {@code label} is null.
+     */
+    private static void runCooperative(MapManager map, int[] pairs, String label) {
+        PassabilityMask grid = map.getPassability();
+        CooperativePlanner planner = new CooperativePlanner(map.getWidth(), map.getHeight(), COOP_WINDOW, COOP_FIELDS);
+        boolean[] taken = new boolean[map.getWidth() * map.getHeight()];
+        int agents = 0;
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (taken[pairs[i]]) continue; // agents need distinct start tiles
+            taken[pairs[i]] = true;
+            planner.addAgent(pairs[i], pairs[i + 1], i % 3);
+            agents++;
+        }
+
+        long t0 = System.nanoTime();
+        int planned = planner.plan(grid, map.getVersion());
+        double firstMs = (System.nanoTime() - t0) / 1_000_000.0;
+
+        long replanned = 0;
+        t0 = System.nanoTime();
+        for (int step = 0; step < COOP_STEPS; step++) {
+            planner.advance();
+            replanned += planner.plan(grid, map.getVersion());
+        }
+        double walkMs = (System.nanoTime() - t0) / 1_000_000.0;
+        if (label == null) return;
+        System.out.printf("%-22s %9.1f ms  %12.1f agents/ms  %d agents, window %d, %s%n",
+                "Cooperative batch", firstMs, planned / firstMs, agents, COOP_WINDOW, label);
+        System.out.printf("%-22s %9.1f ms  %12.1f agents/ms  %d re-plans in %d steps%n",
+                "Cooperative re-plan", walkMs, replanned / walkMs, replanned, COOP_STEPS);
+    }
+
+    /**
+     * Runs all queries with one open list type and prints the throughput.
+     */
+    private static void report(String label, MapManager map, int[] pairs, DirMode mode, OpenListType type) {
+        PathContext ctx = new PathContext(map.getWidth(), map.getHeight());
+        PassabilityMask grid = map.getPassability();
+        int width = map.getWidth();
+        for (int pass = 0; pass < WARMUP_PASSES; pass++) runAll(grid, ctx, pairs, width, mode, type);
+
+        long expanded = 0, heapOps = 0, pathCells = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < pairs.length; i += 2) {
+            int s = pairs[i], g = pairs[i + 1];
+            pathCells += AStar.findPath(grid, ctx, s / width, s % width, g / width, g % width, mode, type);
+            expanded += ctx.getExpanded();
+            heapOps += ctx.getHeapOperations();
+        }
+        double ms = (System.nanoTime() - t0) / 1_000_000.0;
+        System.out.printf("%-22s %9.1f ms  %12.0f expansions/ms  %10d heap ops  %8d path cells%n",
+                label, ms, expanded / ms, heapOps, pathCells);
+    }
+
+    /**
+     * Runs all queries with bidirectional A* and prints the throughput of both directions.
+     */
+    private static void reportBidirectional(String label, MapManager map, int[] pairs, OpenListType type) {
+        PathContext forward = new PathContext(map.getWidth(), map.getHeight());
+        PathContext backward = new PathContext(map.getWidth(), map.getHeight());
+        PassabilityMask grid = map.getPassability();
+        int width = map.getWidth();
+        for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+            for (int i = 0; i < pairs.length; i += 2) {
+                int s = pairs[i], g = pairs[i + 1];
+                BidirectionalAStar.findPath(grid, forward, backward, s / width, s % width, g / width, g % width, DirMode.OCTILE, type);
+            }
+        }
+
+        long expanded = 0, heapOps = 0, pathCells = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < pairs.length; i += 2) {
+            int s = pairs[i], g = pairs[i + 1];
+            pathCells += BidirectionalAStar.findPath(grid, forward, backward, s / width, s % width, g / width, g % width, DirMode.OCTILE, type);
+            expanded += forward.getExpanded() + backward.getExpanded();
+            heapOps += forward.getHeapOperations() + backward.getHeapOperations();
+        }
+        double ms = (System.nanoTime() - t0) / 1_000_000.0;
+        System.out.printf("%-22s %9.1f ms  %12.0f expansions/ms  %10d heap ops  %8d path cells%n",
+                label, ms, expanded / ms, heapOps, pathCells);
+    }
+
+    private static void runAll(PassabilityMask grid, PathContext ctx, int[] pairs, int width, DirMode mode, OpenListType type) {
+        for (int i = 0; i < pairs.length; i += 2) {
+            int s = pairs[i], g = pairs[i + 1];
+            AStar.findPath(grid, ctx, s / width, s % width, g / width, g % width, mode, type);
+        }
+    }
+
+    /**
+     * Picks random start/goal pairs inside the largest open region of the map.
+     *
+     * @return packed cell indices, {@code [start0, goal0, start1, goal1, ...]}
+     */
+    static int[] randomQueries(MapManager map, int count, long seed) {
+        int width = map.getWidth(), height = map.getHeight();
+        PassabilityMask grid = map.getPassability();
+        int[] region = largestRegion(grid, width, height);
+        Random rnd = new Random(seed);
+        int[] pairs = new int[count * 2];
+        for (int i = 0; i < pairs.length; i++) pairs[i] = region[rnd.nextInt(region.length)];
+        return pairs;
+    }
+
+    /**
+     * Collects the cells of the largest 4-connected passable region.
+     */
+    private static int[] largestRegion(PassabilityMask grid, int width, int height) {
+        int[] label = new int[width * height];
+        int[] best = new int[0];
+        int next = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int start = 0; start < label.length; start++) {
+            if (label[start] != 0 || !grid.isPassable(start / width, start % width)) continue;
+            int[] cells = new int[16];
+            int count = 0;
+            label[start] = ++next;
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                int c = queue.poll();
+                if (count == cells.length) cells = Arrays.copyOf(cells, count * 2);
+                cells[count++] = c;
+                int y = c / width, x = c % width;
+                int[] around = { y > 0 ? c - width : -1, y < height - 1 ? c + width : -1,
+                                 x > 0 ? c - 1 : -1,     x < width - 1 ? c + 1 : -1 };
+                for (int n : around) {
+                    if (n < 0 || label[n] != 0 || !grid.isPassable(n / width, n % width)) continue;
+                    label[n] = next;
+                    queue.add(n);
+                }
+            }
+            if (count > best.length) best = Arrays.copyOf(cells, count);
+        }
+        return best;
+    }
+
+    /**
+     * Generates a corridor-heavy dungeon: a perfect maze of one-tile corridors
+     * (iterative recursive backtracker), with rectangular rooms carved on top and
+     * a few extra openings so that alternative routes exist.
+     *
+     * @param width  map width in tiles
+     * @param height map height in tiles
+     * @param seed   random seed
+     * @return the generated tile types
+     */
+    static TileType[][] corridorDungeon(int width, int height, long seed) {
+        Random rnd = new Random(seed);
+        TileType[][] map = new TileType[height][width];
+        for (TileType[] row : map) Arrays.fill(row, TileType.WALL);
+
+        int cellsY = (height - 1) / 2, cellsX = (width - 1) / 2;
+        boolean[] visited = new boolean[cellsY * cellsX];
+        int[] stack = new int[cellsY * cellsX];
+        int top = 0;
+        stack[top++] = 0;
+        visited[0] = true;
+        map[1][1] = TileType.FLOOR;
+        int[] order = {0, 1, 2, 3};
+        int[] dy = {-1, 1, 0, 0}, dx = {0, 0, -1, 1};
+        while (top > 0) {
+            int cur = stack[top - 1];
+            int cy = cur / cellsX, cx = cur % cellsX;
+            shuffle(order, rnd);
+            boolean moved = false;
+            for (int k : order) {
+                int ny = cy + dy[k], nx = cx + dx[k];
+                if (ny < 0 || ny >= cellsY || nx < 0 || nx >= cellsX || visited[ny * cellsX + nx]) continue;
+                visited[ny * cellsX + nx] = true;
+                map[2 * cy + 1 + dy[k]][2 * cx + 1 + dx[k]] = TileType.FLOOR;
+                map[2 * ny + 1][2 * nx + 1] = TileType.FLOOR;
+                stack[top++] = ny * cellsX + nx;
+                moved = true;
+                break;
+            }
+            if (!moved) top--;
+        }
+
+        int rooms = width * height / 2000;
+        for (int i = 0; i < rooms; i++) {
+            int rw = 4 + rnd.nextInt(10), rh = 4 + rnd.nextInt(10);
+            int x0 = 1 + rnd.nextInt(Math.max(1, width - rw - 2));
+            int y0 = 1 + rnd.nextInt(Math.max(1, height - rh - 2));
+            for (int y = y0; y < y0 + rh && y < height - 1; y++)
+                for (int x = x0; x < x0 + rw && x < width - 1; x++) map[y][x] = TileType.FLOOR;
+        }
+        for (int i = 0; i < width * height / 100; i++) {
+            int y = 1 + rnd.nextInt(height - 2), x = 1 + rnd.nextInt(width - 2);
+            map[y][x] = TileType.FLOOR;
+        }
+        return map;
+    }
+
+    private static void shuffle(int[] a, Random rnd) {
+        for (int i = a.length - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = a[i]; a[i] = a[j]; a[j] = t;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of computed paths.
+ * <p>
+ * Entries are keyed on (start cell, goal cell, {@link DirMode}) and tagged with the
+ * map version they were computed for; a version change drops the whole cache. On a
+ * miss, a cached path to the same goal that passes through the new start is reused
+ * from that point on, since every suffix of a path is a path to the same goal.
+ * </p>
+ *
+ * <p>
+ * Methods are synchronized so background searches can store their results; the
+ * lock is never contended for long.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class PathCache {
+
+    /** Cache key: packed start and goal cells and the movement mode. */
+    private record Key(int start, int goal, DirMode mode) {}
+
+    /** Cached paths in access order, eldest first. */
+    private final LinkedHashMap<Key, int[]> entries;
+
+    /** Map version the entries were computed for. */
+    private int version;
+
+    // Counters for tuning
+    private long hits = 0;
+    private long subPathHits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Creates a cache holding at most {@code capacity} paths.
+     *
+     * @param capacity maximum number of entries, at least 1
+     */
+    PathCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+                if (size() <= capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    // === GETTERS ===
+
+    synchronized long getHits() { return hits; }
+
+    synchronized long getSubPathHits() { return subPathHits; }
+
+    synchronized long getMisses() { return misses; }
+
+    synchronized long getEvictions() { return evictions; }
+
+    /**
+     * Looks up a path, reusing the suffix of a cached path through {@code start} if
+     * there is no exact entry.
+     *
+     * @param start   packed start cell
+     * @param goal    packed goal cell
+     * @param mode    movement mode
+     * @param version current map version
+     * @return packed cells from start to goal (shared, must not be modified), or null on a miss
+     */
+    synchronized int[] get(int start, int goal, DirMode mode, int version) {
+        if (version != this.version) {
+            entries.clear();
+            this.version = version;
+        }
+        int[] path = entries.get(new Key(start, goal, mode));
+        if (path != null) {
+            hits++;
+            return path;
+        }
+        for (Map.Entry<Key, int[]> entry : entries.entrySet()) {
+            Key key = entry.getKey();
+            if (key.goal() != goal || key.mode() != mode) continue;
+            int[] cached = entry.getValue();
+            for (int i = 1; i < cached.length; i++) {
+                if (cached[i] != start) continue;
+                int[] suffix = new int[cached.length - i];
+                System.arraycopy(cached, i, suffix, 0, suffix.length);
+                subPathHits++;
+                // Iteration is over, so inserting (and touching the order) is safe now
+                entries.put(new Key(start, goal, mode), suffix);
+                return suffix;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Stores a path. Ignored if the map changed since {@code version}.
+     *
+     * @param start   packed start cell
+     * @param goal    packed goal cell
+     * @param mode    movement mode
+     * @param path    exact-size packed path, owned by the cache from now on
+     * @param version map version the path was computed for
+     */
+    synchronized void put(int start, int goal, DirMode mode, int[] path, int version) {
+        if (version != this.version) return;
+        entries.put(new Key(start, goal, mode), path);
+    }
+}
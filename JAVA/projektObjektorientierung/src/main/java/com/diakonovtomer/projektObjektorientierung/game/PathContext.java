@@ -0,0 +1,364 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reusable scratch memory for grid searches.
+ * <p>
+ * Holds the g-score and parent of every cell indexed by {@code y * width + x}, the
+ * {@link OpenList} implementations and a path buffer. Nothing is cleared between searches: every cell carries
+ * the generation in which it was last written, so {@link #begin()} invalidates the whole
+ * grid in O(1) by bumping the generation counter.
+ * </p>
+ *
+ * <p>
+ * The per-cell state is stored in pages of {@value #PAGE_CELLS} neighbouring cells that
+ * are allocated when a search first writes one of their cells, so memory grows with the
+ * area searched, not with the map: a short walk on a 4096 x 4096 world only touches the
+ * pages around its path. Only the page table (half a bit per cell) spans the map. Pages
+ * are kept for the next search unless there are more than {@value #MAX_RETAINED_PAGES};
+ * the path buffer grows with the longest path. The indexed heap and bucket open lists
+ * still allocate per-cell arrays for the whole map.
+ * </p>
+ *
+ * <p>
+ * A context is not thread-safe. It is owned by a single {@link PathManager} and reused
+ * for every query, so a repeated search allocates nothing once the buffers have grown
+ * to their working size.
+ * </p>
+ *
+ * @author Artiem
+ */
+public final class PathContext {
+
+    /** Cost used for cells that have not been reached in the current generation. */
+    static final int INF = Integer.MAX_VALUE / 4;
+
+    /** Parent value of the start cell. */
+    static final int NO_PARENT = -1;
+
+    /** Cells per page (a row segment of the packed index range). */
+    static final int PAGE_CELLS = 64;
+
+    /** log2 of {@link #PAGE_CELLS}. */
+    private static final int PAGE_SHIFT = 6;
+
+    /** Ints stored per cell: seen, closed, g-score and parent. */
+    private static final int STRIDE = 4;
+
+    /** Pages kept between searches (16 MB); more are dropped when the next search begins. */
+    static final int MAX_RETAINED_PAGES = 1 << 14;
+
+    /** Initial capacity of the path buffer. */
+    private static final int INITIAL_PATH = 64;
+
+    /** Grid width in cells. */
+    private int width;
+
+    /** Grid height in cells. */
+    private int height;
+
+    /** Current search generation, never 0 while a search is running. */
+    private int generation = 0;
+
+    /**
+     * Per-cell state by page, null for pages not written yet. For the cell at offset
+     * {@code o} of a page, {@code STRIDE * o} holds the generation in which its g-score and
+     * parent were last written, {@code +1} the generation in which it was closed
+     * (expanded), {@code +2} the best known cost from the start and {@code +3} the parent
+     * cell on the best known path; cost and parent are only valid in the generation
+     * they were written.
+     */
+    private int[][] pages;
+
+    /** Number of non-null entries in {@link #pages}. */
+    private int pageCount = 0;
+
+    /** Open list implementations, created on first use and indexed by {@link OpenListType#ordinal()}. */
+    private final OpenList[] openLists = new OpenList[OpenListType.values().length];
+
+    /** Open list of the running search. */
+    private OpenList open;
+
+    /** Cell indices of the last found path, from start to goal. */
+    private int[] path;
+
+    /** Number of valid entries in {@link #path}. */
+    private int pathLength = 0;
+
+    /** Number of cells expanded by the last search (for profiling). */
+    private int expanded = 0;
+
+    /** Number of open list inserts and pops of the last search (for profiling). */
+    private int heapOperations = 0;
+
+    /** Pushes minus pops of the running search. */
+    private int openCount = 0;
+    
+    /** Cancellation flag of the running search, set from another thread; null if not cancellable. */
+    private AtomicBoolean cancelFlag;
+
+    /**
+     * Creates a context for a grid of the given size.
+     *
+     * @param width  grid width in cells
+     * @param height grid height in cells
+     */
+    public PathContext(int width, int height) {
+        this.width = width;
+        this.height = height;
+        allocate();
+    }
+
+    /**
+     * Allocates the page table for the current grid size; pages follow on first write.
+     */
+    private void allocate() {
+        int cells = width * height;
+        this.pages = new int[(cells + PAGE_CELLS - 1) >>> PAGE_SHIFT][];
+        this.pageCount = 0;
+        if (path == null) this.path = new int[INITIAL_PATH];
+        this.generation = 0;
+        Arrays.fill(openLists, null);
+    }
+
+    /**
+     * Adapts the context to a grid of a different size.
+     * Does nothing if the size is unchanged.
+     *
+     * @param width  grid width in cells
+     * @param height grid height in cells
+     */
+    public void resize(int width, int height) {
+        if (this.width == width && this.height == height) return;
+        this.width = width;
+        this.height = height;
+        allocate();
+    }
+
+    // === GETTERS ===
+
+    public int getWidth() { return width; }
+
+    public int getHeight() { return height; }
+
+    /**
+     * Returns the path buffer of the last search.
+     * Only the first {@link #getPathLength()} entries are valid; the buffer is
+     * overwritten (or replaced by a larger one) by the next search.
+     *
+     * @return packed cell indices ({@code y * width + x}) from start to goal
+     */
+    public int[] getPath() { return path; }
+
+    public int getPathLength() { return pathLength; }
+
+    public int getExpanded() { return expanded; }
+
+    public int getHeapOperations() { return heapOperations; }
+
+    /**
+     * Attaches a flag that aborts the following searches once it is set.
+     * Used by {@link PathService} to drop superseded requests.
+     *
+     * @param flag the cancellation flag, or null to make searches non-cancellable
+     */
+    void setCancelFlag(AtomicBoolean flag) { this.cancelFlag = flag; }
+
+    /**
+     * Returns an exact-size copy of the last path, safe to keep after the next search.
+     *
+     * @return packed cell indices from start to goal
+     */
+    public int[] copyPath() { return Arrays.copyOf(path, pathLength); }
+
+    // === SEARCH STATE ===
+
+    /**
+     * Starts a new search generation with the default binary heap open list.
+     */
+    void begin() { begin(OpenListType.BINARY_HEAP); }
+
+    /**
+     * Starts a new search generation, invalidating all per-cell state in O(1).
+     *
+     * @param type open list implementation to use for this search
+     */
+    void begin(OpenListType type) {
+        if (pageCount > MAX_RETAINED_PAGES) { // a huge search ran: do not keep its memory
+            Arrays.fill(pages, null);
+            pageCount = 0;
+        }
+        generation++;
+        if (generation == 0) { // wrapped around: stale stamps could collide, clear once
+            for (int[] page : pages) {
+                if (page != null) Arrays.fill(page, 0);
+            }
+            generation = 1;
+        }
+        open = openList(type);
+        open.clear();
+        pathLength = 0;
+        expanded = 0;
+        heapOperations = 0;
+        openCount = 0;
+    }
+
+    /**
+     * Returns the g-score of a cell in the current generation.
+     *
+     * @param cell packed cell index
+     * @return the cost from the start, or {@link #INF} if not reached yet
+     */
+    int g(int cell) {
+        int[] page = pages[cell >>> PAGE_SHIFT];
+        if (page == null) return INF;
+        int o = (cell & (PAGE_CELLS - 1)) * STRIDE;
+        return page[o] == generation ? page[o + 2] : INF;
+    }
+
+    /**
+     * Records a better cost and parent for a cell.
+     *
+     * @param cell packed cell index
+     * @param g    new cost from the start
+     * @param from parent cell index
+     */
+    void relax(int cell, int g, int from) {
+        int[] page = page(cell);
+        int o = (cell & (PAGE_CELLS - 1)) * STRIDE;
+        page[o] = generation;
+        page[o + 2] = g;
+        page[o + 3] = from;
+    }
+
+    /**
+     * Returns the parent of a cell reached in the current generation.
+     */
+    int parent(int cell) { return pages[cell >>> PAGE_SHIFT][(cell & (PAGE_CELLS - 1)) * STRIDE + 3]; }
+
+    boolean isClosed(int cell) {
+        int[] page = pages[cell >>> PAGE_SHIFT];
+        return page != null && page[(cell & (PAGE_CELLS - 1)) * STRIDE + 1] == generation;
+    }
+
+    void close(int cell) {
+        page(cell)[(cell & (PAGE_CELLS - 1)) * STRIDE + 1] = generation;
+        expanded++;
+    }
+
+    /**
+     * Returns the page holding a cell, allocating it on first write.
+     */
+    private int[] page(int cell) {
+        int[] page = pages[cell >>> PAGE_SHIFT];
+        if (page == null) {
+            page = new int[PAGE_CELLS * STRIDE];
+            pages[cell >>> PAGE_SHIFT] = page;
+            pageCount++;
+        }
+        return page;
+    }
+
+    /**
+     * Checks whether the running search was cancelled.
+     * The shared flag is only read every 256 expansions to keep the hot loop cheap.
+     *
+     * @return true if the search should stop without a result
+     */
+    boolean isCancelled() {
+        return cancelFlag != null && (expanded & 255) == 0 && cancelFlag.get();
+    }
+
+    // === OPEN LIST ===
+
+    /**
+     * Returns the open list of the given type, creating it on first use.
+     */
+    private OpenList openList(OpenListType type) {
+        OpenList list = openLists[type.ordinal()];
+        if (list == null) {
+            int cells = width * height;
+            list = switch (type) {
+                case BINARY_HEAP  -> new BinaryHeapOpenList();
+                case INDEXED_HEAP -> new IndexedHeapOpenList(cells);
+                case BUCKET       -> new BucketOpenList(cells);
+            };
+            openLists[type.ordinal()] = list;
+        }
+        return list;
+    }
+
+    /**
+     * Adds a cell to the open list or lowers its priority.
+     * With the binary heap a stale duplicate may remain; the caller recognises
+     * it through {@link #isClosed(int)}.
+     *
+     * @param cell packed cell index
+     * @param f    priority (g + h)
+     */
+    void push(int cell, int f) {
+        heapOperations++;
+        openCount++;
+        open.insertOrDecrease(cell, f);
+    }
+
+    /**
+     * Removes the entry with the lowest f.
+     *
+     * @return packed cell index of the removed entry
+     */
+    int pop() {
+        heapOperations++;
+        openCount--;
+        return open.pop();
+    }
+
+    boolean isOpenEmpty() { return open.isEmpty(); }
+
+    /**
+     * Returns the number of cells pushed but not yet popped in this search.
+     * With the binary heap this includes stale duplicates, so it is an upper bound
+     * of the open list size.
+     */
+    int getOpenCount() { return openCount; }
+
+    // === PATH ===
+
+    /**
+     * Grows the path buffer to hold at least {@code capacity} cells, keeping its content.
+     * Callers that write the buffer directly reserve first.
+     *
+     * @param capacity number of cells the caller is about to write
+     * @return the path buffer
+     */
+    int[] reservePath(int capacity) {
+        if (path.length < capacity) path = Arrays.copyOf(path, Math.max(capacity, path.length * 2));
+        return path;
+    }
+
+    /**
+     * Overrides the number of valid path entries after the caller rewrote the
+     * path buffer in place (e.g. expanded jump points into single steps).
+     *
+     * @param length new path length, at most the capacity reserved with {@link #reservePath(int)}
+     */
+    void setPathLength(int length) { pathLength = length; }
+
+    /**
+     * Rebuilds the path ending at {@code goal} into the path buffer.
+     *
+     * @param goal packed goal cell index
+     * @return the number of cells in the path
+     */
+    int rebuildPath(int goal) {
+        int length = 0;
+        for (int c = goal; c != NO_PARENT; c = parent(c)) length++;
+        int[] path = reservePath(length);
+        int i = length;
+        for (int c = goal; c != NO_PARENT; c = parent(c)) path[--i] = c;
+        pathLength = length;
+        return length;
+    }
+}
@@ -1,8 +1,9 @@
 package com.diakonovtomer.projektObjektorientierung.game;
 
+import com.diakonovtomer.projektObjektorientierung.Config;
 import com.diakonovtomer.projektObjektorientierung.model.map.MapManager;
-
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
         
 /**
  * Handles pathfinding logic using A* algorithm and stores the latest computed path.
@@ -13,65 +14,505 @@ import java.util.List;
  * 
  * <p>
  * The class assumes that A* operates on a tile-based grid and returns
- * a list of coordinate pairs representing the path.
+ * the path as packed cell indices ({@code y * width + x}). Search memory is
+ * owned by a single {@link PathContext} and reused for every query; it grows with
+ * the area searched, not with the map.
  * </p>
  * 
  * @author Artiem
  */
 public class PathManager {
     
-    /** The currently stored path (as list of {y, x} coordinates). */
-    private List<int[]> path;
-    
     /** Reference to the map manager used to retrieve the tile grid. */
     private MapManager mapManager;
     
+    /** Reusable search buffers; the latest path lives in its path buffer. */
+    private final PathContext context;
+    
+    /** Open list implementation used by default (config key {@code PATH_OPEN_LIST}). */
+    private final OpenListType openListType;
+    
+    /** Movement mode / search variant (config key {@code PATH_DIR_MODE}, default OCTILE; JUMP_POINT is opt-in). */
+    private final DirMode dirMode;
+    
+    /** Hierarchical layer for long queries, built on first use. */
+    private HierarchicalPathfinder hierarchical;
+    
+    /** Cluster size of the hierarchical layer (config key {@code PATH_HPA_CLUSTER}). */
+    private final int hpaClusterSize;
+    
+    /** Minimum distance in tiles for hierarchical search (config key {@code PATH_HPA_DISTANCE}). */
+    private final int hpaDistance;
+    
+    /** Background searches, used when {@code PATH_MODE=ASYNC}. */
+    private final PathService pathService = new PathService();
+    
+    /** How the player's requests are executed (config key {@code PATH_MODE}). */
+    private final PathMode pathMode;
+    
+    /** Resumable search, used when {@code PATH_MODE=SLICED}; created on first use. */
+    private SlicedAStar sliced;
+    
+    /** Expansions per slice (config key {@code PATH_SLICE_NODES}, 0 = unlimited). */
+    private final int sliceNodes;
+    
+    /** Time per slice in microseconds (config key {@code PATH_SLICE_MICROS}, 0 = unlimited). */
+    private final long sliceMicros;
+    
+    /** Incremental planner for the walker's goal, used when {@code PATH_MODE=INCREMENTAL}. */
+    private DStarLite incremental;
+    
+    /** True while the incremental planner follows a goal. */
+    private boolean incrementalActive = false;
+    
+    /** Tiles changed since the last incremental repair, packed indices. */
+    private int[] changedTiles = new int[16];
+    
+    /** Number of valid entries in {@link #changedTiles}. */
+    private int changedCount = 0;
+    
+    /** Recently computed paths (config key {@code PATH_CACHE_SIZE}, 0 disables caching). */
+    private final PathCache cache;
+    
+    /** Goal-side buffers of bidirectional search, created on first use. */
+    private PathContext backwardContext;
     
-    private AStar aStar;
+    /** Minimum distance in tiles for bidirectional search (config key {@code PATH_BIDIRECTIONAL_DISTANCE}, 0 disables it). */
+    private final int bidirectionalDistance;
+    
+    /** Minimum distance in tiles for routing over the room graph (config key {@code PATH_ROOM_DISTANCE}, 0 disables it). */
+    private final int roomDistance;
+    
+    /** Result buffer of room-graph routing; grows, never shrinks. */
+    private int[] roomPath = new int[64];
+    
+    /** Space-time planner for batches of agents (monsters, party members), created on first use. */
+    private CooperativePlanner cooperative;
+    
+    /** Time steps every cooperative plan covers (config key {@code PATH_COOP_WINDOW}). */
+    private final int cooperativeWindow;
+    
+    /** Goal distance fields the cooperative planner keeps (config key {@code PATH_COOP_FIELDS}). */
+    private final int cooperativeFields;
+    
+    /** Whether paths are collapsed into any-angle waypoints (config key {@code PATH_SMOOTHING}). */
+    private final boolean smoothing;
+    
+    /** Buffer holding the latest path (the context's or the hierarchical layer's). */
+    private int[] path;
+    
+    /** Number of valid entries in {@link #path}. */
+    private int pathLength = 0;
     
     /**
      * Constructs a {@code PathManager} with a specific map manager.
      *
      * @param mapManager the map manager containing the grid
      */
-    public PathManager(MapManager mapManager){ this.mapManager = mapManager; }
+    public PathManager(MapManager mapManager){
+        this.mapManager = mapManager;
+        this.context = new PathContext(mapManager.getWidth(), mapManager.getHeight());
+        this.openListType = OpenListType.fromConfig(Config.get("PATH_OPEN_LIST"));
+        this.dirMode = DirMode.fromConfig(Config.get("PATH_DIR_MODE"));
+        this.hpaClusterSize = Integer.parseInt(Config.get("PATH_HPA_CLUSTER", "16"));
+        this.hpaDistance = Integer.parseInt(Config.get("PATH_HPA_DISTANCE", "64"));
+        this.bidirectionalDistance = Integer.parseInt(Config.get("PATH_BIDIRECTIONAL_DISTANCE", "40"));
+        this.roomDistance = Integer.parseInt(Config.get("PATH_ROOM_DISTANCE", "48"));
+        this.cooperativeWindow = Integer.parseInt(Config.get("PATH_COOP_WINDOW", "16"));
+        this.cooperativeFields = Integer.parseInt(Config.get("PATH_COOP_FIELDS", "16"));
+        this.smoothing = Boolean.parseBoolean(Config.get("PATH_SMOOTHING", "true"));
+        this.pathMode = PathMode.fromConfig(Config.get("PATH_MODE"));
+        int cacheSize = Integer.parseInt(Config.get("PATH_CACHE_SIZE", "64"));
+        this.cache = cacheSize > 0 ? new PathCache(cacheSize) : null;
+        this.sliceNodes = Integer.parseInt(Config.get("PATH_SLICE_NODES", "500"));
+        this.sliceMicros = Long.parseLong(Config.get("PATH_SLICE_MICROS", "1000"));
+        this.path = context.getPath();
+        if (pathMode == PathMode.INCREMENTAL) mapManager.addTileListener(this::onTileChanged);
+    }
+    
+    /**
+     * Returns the buffer holding the currently stored path.
+     * Only the first {@link #getPathLength()} entries are valid, and the buffer
+     * is overwritten by the next {@link #findPath(int, int, int, int)} call.
+     *
+     * @return packed cell indices ({@code y * width + x}) from start to goal
+     */
+    public int[] getPath(){ return path; }
+    
+    /**
+     * Returns the number of cells in the currently stored path.
+     *
+     * @return path length, 0 if the last search failed
+     */
+    public int getPathLength(){ return pathLength; }
+    
+    // === CACHE STATISTICS ===
+    
+    public long getCacheHits(){ return cache == null ? 0 : cache.getHits(); }
+    
+    public long getCacheSubPathHits(){ return cache == null ? 0 : cache.getSubPathHits(); }
+    
+    public long getCacheMisses(){ return cache == null ? 0 : cache.getMisses(); }
+    
+    public long getCacheEvictions(){ return cache == null ? 0 : cache.getEvictions(); }
+    
+    /**
+     * Returns how path requests should be issued (config key {@code PATH_MODE}):
+     * {@link #findPath}, {@link #requestPath} or {@link #startSlicedPath}/{@link #stepSlicedPath}/{@link #routeSlicedPath}.
+     *
+     * @return the configured mode
+     */
+    public PathMode getPathMode(){ return pathMode; }
+    
+    /**
+     * Collapses a tile path into any-angle waypoints in place (string pulling).
+     * Consecutive waypoints are joined by straight segments whose tiles are all
+     * passable and which never cut a wall corner, so a walker moving in straight
+     * lines between them stays on walkable ground. The first and last cell are kept.
+     * Does nothing if {@code PATH_SMOOTHING} is disabled.
+     *
+     * @param cells  packed tile indices from start to goal, overwritten with the waypoints
+     * @param length number of valid entries in {@code cells}
+     * @return the number of waypoints now stored in {@code cells}
+     */
+    public int smoothPath(int[] cells, int length){
+        if (!smoothing) return length;
+        return PathSmoother.smooth(mapManager.getPassability(), cells, length, cells);
+    }
+    
+    /**
+     * Computes a path from the given source to destination.
+     * Short queries run flat A* (or JPS) over the tile grid, queries longer than
+     * {@code PATH_BIDIRECTIONAL_DISTANCE} tiles run bidirectional A* (unless JPS is
+     * configured), and queries longer than {@code PATH_HPA_DISTANCE} tiles on maps
+     * spanning several clusters use the hierarchical layer. On dungeon maps with doors
+     * (at most {@code PATH_ROOM_MAX_PORTALS}), queries longer than
+     * {@code PATH_ROOM_DISTANCE} tiles are routed over the room graph first. Goals outside the start's
+     * connected component are rejected in O(1) without searching, and recently computed
+     * paths (or their suffixes) are served from an LRU cache. The result is stored in a
+     * reusable buffer, see {@link #getPath()}.
+     *
+     * @param fromY starting tile Y coordinate
+     * @param fromX starting tile X coordinate
+     * @param toY target tile Y coordinate
+     * @param toX target tile X coordinate
+     * @return the number of cells in the path (including the start), 0 if unreachable
+     */
+    public int findPath(int fromY, int fromX, int toY, int toX){
+        return findPath(fromY, fromX, toY, toX, openListType);
+    }
+    
+    /**
+     * Computes a path with an explicitly chosen open list implementation.
+     *
+     * @param fromY starting tile Y coordinate
+     * @param fromX starting tile X coordinate
+     * @param toY target tile Y coordinate
+     * @param toX target tile X coordinate
+     * @param open open list implementation
+     * @return the number of cells in the path (including the start), 0 if unreachable
+     */
+    int findPath(int fromY, int fromX, int toY, int toX, OpenListType open){
+        if (!mapManager.isReachable(fromY, fromX, toY, toX)) {
+            // Different components (or a wall): no search can succeed
+            pathLength = 0;
+            return 0;
+        }
+        int width = mapManager.getWidth();
+        int start = fromY * width + fromX, goal = toY * width + toX;
+        int version = mapManager.getVersion();
+        int[] cached = cache == null ? null : cache.get(start, goal, dirMode, version);
+        if (cached != null) {
+            path = cached;
+            pathLength = cached.length;
+            return pathLength;
+        }
+        
+        int distance = Math.max(Math.abs(toY - fromY), Math.abs(toX - fromX));
+        if (roomDistance > 0 && distance > roomDistance && mapManager.getRoomGraph().isRoutable()) {
+            pathLength = findRoomPath(fromY, fromX, toY, toX, open);
+            path = roomPath;
+        } else if (distance > hpaDistance && useHierarchical()) {
+            pathLength = hierarchical.findPath(fromY, fromX, toY, toX);
+            path = hierarchical.getPath();
+        } else if (bidirectionalDistance > 0 && distance > bidirectionalDistance && !dirMode.jumpPoints) {
+            // JPS already skips the symmetric frontier and stays faster than two plain A* balls
+            context.resize(mapManager.getWidth(), mapManager.getHeight());
+            if (backwardContext == null) backwardContext = new PathContext(mapManager.getWidth(), mapManager.getHeight());
+            backwardContext.resize(mapManager.getWidth(), mapManager.getHeight());
+            pathLength = BidirectionalAStar.findPath(mapManager.getPassability(), context, backwardContext,
+                                                     fromY, fromX, toY, toX, dirMode, open);
+            path = context.getPath();
+        } else {
+            context.resize(mapManager.getWidth(), mapManager.getHeight());
+            pathLength = AStar.findPath(mapManager.getPassability(), context, fromY, fromX, toY, toX, dirMode, open);
+            path = context.getPath();
+        }
+        if (cache != null && pathLength > 0) cache.put(start, goal, dirMode, Arrays.copyOf(path, pathLength), version);
+        return pathLength;
+    }
+    
+    /**
+     * Computes a path on a background worker.
+     * A newer request cancels the previous one; its future then completes with a
+     * {@link java.util.concurrent.CancellationException}. Unreachable goals are
+     * answered immediately with an empty path, cached paths with a completed future.
+     * The worker searches a snapshot of the passability mask taken here, so tile changes
+     * made while it runs do not affect it. Background searches always run flat A* (or JPS):
+     * room-graph, hierarchical and bidirectional search are only used by
+     * {@link #findPath(int, int, int, int)}, which is why {@code PATH_MODE} defaults to SYNC.
+     *
+     * @param fromY starting tile Y coordinate
+     * @param fromX starting tile X coordinate
+     * @param toY target tile Y coordinate
+     * @param toX target tile X coordinate
+     * @return future completed with packed cell indices from start to goal (empty if unreachable)
+     */
+    public CompletableFuture<int[]> requestPath(int fromY, int fromX, int toY, int toX){
+        if (!mapManager.isReachable(fromY, fromX, toY, toX)) {
+            pathService.cancel();
+            return CompletableFuture.completedFuture(new int[0]);
+        }
+        int width = mapManager.getWidth();
+        int start = fromY * width + fromX, goal = toY * width + toX;
+        int version = mapManager.getVersion();
+        int[] cached = cache == null ? null : cache.get(start, goal, dirMode, version);
+        if (cached != null) {
+            pathService.cancel();
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<int[]> future = pathService.submit(mapManager.getPassability().snapshot(), fromY, fromX, toY, toX, dirMode, openListType);
+        if (cache == null) return future;
+        // Runs on the worker; the path belongs to the snapshot's version, the cache drops it if the map changed meanwhile
+        return future.thenApply(cells -> {
+            if (cells.length > 0) cache.put(start, goal, dirMode, cells, version);
+            return cells;
+        });
+    }
+    
+    /**
+     * Starts a search that is advanced by {@link #stepSlicedPath()} once per frame.
+     * {@link #routeSlicedPath(int, int)} returns the route to its best node so far.
+     * Replaces a sliced search that is still running.
+     *
+     * @param fromY starting tile Y coordinate
+     * @param fromX starting tile X coordinate
+     * @param toY target tile Y coordinate
+     * @param toX target tile X coordinate
+     * @return false if the goal is unreachable (no search was started)
+     */
+    public boolean startSlicedPath(int fromY, int fromX, int toY, int toX){
+        if (sliced == null) sliced = new SlicedAStar(mapManager.getWidth(), mapManager.getHeight());
+        if (!mapManager.isReachable(fromY, fromX, toY, toX)) return false;
+        sliced.start(mapManager.getPassability(), fromY, fromX, toY, toX, dirMode, openListType);
+        return true;
+    }
+    
+    /**
+     * Runs one frame budget of the sliced search. Does nothing once it has finished.
+     */
+    public void stepSlicedPath(){
+        if (isSlicedPathRunning()) sliced.step(sliceNodes, sliceMicros);
+    }
     
     /**
-     * Returns the currently stored path.
+     * Stores the route from the walker's tile to the best node the sliced search has
+     * found so far (the goal once the search finished). The walker's tile must be the
+     * search start or lie on a route returned earlier by this search.
      *
-     * @return the current path as a list of coordinate pairs
+     * @param atY tile Y coordinate the walker currently stands on
+     * @param atX tile X coordinate the walker currently stands on
+     * @return the number of cells in the stored route (see {@link #getPath()}), 0 if none
      */
-    public List<int[]> getPath(){ return this.path; }
+    public int routeSlicedPath(int atY, int atX){
+        pathLength = sliced.route(atY * mapManager.getWidth() + atX, sliced.getBest());
+        path = sliced.getRoute();
+        return pathLength;
+    }
     
     /**
-     * Manually sets a new path.
+     * Returns whether the sliced search still needs more frames.
      *
-     * @param newPath a list of coordinate pairs representing the path
+     * @return true while the sliced search is running
      */
-    public void setPath(List<int[]> newPath){ this.path = newPath; }
+    public boolean isSlicedPathRunning(){
+        return sliced != null && sliced.getStatus() == SlicedAStar.Status.RUNNING;
+    }
     
     /**
-     * Computes a path from the given source to destination using A* algorithm.
+     * Plans a path with the incremental planner and keeps following its goal, so later
+     * tile changes are repaired by {@link #updateIncrementalPath(int, int)}.
      *
      * @param fromY starting tile Y coordinate
      * @param fromX starting tile X coordinate
      * @param toY target tile Y coordinate
      * @param toX target tile X coordinate
-     * @return the computed path as a list of {y, x} pairs
+     * @return the number of cells in the path (see {@link #getPath()}), 0 if unreachable
+     */
+    public int startIncrementalPath(int fromY, int fromX, int toY, int toX){
+        changedCount = 0;
+        incrementalActive = false;
+        if (!mapManager.isReachable(fromY, fromX, toY, toX)) {
+            pathLength = 0;
+            return 0;
+        }
+        if (incremental == null) incremental = new DStarLite(mapManager.getWidth(), mapManager.getHeight(), dirMode);
+        pathLength = incremental.plan(mapManager.getPassability(), fromY, fromX, toY, toX);
+        path = incremental.getPath();
+        incrementalActive = pathLength > 0;
+        return pathLength;
+    }
+    
+    /**
+     * Repairs the followed path if tiles changed since the last call.
+     *
+     * @param atY tile Y coordinate the walker currently stands on
+     * @param atX tile X coordinate the walker currently stands on
+     * @return -1 if nothing changed, otherwise the number of cells in the repaired
+     *         path (see {@link #getPath()}), 0 if the goal became unreachable
+     */
+    public int updateIncrementalPath(int atY, int atX){
+        if (!incrementalActive || changedCount == 0) return -1;
+        pathLength = incremental.repair(atY, atX, changedTiles, changedCount);
+        path = incremental.getPath();
+        changedCount = 0;
+        return pathLength;
+    }
+    
+    /**
+     * Stops following the goal of the incremental planner (e.g. when it was reached).
+     */
+    public void stopIncrementalPath(){
+        incrementalActive = false;
+        changedCount = 0;
+    }
+    
+    /**
+     * Records a changed tile for the next incremental repair.
+     *
+     * @param tileY changed tile row
+     * @param tileX changed tile column
+     */
+    private void onTileChanged(int tileY, int tileX){
+        if (!incrementalActive) return;
+        if (changedCount == changedTiles.length) changedTiles = Arrays.copyOf(changedTiles, changedCount * 2);
+        changedTiles[changedCount++] = tileY * mapManager.getWidth() + tileX;
+    }
+    
+    // === COOPERATIVE AGENTS ===
+    
+    /**
+     * Registers an agent for cooperative planning. Agents are planned together by
+     * {@link #planAgents()} so that their moves never collide: higher-priority agents
+     * plan first and later agents wait or walk around them.
+     *
+     * @param fromY    starting tile Y coordinate
+     * @param fromX    starting tile X coordinate
+     * @param toY      target tile Y coordinate
+     * @param toX      target tile X coordinate
+     * @param priority higher values plan first
+     * @return the agent id
+     */
+    public int addAgent(int fromY, int fromX, int toY, int toX, int priority){
+        if (cooperative == null) {
+            cooperative = new CooperativePlanner(mapManager.getWidth(), mapManager.getHeight(), cooperativeWindow, cooperativeFields);
+        }
+        int width = mapManager.getWidth();
+        return cooperative.addAgent(fromY * width + fromX, toY * width + toX, priority);
+    }
+    
+    /**
+     * Changes the target of an agent; only this agent (and agents it displaces) is
+     * re-planned by the next {@link #planAgents()}.
+     *
+     * @param agent agent id
+     * @param toY   target tile Y coordinate
+     * @param toX   target tile X coordinate
+     */
+    public void setAgentGoal(int agent, int toY, int toX){
+        cooperative.setGoal(agent, toY * mapManager.getWidth() + toX);
+    }
+    
+    /**
+     * Removes an agent and frees the tiles it had reserved.
+     *
+     * @param agent agent id
+     */
+    public void removeAgent(int agent){ cooperative.removeAgent(agent); }
+    
+    /**
+     * Plans all agents that need a new plan: new agents, changed targets, agents
+     * that had to wait for a blocked tile and agents that used up half of their window
+     * ({@code PATH_COOP_WINDOW} steps). A map change re-plans all agents.
+     *
+     * @return the number of agents planned
+     */
+    public int planAgents(){
+        if (cooperative == null) return 0;
+        return cooperative.plan(mapManager.getPassability(), mapManager.getVersion());
+    }
+    
+    /**
+     * Moves every agent one tile (or one wait) along its plan.
+     */
+    public void advanceAgents(){
+        if (cooperative != null) cooperative.advance();
+    }
+    
+    /**
+     * Returns the tile an agent stands on, or will stand on a number of steps ahead.
+     *
+     * @param agent agent id
+     * @param ahead steps into the future, 0 for the current tile
+     * @return packed tile index ({@code y * width + x})
+     */
+    public int getAgentCell(int agent, int ahead){ return cooperative.getPlannedCell(agent, ahead); }
+    
+    /**
+     * Routes over the room graph and fills in the legs between consecutive portals
+     * with A*. Each leg stays within the rooms around one portal, so the searches
+     * are short no matter how far apart start and goal are.
+     *
+     * @return the number of cells in {@link #roomPath}, 0 if unreachable
+     */
+    private int findRoomPath(int fromY, int fromX, int toY, int toX, OpenListType open){
+        int[] route = mapManager.getRoomGraph().route(fromY, fromX, toY, toX);
+        if (route == null) return 0;
+        int width = mapManager.getWidth();
+        context.resize(width, mapManager.getHeight());
+        int length = 0;
+        roomPath[length++] = route[0];
+        for (int i = 1; i < route.length; i++) {
+            int a = route[i - 1], b = route[i];
+            int leg = AStar.findPath(mapManager.getPassability(), context, a / width, a % width, b / width, b % width, dirMode, open);
+            if (leg == 0) return 0;
+            if (length + leg > roomPath.length) roomPath = Arrays.copyOf(roomPath, Math.max(roomPath.length * 2, length + leg));
+            System.arraycopy(context.getPath(), 1, roomPath, length, leg - 1);
+            length += leg - 1;
+        }
+        return length;
+    }
+    
+    /**
+     * Checks whether the map is large enough for the hierarchical layer to pay off,
+     * building the layer on first use.
+     *
+     * @return true if hierarchical search should be used for long queries
      */
-    public List<int[]> findPath(int fromY, int fromX, int toY, int toX){
-        this.path = aStar.findPath(mapManager.getMap(), fromY, fromX, toY, toX, DirMode.OCTILE);
-        return this.path;
+    private boolean useHierarchical(){
+        if (Math.max(mapManager.getWidth(), mapManager.getHeight()) < 4 * hpaClusterSize) return false;
+        if (hierarchical == null) hierarchical = new HierarchicalPathfinder(mapManager, hpaClusterSize, dirMode);
+        return true;
     }
     
     /**
      * Prints the current path to the console in human-readable form.
      */
-    public void printPath(){ aStar.printPath(this.path); }
+    public void printPath(){ AStar.printPath(getPath(), getPathLength(), context.getWidth()); }
     
     /**
      * Prints the current path as an overlay on the tile grid.
      * Walls are shown as '#', passable tiles as '.', and path tiles as '*'.
      */
-    public void printPathOnGrid(){ aStar.printPathOnGrid(mapManager.getMap(), this.path); }
+    public void printPathOnGrid(){ AStar.printPathOnGrid(mapManager.getPassability(), getPath(), getPathLength()); }
 }
@@ -0,0 +1,35 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+/**
+ * Selects how the player's path requests are executed (config key {@code PATH_MODE}).
+ *
+ * @author Artiem
+ */
+public enum PathMode {
+
+    /** The search runs to completion inside the click handler. */
+    SYNC,
+
+    /** The search runs on a background worker, see {@link PathService}; flat A* only, without room-graph, hierarchical or bidirectional search. */
+    ASYNC,
+
+    /** The search runs on the game thread in per-frame slices, see {@link SlicedAStar}. */
+    SLICED,
+
+    /** The search runs inside the click handler and is repaired when tiles change, see {@link DStarLite}. */
+    INCREMENTAL;
+
+    /**
+     * Parses a configuration value, falling back to {@link #SYNC}.
+     *
+     * @param value the configured name (case-insensitive), may be {@code null}
+     * @return the matching mode
+     */
+    public static PathMode fromConfig(String value) {
+        if (value == null) return SYNC;
+        for (PathMode m : values()) {
+            if (m.name().equalsIgnoreCase(value.trim())) return m;
+        }
+        return SYNC;
+    }
+}
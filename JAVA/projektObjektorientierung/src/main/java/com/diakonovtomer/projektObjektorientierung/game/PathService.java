@@ -0,0 +1,124 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import com.diakonovtomer.projektObjektorientierung.Config;
+import com.diakonovtomer.projektObjektorientierung.model.map.PassabilityMask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs path searches on a background worker pool so the JavaFX thread never blocks.
+ * <p>
+ * Every request returns a {@link CompletableFuture} completed with an exact-size copy
+ * of the path (an empty array if no path exists). Only one request per service is
+ * alive at a time: submitting a new one cancels the previous request, which then
+ * completes exceptionally with a {@link java.util.concurrent.CancellationException}.
+ * A cancelled request that is still queued is skipped; a running one stops at its
+ * next cancellation check in {@link AStar} or {@link JumpPointSearch}.
+ * </p>
+ *
+ * <p>
+ * The workers are a small fixed pool of daemon threads shared by all services
+ * (config key {@code PATH_THREADS}, default 2). Each worker owns a thread-local
+ * {@link PathContext}, so searches on different threads never share buffers.
+ * </p>
+ *
+ * <p>
+ * The grid must not change while a request runs: callers pass a
+ * {@link PassabilityMask#snapshot()}, which tile changes on the game thread leave alone.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class PathService {
+
+    /** Shared worker pool, created on first use. */
+    private static ExecutorService executor;
+
+    /** Search buffers of each worker thread. */
+    private static final ThreadLocal<PathContext> CONTEXTS = new ThreadLocal<>();
+
+    /** Cancellation flag of the latest request. */
+    private AtomicBoolean currentCancel;
+
+    /** Future of the latest request. */
+    private CompletableFuture<int[]> current;
+
+    /**
+     * Submits a search, cancelling the previous request of this service.
+     * Must be called from a single thread (the JavaFX thread).
+     *
+     * @param grid   passability of the map, not changed while the search runs
+     * @param startY starting row (Y)
+     * @param startX starting column (X)
+     * @param goalY  goal row (Y)
+     * @param goalX  goal column (X)
+     * @param mode   movement mode / search variant
+     * @param open   open list implementation
+     * @return future completed with the packed path cells (empty if no path exists)
+     */
+    CompletableFuture<int[]> submit(PassabilityMask grid, int startY, int startX, int goalY, int goalX,
+                                    DirMode mode, OpenListType open) {
+        cancel();
+        AtomicBoolean cancelFlag = new AtomicBoolean(false);
+        CompletableFuture<int[]> future = new CompletableFuture<>();
+        currentCancel = cancelFlag;
+        current = future;
+
+        executor().execute(() -> {
+            if (cancelFlag.get()) return; // superseded while queued
+            PathContext ctx = context(grid);
+            ctx.setCancelFlag(cancelFlag);
+            try {
+                int length = AStar.findPath(grid, ctx, startY, startX, goalY, goalX, mode, open);
+                if (!cancelFlag.get()) future.complete(length == 0 ? new int[0] : ctx.copyPath());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                ctx.setCancelFlag(null);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Cancels the latest request, if it is still pending.
+     */
+    void cancel() {
+        if (current == null) return;
+        currentCancel.set(true);
+        current.cancel(false);
+        current = null;
+        currentCancel = null;
+    }
+
+    /**
+     * Returns the calling worker's search context, sized for the grid.
+     */
+    private static PathContext context(PassabilityMask grid) {
+        int height = grid.getHeight(), width = grid.getWidth();
+        PathContext ctx = CONTEXTS.get();
+        if (ctx == null) {
+            ctx = new PathContext(width, height);
+            CONTEXTS.set(ctx);
+        }
+        ctx.resize(width, height);
+        return ctx;
+    }
+
+    /**
+     * Returns the shared worker pool, creating it on first use.
+     */
+    private static synchronized ExecutorService executor() {
+        if (executor == null) {
+            int threads = Math.max(1, Integer.parseInt(Config.get("PATH_THREADS", "2")));
+            executor = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "path-worker");
+                thread.setDaemon(true); // never keeps the application alive
+                return thread;
+            });
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,99 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import com.diakonovtomer.projektObjektorientierung.model.map.PassabilityMask;
+
+/**
+ * Any-angle post-processing of grid paths ("string pulling").
+ * <p>
+ * Starting from the first cell, the smoother keeps the farthest later path cell that
+ * is still in line of sight and drops everything in between, so straight and
+ * zig-zag runs collapse into a few waypoints joined by straight segments.
+ * </p>
+ *
+ * <p>
+ * Line of sight is tested on the supercover of the segment between the tile centres:
+ * every tile the segment touches must be passable. When the segment passes exactly
+ * through a tile corner, both tiles beside the corner are part of the supercover, so
+ * the no-corner-cutting rule of {@link AStar} holds for the smoothed path as well.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class PathSmoother {
+
+    /** Prevent instantiation of static utility class */
+    private PathSmoother() {}
+
+    /**
+     * Collapses a path into the waypoints of an any-angle path.
+     * The first and last cell are always kept.
+     *
+     * @param grid   passability of the map
+     * @param path   packed path cells from start to goal
+     * @param length number of valid entries in {@code path}
+     * @param out    receives the waypoints, at least {@code length} long
+     *               (may be the same array as {@code path})
+     * @return the number of waypoints written to {@code out}
+     */
+    static int smooth(PassabilityMask grid, int[] path, int length, int[] out) {
+        if (length <= 2) {
+            if (out != path) System.arraycopy(path, 0, out, 0, length);
+            return length;
+        }
+        final int cols = grid.getWidth();
+        int count = 0;
+        int anchor = path[0];
+        out[count++] = anchor;
+        int i = 1;
+        while (i < length - 1) {
+            // Skip path[i] while the anchor still sees the cell after it
+            int next = path[i + 1];
+            if (lineOfSight(grid, anchor / cols, anchor % cols, next / cols, next % cols)) {
+                i++;
+                continue;
+            }
+            anchor = path[i];
+            out[count++] = anchor; // writes never overtake reads: count <= i
+            i++;
+        }
+        out[count++] = path[length - 1];
+        return count;
+    }
+
+    /**
+     * Checks that every tile touched by the segment between two tile centres is passable.
+     *
+     * @param y0 first tile row
+     * @param x0 first tile column
+     * @param y1 second tile row
+     * @param x1 second tile column
+     * @return true if the straight segment is walkable
+     */
+    static boolean lineOfSight(PassabilityMask grid, int y0, int x0, int y1, int x1) {
+        int dx = Math.abs(x1 - x0), dy = Math.abs(y1 - y0);
+        int sx = Integer.signum(x1 - x0), sy = Integer.signum(y1 - y0);
+        int x = x0, y = y0;
+        // error > 0: the next boundary crossed is vertical (step x), < 0: horizontal (step y)
+        int error = dx - dy;
+        dx *= 2;
+        dy *= 2;
+        for (int n = dx / 2 + dy / 2; n > 0; n--) {
+            if (!grid.isPassable(y, x)) return false;
+            if (error > 0) {
+                x += sx;
+                error -= dy;
+            } else if (error < 0) {
+                y += sy;
+                error += dx;
+            } else {
+                // Exactly through a corner: both side tiles are touched
+                if (!grid.isPassable(y, x + sx) || !grid.isPassable(y + sy, x)) return false;
+                x += sx;
+                y += sy;
+                error += dx - dy;
+                n--;
+            }
+        }
+        return grid.isPassable(y1, x1);
+    }
+}
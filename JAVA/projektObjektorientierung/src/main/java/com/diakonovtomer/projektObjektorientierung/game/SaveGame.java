@@ -17,7 +17,7 @@ public class SaveGame {
     /** Current level number. */
     private int level;
     
-    /** ASCII representation of the map layout. */
+    /** Encoded map layout, ASCII or binary (see {@code MapCodec}). */
     private String asciiMap;
     
     /** Map of hero's attributes and stats (e.g. health, mana). */
@@ -0,0 +1,208 @@
+package com.diakonovtomer.projektObjektorientierung.game;
+
+import com.diakonovtomer.projektObjektorientierung.model.map.PassabilityMask;
+
+/**
+ * A* search that keeps its state between calls and runs in small slices.
+ * <p>
+ * Each call to {@link #step(int, long)} expands at most a fixed number of nodes or
+ * runs for at most a fixed time, then returns. The open list, g-scores and parents
+ * live in a private {@link PathContext} and stay valid until the next {@link #start},
+ * so the search simply continues on the next frame. This keeps frame times flat on
+ * machines where a background thread would compete with the renderer.
+ * </p>
+ *
+ * <p>
+ * While the search runs, the node with the lowest heuristic seen so far is the best
+ * partial target. {@link #route(int, int)} connects any two reached cells through the
+ * search tree, so a walker that already followed a partial route can switch to a newer
+ * one (or to the final path) without walking back to the start.
+ * </p>
+ *
+ * <p>
+ * Uses the costs of {@link AStar}; {@link DirMode#JUMP_POINT} falls back to
+ * {@link DirMode#OCTILE}, which yields paths of the same length.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class SlicedAStar {
+
+    /** State of the search after a slice. */
+    enum Status { IDLE, RUNNING, FOUND, NO_PATH }
+
+    /** Search state kept between slices. */
+    private final PathContext ctx;
+
+    /** Grid being searched. */
+    private PassabilityMask grid;
+
+    /** Movement mode of the running search. */
+    private DirMode mode;
+
+    /** Packed goal cell. */
+    private int goal;
+
+    /** Goal coordinates. */
+    private int goalY, goalX;
+
+    /** Reached cell closest to the goal by heuristic. */
+    private int best;
+
+    /** Heuristic and g-score of {@link #best}. */
+    private int bestH, bestG;
+
+    /** Current state. */
+    private Status status = Status.IDLE;
+
+    /** Buffer of the last {@link #route(int, int)}, grown on demand. */
+    private int[] route = new int[64];
+
+    /**
+     * Creates a sliced search for a grid of the given size.
+     *
+     * @param width  grid width in cells
+     * @param height grid height in cells
+     */
+    SlicedAStar(int width, int height) {
+        this.ctx = new PathContext(width, height);
+    }
+
+    // === GETTERS ===
+
+    Status getStatus() { return status; }
+
+    /**
+     * @return packed index of the best cell reached so far (the goal once found)
+     */
+    int getBest() { return best; }
+
+    int[] getRoute() { return route; }
+
+    /**
+     * Starts a new search; no node is expanded until the first {@link #step}.
+     *
+     * @param grid   passability of the map
+     * @param startY starting row (Y)
+     * @param startX starting column (X)
+     * @param goalY  goal row (Y)
+     * @param goalX  goal column (X)
+     * @param mode   movement mode
+     * @param open   open list implementation
+     */
+    void start(PassabilityMask grid, int startY, int startX, int goalY, int goalX, DirMode mode, OpenListType open) {
+        int rows = grid.getHeight(), cols = grid.getWidth();
+        ctx.resize(cols, rows);
+        this.grid = grid;
+        this.mode = mode.jumpPoints ? DirMode.OCTILE : mode;
+        this.goalY = goalY;
+        this.goalX = goalX;
+        this.goal = goalY * cols + goalX;
+        ctx.begin(open);
+
+        if (!AStar.isInside(startY, startX, rows, cols) || !AStar.isInside(goalY, goalX, rows, cols)
+                || !grid.isPassable(goalY, goalX)) {
+            status = Status.NO_PATH;
+            return;
+        }
+        int start = startY * cols + startX;
+        best = start;
+        bestG = 0;
+        bestH = AStar.heuristic(startY, startX, goalY, goalX, this.mode);
+        ctx.relax(start, 0, PathContext.NO_PARENT);
+        ctx.push(start, bestH);
+        status = Status.RUNNING;
+    }
+
+    /**
+     * Continues the search for one slice.
+     *
+     * @param maxNodes  maximum number of expansions, 0 for no limit
+     * @param maxMicros maximum run time in microseconds, 0 for no limit
+     * @return the state after the slice
+     */
+    Status step(int maxNodes, long maxMicros) {
+        if (status != Status.RUNNING) return status;
+        final int cols = grid.getWidth();
+        final int[] dr = mode.dr, dc = mode.dc;
+        final long deadline = maxMicros > 0 ? System.nanoTime() + maxMicros * 1000 : Long.MAX_VALUE;
+
+        for (int expanded = 0; maxNodes <= 0 || expanded < maxNodes; ) {
+            if (ctx.isOpenEmpty()) return status = Status.NO_PATH;
+            int cur = ctx.pop();
+            if (ctx.isClosed(cur)) continue;
+            if (cur == goal) {
+                best = goal;
+                return status = Status.FOUND;
+            }
+            ctx.close(cur);
+            expanded++;
+
+            int r = cur / cols, c = cur - r * cols;
+            int curG = ctx.g(cur);
+            for (int i = 0; i < dr.length; i++) {
+                int nr = r + dr[i];
+                int nc = c + dc[i];
+                if (!grid.isPassable(nr, nc)) continue; // off-map cells read the blocked border
+                boolean diagonal = dr[i] != 0 && dc[i] != 0;
+                if (diagonal && (!grid.isPassable(r, nc) || !grid.isPassable(nr, c))) continue;
+
+                int next = nr * cols + nc;
+                int tentativeG = curG + (diagonal ? 14 : 10);
+                if (tentativeG >= ctx.g(next)) continue;
+
+                int h = AStar.heuristic(nr, nc, goalY, goalX, mode);
+                ctx.relax(next, tentativeG, cur);
+                ctx.push(next, tentativeG + h);
+                if (h < bestH || (h == bestH && tentativeG < bestG)) {
+                    best = next;
+                    bestH = h;
+                    bestG = tentativeG;
+                }
+            }
+            // nanoTime is not free, look at the clock every 64 expansions only
+            if ((expanded & 63) == 0 && System.nanoTime() >= deadline) break;
+        }
+        return status;
+    }
+
+    /**
+     * Connects two cells reached by the current search through its search tree.
+     * The route climbs from {@code from} to the first common ancestor and descends
+     * to {@code to}, so it never contains a cell twice.
+     *
+     * @param from packed index of a reached cell (usually where the walker stands)
+     * @param to   packed index of a reached cell (the best node or the goal)
+     * @return the number of cells in {@link #getRoute()}, 0 if a cell was not reached
+     */
+    int route(int from, int to) {
+        if (status == Status.IDLE || ctx.g(from) == PathContext.INF || ctx.g(to) == PathContext.INF) return 0;
+        // Lift the deeper cell to the depth of the other, then climb both until they meet
+        int fromDepth = depth(from), toDepth = depth(to);
+        int a = from, b = to, depth = Math.max(fromDepth, toDepth);
+        for (; depth > toDepth; depth--) a = ctx.parent(a);
+        for (int d = toDepth; d > fromDepth; d--) b = ctx.parent(b);
+        depth = Math.min(fromDepth, toDepth);
+        for (; a != b; depth--) {
+            a = ctx.parent(a);
+            b = ctx.parent(b);
+        }
+        int up = fromDepth - depth, end = up + toDepth - depth;
+        if (route.length <= end) route = new int[Math.max(end + 1, route.length * 2)];
+
+        for (int c = from, i = 0; i < up; i++, c = ctx.parent(c)) route[i] = c;
+        route[up] = a;
+        // Append join..to, which is the target chain in reverse
+        for (int c = to, i = end; i > up; i--, c = ctx.parent(c)) route[i] = c;
+        return end + 1;
+    }
+
+    /**
+     * Returns the number of parent links from a reached cell to the search start.
+     */
+    private int depth(int cell) {
+        int depth = 0;
+        for (int c = ctx.parent(cell); c != PathContext.NO_PARENT; c = ctx.parent(c)) depth++;
+        return depth;
+    }
+}
@@ -0,0 +1,64 @@
+package com.diakonovtomer.projektObjektorientierung.graphics;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the heap memory allocated by the current thread, e.g. per rendered frame.
+ * <p>
+ * Uses the per-thread allocation counter of the HotSpot {@code ThreadMXBean}
+ * ({@code com.sun.management}). On VMs without it {@link #isSupported()} is false
+ * and all measurements are 0.
+ * </p>
+ *
+ * <pre>{@code
+ * meter.start();
+ * renderer.renderMap();
+ * long bytes = meter.stop();
+ * }</pre>
+ *
+ * @author Artiem
+ */
+public final class AllocationMeter {
+
+    /** Allocation counter of the VM, {@code null} if it is not available. */
+    private final com.sun.management.ThreadMXBean threads;
+
+    /** Counter value at the last {@link #start()}. */
+    private long startBytes;
+
+    /**
+     * Creates a meter and enables allocation counting if the VM supports it.
+     */
+    public AllocationMeter() {
+        com.sun.management.ThreadMXBean bean = null;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean hotspot
+                && hotspot.isThreadAllocatedMemorySupported()) {
+            if (!hotspot.isThreadAllocatedMemoryEnabled()) hotspot.setThreadAllocatedMemoryEnabled(true);
+            bean = hotspot;
+        }
+        this.threads = bean;
+    }
+
+    /**
+     * Returns whether allocations can be measured on this VM.
+     *
+     * @return true if measurements are meaningful
+     */
+    public boolean isSupported() { return threads != null; }
+
+    /**
+     * Starts a measurement on the current thread.
+     */
+    public void start() { startBytes = allocatedBytes(); }
+
+    /**
+     * Ends a measurement started on the same thread.
+     *
+     * @return bytes allocated by the thread since {@link #start()}
+     */
+    public long stop() { return allocatedBytes() - startBytes; }
+
+    private long allocatedBytes() {
+        return threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+    }
+}
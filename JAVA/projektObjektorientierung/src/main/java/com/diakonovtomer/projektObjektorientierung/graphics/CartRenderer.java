@@ -1,7 +1,7 @@
 package com.diakonovtomer.projektObjektorientierung.graphics;
 
 import com.diakonovtomer.projektObjektorientierung.Constant;
-import com.diakonovtomer.projektObjektorientierung.model.map.Tile;
+import com.diakonovtomer.projektObjektorientierung.model.map.TileSource;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
@@ -19,6 +19,14 @@ import javafx.scene.paint.Color;
  * Tiles are rendered as colored rectangles based on their {@code TileType}.
  * The player is rendered as a simple red rectangle.
  * </p>
+ * <p>
+ * With a chunk cache the map is drawn as pre-rendered {@link MapChunkCache} images,
+ * one per visible chunk; without it every visible tile is filled each frame.
+ * </p>
+ * <p>
+ * Drawing goes through a {@link RenderCommandBuffer}, which is flushed at the end of
+ * each render method, so the tiles are filled grouped by color.
+ * </p>
  * 
  * @author Artiem
  */
@@ -30,11 +38,17 @@ public class CartRenderer implements Renderer {
     /** Tile height in pixels. */
     private static final double TILE_H = Constant.TILE_H;
 
-    /** Graphics context for drawing on the canvas. */
-    private final GraphicsContext gc;
+    /** Tiles drawn beyond each canvas edge. */
+    private static final int CULL_MARGIN = 1;
+
+    /** Edge length of a cached map chunk in tiles. */
+    private static final int CHUNK_SIZE = MapChunkCache.CHUNK_SIZE;
+
+    /** Records the drawing commands of a render call. */
+    private final RenderCommandBuffer commands;
     
-    /** 2D array of tiles representing the map. */
-    private final Tile[][] tiles;
+    /** Tile types of the map. */
+    private final TileSource tiles;
 
     /** Canvas on which rendering is performed. */
     private Canvas canvas;
@@ -48,39 +62,114 @@ public class CartRenderer implements Renderer {
     /** Current vertical offset for rendering, based on camera. */
     private double offsetY;
 
+    /** Position of the view's top-left corner on the canvas (see {@link #setOrigin}). */
+    private double originX, originY;
+
+    /** Pre-rendered map chunks, {@code null} if tiles are drawn directly. */
+    private final MapChunkCache chunks;
+
+    /**
+     * Constructs a CartRenderer that draws every visible tile each frame.
+     * 
+     * @param gc the GraphicsContext to draw on
+     * @param canvas the Canvas associated with rendering
+     * @param camera the Camera controlling the viewport offset
+     * @param tiles the tile grid to render
+     */
+    public CartRenderer(GraphicsContext gc, Canvas canvas, Camera camera, TileSource tiles) {
+        this(gc, canvas, camera, tiles, 0);
+    }
+
     /**
      * Constructs a CartRenderer.
      * 
      * @param gc the GraphicsContext to draw on
      * @param canvas the Canvas associated with rendering
      * @param camera the Camera controlling the viewport offset
-     * @param tiles the 2D array of tiles to render
+     * @param tiles the tile grid to render
+     * @param chunkCacheBytes memory budget for pre-rendered map chunks, 0 to draw tiles directly
+     */
+    public CartRenderer(GraphicsContext gc, Canvas canvas, Camera camera, TileSource tiles, long chunkCacheBytes) {
+        this(new GraphicsContextBackend(gc), canvas, camera, tiles, chunkCacheBytes);
+    }
+
+    /**
+     * Constructs a CartRenderer drawing with a custom backend.
+     * 
+     * @param backend the backend to draw with
+     * @param canvas the Canvas associated with rendering (for its size)
+     * @param camera the Camera controlling the viewport offset
+     * @param tiles the tile grid to render
+     * @param chunkCacheBytes memory budget for pre-rendered map chunks, 0 to draw tiles directly
      */
-    public CartRenderer(GraphicsContext gc, Canvas canvas, Camera camera, Tile[][] tiles) {
-        this.gc = gc;
+    public CartRenderer(RenderBackend backend, Canvas canvas, Camera camera, TileSource tiles, long chunkCacheBytes) {
+        this.commands = new RenderCommandBuffer(backend);
         this.canvas = canvas;
         this.camera = camera;
         this.tiles = tiles;
+        this.chunks = chunkCacheBytes <= 0 ? null : new MapChunkCache(tiles,
+                (int) Math.ceil(CHUNK_SIZE * TILE_H), (int) Math.ceil(CHUNK_SIZE * TILE_W), chunkCacheBytes, this::paintChunk);
         
         this.offsetX = camera.getOffsetX();
         this.offsetY = camera.getOffsetY();
     }
         
     /**
-     * Renders the entire tile map using colored rectangles.
+     * Renders the visible part of the tile map using colored rectangles.
      * The fill color corresponds to the tile's {@code TileType}.
+     * <p>
+     * Only tiles inside the canvas (plus {@link #CULL_MARGIN}) are drawn, so the cost
+     * per frame depends on the canvas size, not on the map size. With a chunk cache
+     * the chunks containing these tiles are drawn as images.
+     * </p>
      */
     @Override
     public void renderMap() {
         this.setOffsets();
-        for (int y = 0; y < tiles.length; y++) {
-            for (int x = 0; x < tiles[y].length; x++) {
-                Tile t = tiles[y][x];
-                gc.setFill(t.getType().getColor());
-                gc.fillRect((x * TILE_H) + offsetX, (y * TILE_W) + offsetY, TILE_H, TILE_W);
+        int firstY = Math.max(0, (int) Math.floor(-offsetY / TILE_W) - CULL_MARGIN);
+        int lastY = Math.min(tiles.getHeight() - 1, (int) Math.floor((canvas.getHeight() - offsetY) / TILE_W) + CULL_MARGIN);
+        int firstX = Math.max(0, (int) Math.floor(-offsetX / TILE_H) - CULL_MARGIN);
+        int lastX = Math.min(tiles.getWidth() - 1, (int) Math.floor((canvas.getWidth() - offsetX) / TILE_H) + CULL_MARGIN);
+        if (chunks == null) {
+            for (int y = firstY; y <= lastY; y++) {
+                for (int x = firstX; x <= lastX; x++) {
+                    commands.setFill(tiles.getColor(y, x));
+                    commands.fillRect((x * TILE_H) + offsetX, (y * TILE_W) + offsetY, TILE_H, TILE_W);
+                }
+            }
+            commands.flush();
+            return;
+        }
+        // Drawn right away: the image of a chunk may be reused for another chunk later on
+        for (int cy = firstY / CHUNK_SIZE; cy <= lastY / CHUNK_SIZE; cy++) {
+            for (int cx = firstX / CHUNK_SIZE; cx <= lastX / CHUNK_SIZE; cx++) {
+                commands.getBackend().drawImage(chunks.get(cy, cx), cx * CHUNK_SIZE * TILE_H + offsetX, cy * CHUNK_SIZE * TILE_W + offsetY);
             }
         }
     }
+
+    /**
+     * Paints the tiles of a chunk relative to its top-left corner.
+     */
+    private void paintChunk(RenderCommandBuffer target, int firstY, int firstX, int lastY, int lastX) {
+        for (int y = firstY; y <= lastY; y++) {
+            for (int x = firstX; x <= lastX; x++) {
+                target.setFill(tiles.getColor(y, x));
+                target.fillRect((x - firstX) * TILE_H, (y - firstY) * TILE_W, TILE_H, TILE_W);
+            }
+        }
+    }
+
+    /**
+     * Redraws the cached chunk of a changed tile the next time it is visible.
+     *
+     * @param tileY the changed tile's Y coordinate
+     * @param tileX the changed tile's X coordinate
+     */
+    @Override
+    public void invalidateTile(int tileY, int tileX) {
+        if (chunks != null) chunks.invalidateTile(tileY, tileX);
+    }
         
     /**
      * Updates the local offset fields from the current camera offsets.
@@ -88,8 +177,21 @@ public class CartRenderer implements Renderer {
      */
     @Override
     public void setOffsets(){
-        this.offsetY = camera.getOffsetY();
-        this.offsetX = camera.getOffsetX();
+        this.offsetY = camera.getOffsetY() + originY;
+        this.offsetX = camera.getOffsetX() + originX;
+    }
+
+    /**
+     * Shifts all drawing by the position of the view on the canvas.
+     *
+     * @param originX horizontal position of the view's left edge on the canvas
+     * @param originY vertical position of the view's top edge on the canvas
+     */
+    @Override
+    public void setOrigin(double originX, double originY) {
+        this.originX = originX;
+        this.originY = originY;
+        setOffsets();
     }
    
     /**
@@ -101,16 +203,16 @@ public class CartRenderer implements Renderer {
      */
     @Override
     public void renderHighlightTile(int tileY, int tileX) {
-        if (((tileY >= 0 && tileX >= 0) ) && (tileY < (tiles.length - 1) && tileX < (tiles[0].length - 1))) {
-            gc.setStroke(Constant.HIGHLIGHT_TILE_COLOR);
-            gc.setLineWidth(2);    
-            gc.setLineWidth(2);
-            gc.strokeRect(
+        if (((tileY >= 0 && tileX >= 0) ) && (tileY < (tiles.getHeight() - 1) && tileX < (tiles.getWidth() - 1))) {
+            commands.setStroke(Constant.HIGHLIGHT_TILE_COLOR);
+            commands.setLineWidth(2);
+            commands.strokeRect(
                 tileX * Constant.TILE_W + offsetX,
                 tileY * Constant.TILE_H + offsetY,
                 Constant.TILE_W,
                 Constant.TILE_H
             );
+            commands.flush();
         }
     }
     
@@ -122,7 +224,8 @@ public class CartRenderer implements Renderer {
     public void renderPlayer(){
         double centerY = camera.getCenterY();
         double centerX = camera.getCenterX();
-        gc.setFill(Color.RED);
-        gc.fillRect(centerX - Constant.PLAYER_SIZE_W / 2, centerY - Constant.PLAYER_SIZE_H / 2, Constant.PLAYER_SIZE_W, Constant.PLAYER_SIZE_H);
+        commands.setFill(Color.RED);
+        commands.fillRect(centerX - Constant.PLAYER_SIZE_W / 2, centerY - Constant.PLAYER_SIZE_H / 2, Constant.PLAYER_SIZE_W, Constant.PLAYER_SIZE_H);
+        commands.flush();
     }
-}
\ No newline at end of file
+}
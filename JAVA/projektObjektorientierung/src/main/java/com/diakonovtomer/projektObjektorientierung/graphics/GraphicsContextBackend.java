@@ -0,0 +1,52 @@
+package com.diakonovtomer.projektObjektorientierung.graphics;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Paint;
+
+/**
+ * {@link RenderBackend} drawing on a JavaFX canvas.
+ *
+ * @author Artiem
+ */
+public final class GraphicsContextBackend implements RenderBackend {
+
+    /** Graphics context of the target canvas. */
+    private final GraphicsContext gc;
+
+    /**
+     * Creates a backend for a canvas.
+     *
+     * @param gc graphics context of the canvas to draw on
+     */
+    public GraphicsContextBackend(GraphicsContext gc) {
+        this.gc = gc;
+    }
+
+    @Override
+    public void setFill(Paint paint) { gc.setFill(paint); }
+
+    @Override
+    public void setStroke(Paint paint) { gc.setStroke(paint); }
+
+    @Override
+    public void setLineWidth(double width) { gc.setLineWidth(width); }
+
+    @Override
+    public void fillRect(double x, double y, double w, double h) { gc.fillRect(x, y, w, h); }
+
+    @Override
+    public void strokeRect(double x, double y, double w, double h) { gc.strokeRect(x, y, w, h); }
+
+    @Override
+    public void clearRect(double x, double y, double w, double h) { gc.clearRect(x, y, w, h); }
+
+    @Override
+    public void fillPolygon(double[] xPoints, double[] yPoints, int points) { gc.fillPolygon(xPoints, yPoints, points); }
+
+    @Override
+    public void strokePolygon(double[] xPoints, double[] yPoints, int points) { gc.strokePolygon(xPoints, yPoints, points); }
+
+    @Override
+    public void drawImage(Image image, double x, double y) { gc.drawImage(image, x, y); }
+}
@@ -1,7 +1,7 @@
 package com.diakonovtomer.projektObjektorientierung.graphics;
 
 import com.diakonovtomer.projektObjektorientierung.Constant;
-import com.diakonovtomer.projektObjektorientierung.model.map.Tile;
+import com.diakonovtomer.projektObjektorientierung.model.map.TileSource;
 import javafx.geometry.Point2D;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
@@ -25,6 +25,19 @@ import javafx.scene.paint.Color;
  * <h2>Player:</h2>
  * The player is rendered as a red diamond centered on the canvas.
  * 
+ * <h2>Drawing:</h2>
+ * Tiles are recorded into a {@link RenderCommandBuffer}, which is flushed at the end of
+ * each render method and fills them grouped by color, so the fill color changes once per
+ * color instead of once per tile. Screen positions are computed inline from the tile's
+ * {@code x - y} and {@code x + y}, and the corner points go through one pair of reused
+ * arrays: drawing allocates nothing once the buffer has grown to the number of visible tiles.
+ * 
+ * <h2>Chunk cache:</h2>
+ * With a chunk cache the map is drawn as pre-rendered {@link MapChunkCache} images.
+ * A chunk of {@code n x n} tiles projects to a diamond inside an image of
+ * {@code n * TILE_W x n * TILE_H} pixels whose top vertex is the top vertex of the
+ * chunk's first tile; the images of neighbouring chunks overlap only in transparent corners.
+ * 
  * @author adiakonov
  */
 public class IsoRenderer implements Renderer {
@@ -35,11 +48,20 @@ public class IsoRenderer implements Renderer {
     /** Height of a tile in isometric view (half of real height). */
     private static final double TILE_H = Constant.TILE_H / 2;
 
-    /** 2D grid of tiles representing the map. */
-    private final Tile[][] tiles;
+    /** Tiles drawn beyond each canvas edge. */
+    private static final int CULL_MARGIN = 1;
+
+    /** Edge length of a cached map chunk in tiles. */
+    private static final int CHUNK_SIZE = MapChunkCache.CHUNK_SIZE;
+
+    /** Screen offset of one step in {@code x - y} (horizontal) and {@code x + y} (vertical). */
+    private static final double HALF_W = TILE_W / 2, HALF_H = TILE_H / 2;
+
+    /** Tile types of the map. */
+    private final TileSource tiles;
     
-    /** Graphics context to draw on. */
-    private final GraphicsContext gc;
+    /** Records the drawing commands of a render call. */
+    private final RenderCommandBuffer commands;
     
     /** Canvas reference for dimensions and context. */
     private Canvas canvas;
@@ -53,19 +75,56 @@ public class IsoRenderer implements Renderer {
     /** Calculated vertical offset for rendering. */
     private  double offsetY;
 
+    /** Position of the view's top-left corner on the canvas (see {@link #setOrigin}). */
+    private double originX, originY;
+
+    /** Pre-rendered map chunks, {@code null} if tiles are drawn directly. */
+    private final MapChunkCache chunks;
+
+    /** Corner points of the polygon being drawn (up, right, down, left). */
+    private final double[] xPoints = new double[4], yPoints = new double[4];
+
+    /**
+     * Constructs the isometric renderer that draws every visible tile each frame.
+     *
+     * @param gc      GraphicsContext from the canvas
+     * @param canvas  The Canvas to render on
+     * @param camera  The Camera to control view offset
+     * @param tiles   The tile grid to render
+     */
+    public IsoRenderer(GraphicsContext gc, Canvas canvas, Camera camera, TileSource tiles) {
+        this(gc, canvas, camera, tiles, 0);
+    }
+
     /**
      * Constructs the isometric renderer.
      *
      * @param gc      GraphicsContext from the canvas
      * @param canvas  The Canvas to render on
      * @param camera  The Camera to control view offset
-     * @param tiles   The 2D map of tiles to render
+     * @param tiles   The tile grid to render
+     * @param chunkCacheBytes memory budget for pre-rendered map chunks, 0 to draw tiles directly
+     */
+    public IsoRenderer(GraphicsContext gc, Canvas canvas, Camera camera, TileSource tiles, long chunkCacheBytes) {
+        this(new GraphicsContextBackend(gc), canvas, camera, tiles, chunkCacheBytes);
+    }
+
+    /**
+     * Constructs the isometric renderer drawing with a custom backend.
+     *
+     * @param backend The backend to draw with
+     * @param canvas  The Canvas to render on (for its size)
+     * @param camera  The Camera to control view offset
+     * @param tiles   The tile grid to render
+     * @param chunkCacheBytes memory budget for pre-rendered map chunks, 0 to draw tiles directly
      */
-    public IsoRenderer(GraphicsContext gc, Canvas canvas, Camera camera, Tile[][] tiles) {
-        this.gc = gc;
+    public IsoRenderer(RenderBackend backend, Canvas canvas, Camera camera, TileSource tiles, long chunkCacheBytes) {
+        this.commands = new RenderCommandBuffer(backend);
         this.canvas = canvas;
         this.camera = camera;
         this.tiles = tiles;
+        this.chunks = chunkCacheBytes <= 0 ? null : new MapChunkCache(tiles,
+                (int) Math.ceil(CHUNK_SIZE * TILE_W), (int) Math.ceil(CHUNK_SIZE * TILE_H), chunkCacheBytes, this::paintChunk);
         this.offsetX = camera.getOffsetX();
         this.offsetY = camera.getOffsetY();
     }
@@ -75,28 +134,114 @@ public class IsoRenderer implements Renderer {
      */
     @Override
     public void setOffsets(){
-        this.offsetY = camera.getOffsetY();
-        this.offsetX = camera.getOffsetX();
+        this.offsetY = camera.getOffsetY() + originY;
+        this.offsetX = camera.getOffsetX() + originX;
     }
 
     /**
-     * Renders the entire map in isometric style.
+     * Shifts all drawing by the position of the view on the canvas.
+     *
+     * @param originX horizontal position of the view's left edge on the canvas
+     * @param originY vertical position of the view's top edge on the canvas
+     */
+    @Override
+    public void setOrigin(double originX, double originY) {
+        this.originX = originX;
+        this.originY = originY;
+        setOffsets();
+    }
+
+    /**
+     * Renders the visible part of the map in isometric style.
+     * <p>
+     * The canvas is mapped back to the grid with the inverse projection: a screen
+     * column fixes {@code x - y} and a screen row fixes {@code x + y}, so the visible
+     * tiles form a rotated rectangle in the grid. Each row is clipped to it and only
+     * those tiles (plus {@link #CULL_MARGIN}) are drawn, so the cost per frame depends
+     * on the canvas size, not on the map size. With a chunk cache the chunks whose
+     * image reaches into the canvas are drawn instead.
+     * </p>
      */
     @Override
     public void renderMap() {
         this.setOffsets();
-        for (int y = 0; y < tiles.length; y++) {
-            for (int x = 0; x < tiles[y].length; x++) {
-                Tile t = tiles[y][x];
-
-                Point2D iso = toIso(y, x);
-                gc.setFill(t.getType().getColor());
-                gc.fillPolygon(
-                        new double[] { iso.getX(), iso.getX() + TILE_W / 2, iso.getX(), iso.getX() - TILE_W / 2 },
-                        new double[] { iso.getY(), iso.getY() + TILE_H / 2, iso.getY() + TILE_H, iso.getY() + TILE_H / 2 },
-                        4);
+        // x - y of tiles whose diamond reaches into the canvas horizontally
+        int minDiff = (int) Math.floor(-offsetX / (TILE_W / 2)) - 1 - CULL_MARGIN;
+        int maxDiff = (int) Math.ceil((canvas.getWidth() - offsetX) / (TILE_W / 2)) + 1 + CULL_MARGIN;
+        // x + y of tiles whose diamond reaches into the canvas vertically
+        int minSum = (int) Math.floor(-offsetY / (TILE_H / 2)) - 2 - CULL_MARGIN;
+        int maxSum = (int) Math.ceil((canvas.getHeight() - offsetY) / (TILE_H / 2)) + CULL_MARGIN;
+
+        int firstY = Math.max(0, Math.floorDiv(minSum - maxDiff, 2));
+        int lastY = Math.min(tiles.getHeight() - 1, Math.floorDiv(maxSum - minDiff, 2) + 1);
+        if (chunks == null) {
+            for (int y = firstY; y <= lastY; y++) {
+                fillRow(commands, y, Math.max(0, Math.max(minDiff + y, minSum - y)),
+                        Math.min(tiles.getWidth() - 1, Math.min(maxDiff + y, maxSum - y)), offsetX, offsetY);
             }
+            commands.flush();
+            return;
         }
+
+        // Drawn right away: the image of a chunk may be reused for another chunk later on
+        final double chunkW = CHUNK_SIZE * TILE_W, chunkH = CHUNK_SIZE * TILE_H;
+        for (int cy = firstY / CHUNK_SIZE; cy <= lastY / CHUNK_SIZE; cy++) {
+            int rowFirstY = cy * CHUNK_SIZE, rowLastY = rowFirstY + CHUNK_SIZE - 1;
+            // Columns that may hold a visible tile in any row of this chunk row
+            int firstX = Math.max(0, Math.max(minDiff + rowFirstY, minSum - rowLastY));
+            int lastX = Math.min(tiles.getWidth() - 1, Math.min(maxDiff + rowLastY, maxSum - rowFirstY));
+            for (int cx = firstX / CHUNK_SIZE; cx <= lastX / CHUNK_SIZE; cx++) {
+                int chunkX = cx * CHUNK_SIZE;
+                double left = (chunkX - rowFirstY) * HALF_W + offsetX - chunkW / 2;
+                double top = (chunkX + rowFirstY) * HALF_H + offsetY;
+                if (left + chunkW < 0 || left > canvas.getWidth()) continue;
+                if (top + chunkH < 0 || top > canvas.getHeight()) continue;
+                commands.getBackend().drawImage(chunks.get(cy, cx), left, top);
+            }
+        }
+    }
+
+    /**
+     * Paints the tiles of a chunk relative to its image (see the class description).
+     */
+    private void paintChunk(RenderCommandBuffer target, int firstY, int firstX, int lastY, int lastX) {
+        // Tile (firstY, firstX) has its top vertex at the top centre of the image
+        double originX = CHUNK_SIZE * HALF_W - (firstX - firstY) * HALF_W, originY = -(firstX + firstY) * HALF_H;
+        for (int y = firstY; y <= lastY; y++) fillRow(target, y, firstX, lastX, originX, originY);
+    }
+
+    /**
+     * Records the tiles of a run of one row.
+     *
+     * @param target  buffer to record into
+     * @param y       tile row
+     * @param firstX  first tile column
+     * @param lastX   last tile column (inclusive); nothing is drawn if below {@code firstX}
+     * @param originX screen X of the top vertex of tile (0, 0)
+     * @param originY screen Y of the top vertex of tile (0, 0)
+     */
+    private void fillRow(RenderCommandBuffer target, int y, int firstX, int lastX, double originX, double originY) {
+        for (int x = firstX; x <= lastX; x++) {
+            double sx = originX + (x - y) * HALF_W;
+            double sy = originY + (x + y) * HALF_H;
+            xPoints[0] = sx;          yPoints[0] = sy;          // u
+            xPoints[1] = sx + HALF_W; yPoints[1] = sy + HALF_H; // r
+            xPoints[2] = sx;          yPoints[2] = sy + TILE_H; // d
+            xPoints[3] = sx - HALF_W; yPoints[3] = sy + HALF_H; // l
+            target.setFill(tiles.getColor(y, x));
+            target.fillPolygon(xPoints, yPoints, 4);
+        }
+    }
+
+    /**
+     * Redraws the cached chunk of a changed tile the next time it is visible.
+     *
+     * @param tileY the changed tile's Y coordinate
+     * @param tileX the changed tile's X coordinate
+     */
+    @Override
+    public void invalidateTile(int tileY, int tileX) {
+        if (chunks != null) chunks.invalidateTile(tileY, tileX);
     }
     
     /**
@@ -107,44 +252,23 @@ public class IsoRenderer implements Renderer {
      */
     @Override
     public void renderHighlightTile(int tileY, int tileX) {
-        if (((tileY >= 0 && tileX >= 0) ) && (tileY < (tiles.length - 1) && tileX < (tiles[0].length - 1))) {
-            gc.setStroke(Constant.HIGHLIGHT_TILE_COLOR);
-            gc.setLineWidth(2);  
+        if (((tileY >= 0 && tileX >= 0) ) && (tileY < (tiles.getHeight() - 1) && tileX < (tiles.getWidth() - 1))) {
+            commands.setStroke(Constant.HIGHLIGHT_TILE_COLOR);
+            commands.setLineWidth(2);
             double tileWidth = Constant.TILE_W;
             double tileHeight = Constant.TILE_H ;
             double screenX = (tileX - tileY) * tileWidth / 2 + offsetX;
             double screenY = (tileX + tileY) * tileHeight / 4 + offsetY;
-            double[] xPoints = {
-                screenX,                 //u
-                screenX + tileWidth / 2, //r
-                screenX,                 //d
-                screenX - tileWidth / 2  //l
-            };
-            double[] yPoints = {
-                screenY,                  //u 
-                screenY + tileHeight / 4, //r
-                screenY + tileHeight / 2, //d
-                screenY + tileHeight / 4  //l
-            };
-            gc.setLineWidth(2);
-            gc.strokePolygon(xPoints, yPoints, 4);
+            xPoints[0] = screenX;                 yPoints[0] = screenY;                  //u
+            xPoints[1] = screenX + tileWidth / 2; yPoints[1] = screenY + tileHeight / 4; //r
+            xPoints[2] = screenX;                 yPoints[2] = screenY + tileHeight / 2; //d
+            xPoints[3] = screenX - tileWidth / 2; yPoints[3] = screenY + tileHeight / 4; //l
+            commands.strokePolygon(xPoints, yPoints, 4);
+            commands.flush();
         }
     }
 
     
-    /**
-     * Converts grid coordinates (row/col) to screen coordinates for isometric projection.
-     *
-     * @param y Tile Y index
-     * @param x Tile X index
-     * @return Screen position as {@code Point2D}
-     */
-    private Point2D toIso(int y, int x) {
-        double screenX = (x - y) * TILE_W / 2 + offsetX;
-        double screenY = (x + y) * TILE_H / 2 + offsetY;
-        return new Point2D(screenX, screenY);
-    }
-    
     /**
      * Converts screen (pixel) coordinates to isometric tile grid coordinates.
      * Mostly useful for picking tiles with mouse clicks.
@@ -176,13 +300,12 @@ public class IsoRenderer implements Renderer {
         double halfW = Constant.PLAYER_SIZE_W * 0.5;
         double halfH = Constant.PLAYER_SIZE_H * 0.5;
 
-        gc.beginPath();
-        gc.setFill(Color.RED);
-        gc.moveTo(centerX,         centerY  );           // u
-        gc.lineTo(centerX + halfW, centerY + halfH/2.0); // r
-        gc.lineTo(centerX,         centerY + halfH);     // d
-        gc.lineTo(centerX - halfW, centerY + halfH/2.0); // l
-        gc.closePath();
-        gc.fill();
+        commands.setFill(Color.RED);
+        xPoints[0] = centerX;         yPoints[0] = centerY;             // u
+        xPoints[1] = centerX + halfW; yPoints[1] = centerY + halfH/2.0; // r
+        xPoints[2] = centerX;         yPoints[2] = centerY + halfH;     // d
+        xPoints[3] = centerX - halfW; yPoints[3] = centerY + halfH/2.0; // l
+        commands.fillPolygon(xPoints, yPoints, 4);
+        commands.flush();
     }
-}
\ No newline at end of file
+}
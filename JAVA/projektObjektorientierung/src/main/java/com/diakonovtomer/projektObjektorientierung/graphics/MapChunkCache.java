@@ -0,0 +1,177 @@
+package com.diakonovtomer.projektObjektorientierung.graphics;
+
+import com.diakonovtomer.projektObjektorientierung.model.map.TileSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Cache of pre-rendered map chunks.
+ * <p>
+ * The map is split into chunks of {@link #CHUNK_SIZE} x {@link #CHUNK_SIZE} tiles.
+ * A chunk is painted once onto an offscreen canvas by the renderer's
+ * {@link ChunkPainter} and kept as a snapshot image, so a frame only has to draw one
+ * image per visible chunk instead of one shape per tile. The image size and the
+ * position of the tiles in it are up to the painter, so the same cache serves the
+ * cartesian and the isometric projection.
+ * </p>
+ *
+ * <p>
+ * A tile change drops the image of its chunk; it is painted again the next time the
+ * chunk is visible. Images are kept in least-recently-used order up to a memory cap;
+ * the image of an evicted chunk is reused as the snapshot target of the next one.
+ * Like all JavaFX rendering, the cache must be used from the FX application thread.
+ * </p>
+ *
+ * @author Artiem
+ */
+final class MapChunkCache {
+
+    /** Edge length of a chunk in tiles. */
+    static final int CHUNK_SIZE = 16;
+
+    /** Fewest images kept, so a single view never thrashes. */
+    private static final int MIN_CHUNKS = 16;
+
+    /**
+     * Paints the tiles of one chunk in chunk-local coordinates.
+     */
+    @FunctionalInterface
+    interface ChunkPainter {
+
+        /**
+         * Paints a tile range onto the offscreen canvas.
+         *
+         * @param commands records the drawing on the offscreen canvas (already cleared)
+         * @param firstY first tile row of the chunk
+         * @param firstX first tile column of the chunk
+         * @param lastY  last tile row to paint (inclusive, clipped to the map)
+         * @param lastX  last tile column to paint (inclusive, clipped to the map)
+         */
+        void paint(RenderCommandBuffer commands, int firstY, int firstX, int lastY, int lastX);
+    }
+
+    /** Tile types of the map. */
+    private final TileSource tiles;
+
+    /** Number of chunk rows and columns covering the map. */
+    private final int chunkRows, chunkCols;
+
+    /** Size of a chunk image in pixels. */
+    private final int imageWidth, imageHeight;
+
+    /** Paints the tiles of a chunk. */
+    private final ChunkPainter painter;
+
+    /** Offscreen canvas chunks are painted on before the snapshot. */
+    private final Canvas scratch;
+
+    /** Records the painter's drawing on {@link #scratch}. */
+    private final RenderCommandBuffer scratchCommands;
+
+    /** Snapshot settings: transparent background, so iso chunks can overlap. */
+    private final SnapshotParameters snapshotParameters = new SnapshotParameters();
+
+    /** Chunk images by packed chunk index, in access order. */
+    private final LinkedHashMap<Integer, WritableImage> images;
+
+    /** Image of an evicted or invalidated chunk, reused by the next snapshot. */
+    private WritableImage spare;
+
+    /** Number of chunks painted so far (for profiling). */
+    private int rasterized;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param tiles       the tile grid to render
+     * @param imageWidth  width of a chunk image in pixels
+     * @param imageHeight height of a chunk image in pixels
+     * @param cacheBytes  memory budget for chunk images (at least 16 images are kept)
+     * @param painter     paints the tiles of a chunk
+     */
+    MapChunkCache(TileSource tiles, int imageWidth, int imageHeight, long cacheBytes, ChunkPainter painter) {
+        this.tiles = tiles;
+        this.chunkRows = (tiles.getHeight() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.chunkCols = (tiles.getWidth() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.painter = painter;
+        this.scratch = new Canvas(imageWidth, imageHeight);
+        this.scratchCommands = new RenderCommandBuffer(new GraphicsContextBackend(scratch.getGraphicsContext2D()));
+        this.snapshotParameters.setFill(Color.TRANSPARENT);
+
+        long imageBytes = 4L * imageWidth * imageHeight;
+        final int capacity = (int) Math.max(MIN_CHUNKS, Math.min(Integer.MAX_VALUE, cacheBytes / imageBytes));
+        this.images = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, WritableImage> eldest) {
+                if (size() <= capacity) return false;
+                spare = eldest.getValue();
+                return true;
+            }
+        };
+    }
+
+    // === GETTERS ===
+
+    int getChunkRows() { return chunkRows; }
+
+    int getChunkCols() { return chunkCols; }
+
+    int getCachedChunks() { return images.size(); }
+
+    int getRasterized() { return rasterized; }
+
+    /**
+     * Returns the image of a chunk, painting it first if it is not cached.
+     *
+     * @param chunkY chunk row
+     * @param chunkX chunk column
+     * @return the chunk image
+     */
+    Image get(int chunkY, int chunkX) {
+        int key = chunkY * chunkCols + chunkX;
+        WritableImage image = images.get(key);
+        if (image == null) {
+            image = rasterize(chunkY, chunkX);
+            images.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Drops the image of the chunk containing a tile, so it is painted again.
+     *
+     * @param tileY tile row
+     * @param tileX tile column
+     */
+    void invalidateTile(int tileY, int tileX) {
+        if (tileY < 0 || tileX < 0 || tileY >= tiles.getHeight() || tileX >= tiles.getWidth()) return;
+        WritableImage image = images.remove((tileY / CHUNK_SIZE) * chunkCols + tileX / CHUNK_SIZE);
+        if (image != null) spare = image;
+    }
+
+    /**
+     * Paints a chunk on the offscreen canvas and takes a snapshot of it.
+     */
+    private WritableImage rasterize(int chunkY, int chunkX) {
+        GraphicsContext gc = scratch.getGraphicsContext2D();
+        gc.clearRect(0, 0, imageWidth, imageHeight);
+        int firstY = chunkY * CHUNK_SIZE, firstX = chunkX * CHUNK_SIZE;
+        int lastY = Math.min(tiles.getHeight(), firstY + CHUNK_SIZE) - 1;
+        int lastX = Math.min(tiles.getWidth(), firstX + CHUNK_SIZE) - 1;
+        painter.paint(scratchCommands, firstY, firstX, lastY, lastX);
+        scratchCommands.flush();
+
+        WritableImage target = spare;
+        spare = null;
+        rasterized++;
+        return scratch.snapshot(snapshotParameters, target);
+    }
+}
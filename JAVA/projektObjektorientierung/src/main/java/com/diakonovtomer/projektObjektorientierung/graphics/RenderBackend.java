@@ -0,0 +1,72 @@
+package com.diakonovtomer.projektObjektorientierung.graphics;
+
+import javafx.scene.image.Image;
+import javafx.scene.paint.Paint;
+
+/**
+ * Drawing primitives a {@link RenderCommandBuffer} submits its commands to.
+ * <p>
+ * The methods mirror the subset of {@link javafx.scene.canvas.GraphicsContext} the
+ * renderers use, so the JavaFX canvas ({@link GraphicsContextBackend}) can be
+ * replaced without touching the renderers.
+ * </p>
+ *
+ * @author Artiem
+ */
+public interface RenderBackend {
+
+    /**
+     * Sets the paint of following fill operations.
+     *
+     * @param paint fill paint
+     */
+    void setFill(Paint paint);
+
+    /**
+     * Sets the paint of following stroke operations.
+     *
+     * @param paint stroke paint
+     */
+    void setStroke(Paint paint);
+
+    /**
+     * Sets the line width of following stroke operations.
+     *
+     * @param width line width in pixels
+     */
+    void setLineWidth(double width);
+
+    void fillRect(double x, double y, double w, double h);
+
+    void strokeRect(double x, double y, double w, double h);
+
+    void clearRect(double x, double y, double w, double h);
+
+    /**
+     * Fills a polygon. Only the first {@code points} entries of the arrays are used;
+     * the arrays may be reused by the caller after the call returns.
+     *
+     * @param xPoints x coordinates of the corners
+     * @param yPoints y coordinates of the corners
+     * @param points  number of corners
+     */
+    void fillPolygon(double[] xPoints, double[] yPoints, int points);
+
+    /**
+     * Strokes a closed polygon; see {@link #fillPolygon}.
+     *
+     * @param xPoints x coordinates of the corners
+     * @param yPoints y coordinates of the corners
+     * @param points  number of corners
+     */
+    void strokePolygon(double[] xPoints, double[] yPoints, int points);
+
+    /**
+     * Draws an image at its natural size.
+     *
+     * @param image image to draw
+     * @param x     left edge
+     * @param y     top edge
+     */
+    void drawImage(Image image, double x, double y);
+}
@@ -0,0 +1,96 @@
+package com.diakonovtomer.projektObjektorientierung.graphics;
+
+import com.diakonovtomer.projektObjektorientierung.model.entities.Player;
+import com.diakonovtomer.projektObjektorientierung.model.map.MapManager;
+import com.diakonovtomer.projektObjektorientierung.model.map.TileType;
+import java.util.Random;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ * Console benchmark for the per-tile isometric drawing path.
+ * <p>
+ * Scrolls an {@link IsoRenderer} without chunk cache across a map of random tiles, one
+ * tile per frame, and reports the time and the heap memory allocated per frame
+ * (measured with {@link AllocationMeter}). After the warm-up the renderer's buffers
+ * have reached their size, so the steady state should allocate nothing.
+ * The canvas is not part of a scene; a full-canvas clear at the start of each frame
+ * discards the recorded drawing commands.
+ * </p>
+ *
+ * <pre>{@code
+ * java -cp target/classes:... com.diakonovtomer.projektObjektorientierung.graphics.RenderBenchmark 160 2000
+ * }</pre>
+ * Arguments (all optional): map size in tiles, number of measured frames.
+ *
+ * @author Artiem
+ */
+public final class RenderBenchmark {
+
+    /** Number of untimed frames used to warm up the JIT and the buffers. */
+    private static final int WARMUP_FRAMES = 500;
+
+    /** Canvas size in pixels. */
+    private static final double VIEW_W = 800, VIEW_H = 600;
+
+    /** Prevent instantiation of static utility class */
+    private RenderBenchmark() {}
+
+    public static void main(String[] args) {
+        int size   = args.length > 0 ? Integer.parseInt(args[0]) : 160;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        MapManager map = new MapManager(randomMap(size, 42L));
+        Canvas canvas = new Canvas(VIEW_W, VIEW_H);
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        Player player = new Player(gc, map);
+        Camera camera = new Camera(canvas, size, size, player);
+        IsoRenderer renderer = new IsoRenderer(gc, canvas, camera, map.getGrid());
+        AllocationMeter meter = new AllocationMeter();
+        System.out.printf("Map %dx%d, view %.0fx%.0f, %d frames%n", size, size, VIEW_W, VIEW_H, frames);
+        if (!meter.isSupported()) System.out.println("Allocation counting is not supported by this VM");
+
+        for (int frame = 0; frame < WARMUP_FRAMES; frame++) renderFrame(player, camera, gc, renderer, frame);
+        long maxFrameBytes = 0, totalBytes = 0;
+        long startNanos = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++) {
+            meter.start();
+            renderFrame(player, camera, gc, renderer, frame);
+            long bytes = meter.stop();
+            totalBytes += bytes;
+            maxFrameBytes = Math.max(maxFrameBytes, bytes);
+        }
+        double micros = (System.nanoTime() - startNanos) / 1e3 / frames;
+        System.out.printf("%.1f us/frame, %.1f bytes/frame allocated (max %d)%n",
+                micros, (double) totalBytes / frames, maxFrameBytes);
+    }
+
+    /**
+     * Moves the player one tile along a diagonal walk and redraws the map.
+     */
+    private static void renderFrame(Player player, Camera camera, GraphicsContext gc, IsoRenderer renderer, int frame) {
+        int span = 32;
+        int step = frame % (2 * span);
+        int offset = step < span ? step : 2 * span - step; // walk back and forth
+        player.setPositionTileY(8 + offset);
+        player.setPositionTileX(8 + offset);
+        camera.update();
+        gc.clearRect(0, 0, VIEW_W, VIEW_H);
+        renderer.renderMap();
+    }
+
+    /**
+     * Generates a map of random walkable tiles (several colors, one open room)
+     * with the player in the top-left corner.
+     */
+    private static TileType[][] randomMap(int size, long seed) {
+        TileType[] types = { TileType.FLOOR, TileType.DOOR, TileType.DOORGRATE, TileType.ARCH, TileType.EXIT };
+        Random random = new Random(seed);
+        TileType[][] map = new TileType[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) map[y][x] = types[random.nextInt(types.length)];
+        }
+        map[8][8] = TileType.PLAYER;
+        return map;
+    }
+}
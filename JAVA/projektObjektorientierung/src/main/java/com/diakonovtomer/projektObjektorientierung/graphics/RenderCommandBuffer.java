@@ -0,0 +1,331 @@
+package com.diakonovtomer.projektObjektorientierung.graphics;
+
+import java.util.Arrays;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+
+/**
+ * Records drawing commands and submits them to a {@link RenderBackend} sorted by state.
+ * <p>
+ * Renderers call the {@code GraphicsContext}-like methods of this class instead of
+ * drawing directly. Each primitive is stored with the state it needs (the fill paint,
+ * or the stroke paint and line width) in reused primitive arrays. {@link #flush()}
+ * then draws the commands grouped by state, in the order the states were first used,
+ * and only sets a state on the backend when it differs from the current one. A map of
+ * several hundred tiles in a handful of colors thus costs a handful of state changes
+ * instead of one per tile.
+ * </p>
+ *
+ * <h2>Draw order:</h2>
+ * Commands with the same state keep their order. Commands with different states may be
+ * reordered, so the primitives recorded between two barriers must not overlap
+ * (neighbouring tiles, for example). {@link #clearRect} and {@link #barrier()} end such
+ * a group: everything recorded before them is drawn first.
+ *
+ * <p>
+ * Once the arrays have grown to the largest frame, recording and flushing allocate
+ * nothing. The backend's state is assumed unknown at the start of each flush, so other
+ * code may draw on the same target between flushes.
+ * </p>
+ *
+ * @author Artiem
+ */
+public final class RenderCommandBuffer {
+
+    /** Command opcodes. */
+    private static final byte FILL_RECT = 0, STROKE_RECT = 1, FILL_POLYGON = 2, STROKE_POLYGON = 3,
+            CLEAR_RECT = 4, BARRIER = 5;
+
+    /** State kinds: none (clear, barrier), fill paint, stroke paint and line width. */
+    private static final byte NO_STATE = 0, FILL = 1, STROKE = 2;
+
+    /** Backend the commands are submitted to. */
+    private final RenderBackend backend;
+
+    /** Opcode, state id and first coordinate of each recorded command. */
+    private byte[] ops = new byte[256];
+    private int[] commandStates = new int[256];
+    private int[] commandData = new int[256];
+
+    /** Number of recorded commands. */
+    private int commandCount;
+
+    /** Coordinates of the recorded commands; a polygon stores its point count, then x and y. */
+    private double[] coords = new double[1024];
+
+    /** Number of used entries in {@link #coords}. */
+    private int coordCount;
+
+    /** States used since the last flush, by id; id 0 is the empty state. */
+    private byte[] stateKinds = new byte[16];
+    private Paint[] statePaints = new Paint[16];
+    private double[] stateWidths = new double[16];
+
+    /** Number of states used since the last flush. */
+    private int stateCount = 1;
+
+    /** Current fill paint, stroke paint and line width of the recording side. */
+    private Paint fill = Color.BLACK, stroke = Color.BLACK;
+    private double lineWidth = 1;
+
+    /** State ids of the current fill and stroke state, -1 if not looked up yet. */
+    private int fillState = -1, strokeState = -1;
+
+    /** Commands of one group in drawing order. */
+    private int[] sorted = new int[256];
+
+    /** Number of commands per state, then the start of each state in {@link #sorted}. */
+    private int[] stateStart = new int[17];
+
+    /** Corner points handed to the backend. */
+    private double[] xPoints = new double[4], yPoints = new double[4];
+
+    /** State set on the backend during a flush. */
+    private Paint backendFill, backendStroke;
+    private double backendLineWidth;
+
+    /** Number of state changes submitted so far (for profiling). */
+    private int stateChanges;
+
+    /**
+     * Creates an empty buffer.
+     *
+     * @param backend backend the commands are drawn with
+     */
+    public RenderCommandBuffer(RenderBackend backend) {
+        this.backend = backend;
+    }
+
+    // === GETTERS ===
+
+    public RenderBackend getBackend() { return backend; }
+
+    /**
+     * Returns the number of recorded commands not flushed yet.
+     *
+     * @return number of pending commands
+     */
+    public int getCommandCount() { return commandCount; }
+
+    /**
+     * Returns how many fill, stroke and line width changes were submitted to the backend.
+     *
+     * @return number of state changes since the buffer was created
+     */
+    public int getStateChanges() { return stateChanges; }
+
+    // === RECORDING ===
+
+    public void setFill(Paint paint) {
+        if (paint == null || paint.equals(fill)) return;
+        fill = paint;
+        fillState = -1;
+    }
+
+    public void setStroke(Paint paint) {
+        if (paint == null || paint.equals(stroke)) return;
+        stroke = paint;
+        strokeState = -1;
+    }
+
+    public void setLineWidth(double width) {
+        if (width <= 0 || width == lineWidth) return;
+        lineWidth = width;
+        strokeState = -1;
+    }
+
+    public void fillRect(double x, double y, double w, double h) {
+        addRect(FILL_RECT, currentFillState(), x, y, w, h);
+    }
+
+    public void strokeRect(double x, double y, double w, double h) {
+        addRect(STROKE_RECT, currentStrokeState(), x, y, w, h);
+    }
+
+    /**
+     * Clears a rectangle after everything recorded so far has been drawn.
+     */
+    public void clearRect(double x, double y, double w, double h) {
+        addRect(CLEAR_RECT, 0, x, y, w, h);
+    }
+
+    /**
+     * Records a filled polygon; the arrays are copied and may be reused right away.
+     */
+    public void fillPolygon(double[] xPoints, double[] yPoints, int points) {
+        addPolygon(FILL_POLYGON, currentFillState(), xPoints, yPoints, points);
+    }
+
+    /**
+     * Records a stroked polygon; the arrays are copied and may be reused right away.
+     */
+    public void strokePolygon(double[] xPoints, double[] yPoints, int points) {
+        addPolygon(STROKE_POLYGON, currentStrokeState(), xPoints, yPoints, points);
+    }
+
+    /**
+     * Ends the current group: commands recorded later are drawn after all earlier ones.
+     */
+    public void barrier() {
+        addCommand(BARRIER, 0, 0);
+    }
+
+    // === SUBMISSION ===
+
+    /**
+     * Draws all recorded commands in state order and empties the buffer.
+     */
+    public void flush() {
+        backendFill = null;
+        backendStroke = null;
+        backendLineWidth = Double.NaN;
+        int groupStart = 0;
+        for (int i = 0; i <= commandCount; i++) {
+            if (i < commandCount && ops[i] != CLEAR_RECT && ops[i] != BARRIER) continue;
+            drawGroup(groupStart, i);
+            if (i < commandCount && ops[i] == CLEAR_RECT) draw(i);
+            groupStart = i + 1;
+        }
+        commandCount = 0;
+        coordCount = 0;
+        Arrays.fill(statePaints, 1, stateCount, null);
+        stateCount = 1;
+        fillState = -1;
+        strokeState = -1;
+    }
+
+    /**
+     * Draws the commands {@code from} (inclusive) to {@code to} (exclusive) grouped by
+     * state (counting sort on the state id, which keeps the order within a state).
+     */
+    private void drawGroup(int from, int to) {
+        if (from >= to) return;
+        final int[] start = stateStart;
+        Arrays.fill(start, 0, stateCount + 1, 0);
+        for (int i = from; i < to; i++) start[commandStates[i] + 1]++;
+        for (int s = 0; s < stateCount; s++) start[s + 1] += start[s];
+        for (int i = from; i < to; i++) sorted[start[commandStates[i]]++] = i;
+        for (int i = 0; i < to - from; i++) draw(sorted[i]);
+    }
+
+    /**
+     * Applies the state of a command to the backend if needed and draws it.
+     */
+    private void draw(int command) {
+        int state = commandStates[command];
+        if (stateKinds[state] == FILL && statePaints[state] != backendFill) {
+            backendFill = statePaints[state];
+            backend.setFill(backendFill);
+            stateChanges++;
+        } else if (stateKinds[state] == STROKE) {
+            if (statePaints[state] != backendStroke) {
+                backendStroke = statePaints[state];
+                backend.setStroke(backendStroke);
+                stateChanges++;
+            }
+            if (stateWidths[state] != backendLineWidth) {
+                backendLineWidth = stateWidths[state];
+                backend.setLineWidth(backendLineWidth);
+                stateChanges++;
+            }
+        }
+
+        int c = commandData[command];
+        switch (ops[command]) {
+            case FILL_RECT -> backend.fillRect(coords[c], coords[c + 1], coords[c + 2], coords[c + 3]);
+            case STROKE_RECT -> backend.strokeRect(coords[c], coords[c + 1], coords[c + 2], coords[c + 3]);
+            case CLEAR_RECT -> backend.clearRect(coords[c], coords[c + 1], coords[c + 2], coords[c + 3]);
+            case FILL_POLYGON -> backend.fillPolygon(xPoints, yPoints, loadPolygon(c));
+            case STROKE_POLYGON -> backend.strokePolygon(xPoints, yPoints, loadPolygon(c));
+            default -> { } // barrier
+        }
+    }
+
+    /**
+     * Copies a recorded polygon into {@link #xPoints} and {@link #yPoints}.
+     *
+     * @return number of points
+     */
+    private int loadPolygon(int c) {
+        int points = (int) coords[c];
+        if (points > xPoints.length) {
+            xPoints = new double[points];
+            yPoints = new double[points];
+        }
+        System.arraycopy(coords, c + 1, xPoints, 0, points);
+        System.arraycopy(coords, c + 1 + points, yPoints, 0, points);
+        return points;
+    }
+
+    // === STORAGE ===
+
+    private int currentFillState() {
+        if (fillState < 0) fillState = stateId(FILL, fill, 0);
+        return fillState;
+    }
+
+    private int currentStrokeState() {
+        if (strokeState < 0) strokeState = stateId(STROKE, stroke, lineWidth);
+        return strokeState;
+    }
+
+    /**
+     * Returns the id of a state, adding it to the table on its first use since the last flush.
+     */
+    private int stateId(byte kind, Paint paint, double width) {
+        for (int s = 1; s < stateCount; s++) {
+            if (stateKinds[s] == kind && stateWidths[s] == width && statePaints[s].equals(paint)) return s;
+        }
+        if (stateCount == stateKinds.length) {
+            int capacity = stateCount * 2;
+            stateKinds = Arrays.copyOf(stateKinds, capacity);
+            statePaints = Arrays.copyOf(statePaints, capacity);
+            stateWidths = Arrays.copyOf(stateWidths, capacity);
+            stateStart = new int[capacity + 1];
+        }
+        stateKinds[stateCount] = kind;
+        statePaints[stateCount] = paint;
+        stateWidths[stateCount] = width;
+        return stateCount++;
+    }
+
+    private void addRect(byte op, int state, double x, double y, double w, double h) {
+        int c = reserveCoords(4);
+        coords[c] = x;
+        coords[c + 1] = y;
+        coords[c + 2] = w;
+        coords[c + 3] = h;
+        addCommand(op, state, c);
+    }
+
+    private void addPolygon(byte op, int state, double[] xs, double[] ys, int points) {
+        int c = reserveCoords(1 + 2 * points);
+        coords[c] = points;
+        System.arraycopy(xs, 0, coords, c + 1, points);
+        System.arraycopy(ys, 0, coords, c + 1 + points, points);
+        addCommand(op, state, c);
+    }
+
+    private int reserveCoords(int count) {
+        if (coordCount + count > coords.length) {
+            coords = Arrays.copyOf(coords, Math.max(coordCount + count, coords.length * 2));
+        }
+        int c = coordCount;
+        coordCount += count;
+        return c;
+    }
+
+    private void addCommand(byte op, int state, int data) {
+        if (commandCount == ops.length) {
+            int capacity = commandCount * 2;
+            ops = Arrays.copyOf(ops, capacity);
+            commandStates = Arrays.copyOf(commandStates, capacity);
+            commandData = Arrays.copyOf(commandData, capacity);
+            sorted = new int[capacity];
+        }
+        ops[commandCount] = op;
+        commandStates[commandCount] = state;
+        commandData[commandCount] = data;
+        commandCount++;
+    }
+}
@@ -30,10 +30,28 @@ public interface Renderer {
      * Typically pulled from the {@code Camera} object.
      */
     void setOffsets();
+
+    /**
+     * Shifts everything the renderer draws by a fixed amount, for canvases that
+     * extend beyond the view (see {@link RendererManager}). Applied on the next
+     * {@link #setOffsets()}.
+     *
+     * @param originX horizontal position of the view's left edge on the canvas, in pixels
+     * @param originY vertical position of the view's top edge on the canvas, in pixels
+     */
+    void setOrigin(double originX, double originY);
     
     /**
      * Renders the player character using the current coordinate system.
      * Should draw the player at the center of the screen based on camera.
      */
     void renderPlayer();
+
+    /**
+     * Notifies the renderer that a tile changed, so cached drawings of it are redrawn.
+     *
+     * @param tileY the Y (row) index of the changed tile
+     * @param tileX the X (column) index of the changed tile
+     */
+    void invalidateTile(int tileY, int tileX);
 }
@@ -1,9 +1,9 @@
 package com.diakonovtomer.projektObjektorientierung.graphics;
 
 import com.diakonovtomer.projektObjektorientierung.Config;
-import com.diakonovtomer.projektObjektorientierung.model.map.Tile;
+import com.diakonovtomer.projektObjektorientierung.Constant;
+import com.diakonovtomer.projektObjektorientierung.model.map.TileSource;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 
 /**
@@ -12,74 +12,196 @@ import javafx.scene.paint.Color;
  * This class delegates rendering tasks to either {@link CartRenderer} or {@link IsoRenderer},
  * depending on the value of the {@code RENDER_MODE} property in {@code config.properties}.
  * </p>
- * 
- * Responsibilities include:
+ *
+ * The frame is composed of three stacked canvas layers, each with its own renderer:
  * <ul>
- *     <li>Clearing the screen each frame</li>
- *     <li>Rendering the map tiles</li>
- *     <li>Highlighting a specific tile (e.g. hover)</li>
- *     <li>Rendering the player</li>
+ *     <li>Map layer: the tile map, larger than the view by {@code RENDER_SCROLL_MARGIN}
+ *         pixels on every side. While the camera stays within that margin the canvas is
+ *         only moved with {@code setTranslateX/Y}; it is redrawn when the camera leaves
+ *         the margin or a tile changes.</li>
+ *     <li>Entity layer: the player; only the area it left and the area it moved to
+ *         are redrawn.</li>
+ *     <li>UI layer: the tile highlight (hover effect), redrawn when the hovered tile
+ *         or the camera changes.</li>
  * </ul>
- * 
+ * A frame in which nothing changed issues no drawing calls.
+ * <p>
+ * Map tiles are drawn from pre-rendered chunks whose memory is capped by
+ * {@code RENDER_CHUNK_CACHE_MB}; a value of 0 draws every visible tile each redraw.
+ * </p>
+ *
  * @author adiakonov
  */
 public class RendererManager {
 
-    /** The selected renderer based on RENDER_MODE ("2D" or "3D") */
-    private final Renderer renderer;
-    
-    /** JavaFX graphics context to draw on */
-    private final GraphicsContext gc;
-    
-    /** JavaFX canvas that holds the graphics context */
-    private Canvas canvas;
+    /** Renderer of the map layer. */
+    private final Renderer mapRenderer;
+
+    /** Renderer of the entity layer. */
+    private final Renderer entityRenderer;
+
+    /** Renderer of the UI layer. */
+    private final Renderer uiRenderer;
+
+    /** Canvas of the map layer (view size plus the scroll margin on every side). */
+    private final Canvas mapCanvas;
+
+    /** Canvas of the entity layer (view size). */
+    private final Canvas entityCanvas;
+
+    /** Canvas of the UI layer (view size). */
+    private final Canvas uiCanvas;
+
+    /** Camera providing the screen offsets. */
+    private final Camera camera;
+
+    /** Pixels the map layer extends beyond the view on every side. */
+    private final double scrollMargin;
+
+    /** Whether the map layer must be redrawn regardless of the camera. */
+    private boolean mapDirty = true;
+
+    /** Camera offsets the map layer was last drawn with. */
+    private double mapDrawnX, mapDrawnY;
+
+    /** View centre the player was last drawn around, NaN if nothing is drawn. */
+    private double playerCenterX = Double.NaN, playerCenterY = Double.NaN;
+
+    /** Highlighted tile and camera offsets of the last UI layer redraw. */
+    private int uiTileY = Integer.MIN_VALUE, uiTileX = Integer.MIN_VALUE;
+    private double uiOffsetX = Double.NaN, uiOffsetY = Double.NaN;
+
+    /** Number of map layer redraws (for profiling). */
+    private int mapRedraws;
 
     /**
      * Constructs a new RendererManager, selecting the rendering mode (2D or 3D)
      * at runtime based on configuration.
+     * The map canvas is resized to the view plus the scroll margin.
      *
-     * @param gc      the graphics context used for drawing
-     * @param canvas  the canvas component
-     * @param camera  the camera providing screen offsets
-     * @param tiles   the tile map to be rendered
+     * @param mapCanvas    the canvas of the map layer (bottom)
+     * @param entityCanvas the canvas of the entity layer
+     * @param uiCanvas     the canvas of the UI layer (top); its size is the view size
+     * @param camera       the camera providing screen offsets
+     * @param tiles        the tile map to be rendered
      */
-    public RendererManager(GraphicsContext gc, Canvas canvas, Camera camera, Tile[][] tiles) {
-        this.gc = gc;
-        this.canvas = canvas;
-        this.renderer =  (Config.get("RENDER_MODE").equals("3D")) ? new IsoRenderer(gc, canvas, camera, tiles) : new CartRenderer(gc, canvas, camera, tiles);
+    public RendererManager(Canvas mapCanvas, Canvas entityCanvas, Canvas uiCanvas, Camera camera, TileSource tiles) {
+        this.mapCanvas = mapCanvas;
+        this.entityCanvas = entityCanvas;
+        this.uiCanvas = uiCanvas;
+        this.camera = camera;
+        this.scrollMargin = Math.max(0, Double.parseDouble(Config.get("RENDER_SCROLL_MARGIN", "256")));
+
+        mapCanvas.setWidth(uiCanvas.getWidth() + 2 * scrollMargin);
+        mapCanvas.setHeight(uiCanvas.getHeight() + 2 * scrollMargin);
+        entityCanvas.setWidth(uiCanvas.getWidth());
+        entityCanvas.setHeight(uiCanvas.getHeight());
+
+        long chunkCacheBytes = Long.parseLong(Config.get("RENDER_CHUNK_CACHE_MB", "64")) << 20;
+        this.mapRenderer = createRenderer(mapCanvas, camera, tiles, chunkCacheBytes);
+        this.mapRenderer.setOrigin(scrollMargin, scrollMargin);
+        this.entityRenderer = createRenderer(entityCanvas, camera, tiles, 0);
+        this.uiRenderer = createRenderer(uiCanvas, camera, tiles, 0);
+        entityCanvas.getGraphicsContext2D().clearRect(0, 0, entityCanvas.getWidth(), entityCanvas.getHeight());
+        uiCanvas.getGraphicsContext2D().clearRect(0, 0, uiCanvas.getWidth(), uiCanvas.getHeight());
+    }
+
+    private static Renderer createRenderer(Canvas canvas, Camera camera, TileSource tiles, long chunkCacheBytes) {
+        return (Config.get("RENDER_MODE").equals("3D"))
+                ? new IsoRenderer(canvas.getGraphicsContext2D(), canvas, camera, tiles, chunkCacheBytes)
+                : new CartRenderer(canvas.getGraphicsContext2D(), canvas, camera, tiles, chunkCacheBytes);
     }
 
+    // === GETTERS ===
+
     /**
-     * Renders the full tile map.
+     * Returns how often the map layer was redrawn.
+     *
+     * @return number of map layer redraws
      */
-    public void renderMap() { renderer.renderMap(); }
+    public int getMapRedraws() { return mapRedraws; }
 
     /**
-     * Highlights a specific tile (hover effect).
+     * Brings all layers up to date with the camera and the highlighted tile.
+     * Called once per frame after the camera was updated.
      *
-     * @param tileY the tile's Y coordinate (row)
-     * @param tileX the tile's X coordinate (column)
+     * @param highlightTileY the hovered tile's Y coordinate (row), -1 if none
+     * @param highlightTileX the hovered tile's X coordinate (column), -1 if none
+     */
+    public void render(int highlightTileY, int highlightTileX) {
+        renderMapLayer();
+        renderEntityLayer();
+        renderUiLayer(highlightTileY, highlightTileX);
+    }
+
+    /**
+     * Slides the map layer with the camera, redrawing it only when the camera has moved
+     * beyond the scroll margin since the last redraw.
+     */
+    private void renderMapLayer() {
+        double dx = camera.getOffsetX() - mapDrawnX;
+        double dy = camera.getOffsetY() - mapDrawnY;
+        if (mapDirty || Math.abs(dx) > scrollMargin || Math.abs(dy) > scrollMargin) {
+            cleaningScreen();
+            mapRenderer.renderMap();
+            mapDrawnX = camera.getOffsetX();
+            mapDrawnY = camera.getOffsetY();
+            dx = dy = 0;
+            mapDirty = false;
+            mapRedraws++;
+        }
+        mapCanvas.setTranslateX(dx - scrollMargin);
+        mapCanvas.setTranslateY(dy - scrollMargin);
+    }
+
+    /**
+     * Redraws the player if its screen area changed, clearing only the area it left.
      */
-    public void renderHighlightTile(int tileY, int tileX) { renderer.renderHighlightTile(tileY, tileX); }
+    private void renderEntityLayer() {
+        if (camera.getCenterX() == playerCenterX && camera.getCenterY() == playerCenterY) return;
+        if (!Double.isNaN(playerCenterX)) {
+            // The player is drawn within its size around the view centre in both projections
+            double halfW = Constant.PLAYER_SIZE_W / 2 + 1, halfH = Constant.PLAYER_SIZE_H / 2 + 1;
+            entityCanvas.getGraphicsContext2D().clearRect(playerCenterX - halfW, playerCenterY - halfH, 2 * halfW, 2 * halfH);
+        }
+        entityRenderer.renderPlayer();
+        playerCenterX = camera.getCenterX();
+        playerCenterY = camera.getCenterY();
+    }
 
     /**
-     * Updates the renderer's internal offsets from the camera.
-     * Useful after window resize or camera movement.
+     * Redraws the highlight if the hovered tile or the camera changed.
      */
-    public void setOffsets() { renderer.setOffsets(); }
+    private void renderUiLayer(int tileY, int tileX) {
+        if (tileY == uiTileY && tileX == uiTileX
+                && camera.getOffsetX() == uiOffsetX && camera.getOffsetY() == uiOffsetY) return;
+        uiCanvas.getGraphicsContext2D().clearRect(0, 0, uiCanvas.getWidth(), uiCanvas.getHeight());
+        uiRenderer.setOffsets();
+        uiRenderer.renderHighlightTile(tileY, tileX);
+        uiTileY = tileY;
+        uiTileX = tileX;
+        uiOffsetX = camera.getOffsetX();
+        uiOffsetY = camera.getOffsetY();
+    }
 
     /**
-     * Renders the player at the current position.
+     * Marks a changed tile for redrawing (registered as a map tile listener).
+     *
+     * @param tileY the tile's Y coordinate (row)
+     * @param tileX the tile's X coordinate (column)
      */
-    public void renderPlayer() { renderer.renderPlayer(); }
-    
+    public void invalidateTile(int tileY, int tileX) {
+        mapRenderer.invalidateTile(tileY, tileX);
+        mapDirty = true;
+    }
+
     /**
-     * Clears the canvas and fills it with a black background.
-     * Called at the beginning of each frame.
+     * Clears the map layer and fills it with a black background.
+     * Called before each redraw of the map layer.
      */
-    public void cleaningScreen() { // Очистика экрана
-        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
-        gc.setFill(Color.BLACK);
-        gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+    private void cleaningScreen() { // Очистика экрана
+        mapCanvas.getGraphicsContext2D().clearRect(0, 0, mapCanvas.getWidth(), mapCanvas.getHeight());
+        mapCanvas.getGraphicsContext2D().setFill(Color.BLACK);
+        mapCanvas.getGraphicsContext2D().fillRect(0, 0, mapCanvas.getWidth(), mapCanvas.getHeight());
     }
 }
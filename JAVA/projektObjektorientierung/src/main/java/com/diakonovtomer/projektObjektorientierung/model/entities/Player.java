@@ -3,11 +3,10 @@ package com.diakonovtomer.projektObjektorientierung.model.entities;
 import com.diakonovtomer.projektObjektorientierung.Config;
 import com.diakonovtomer.projektObjektorientierung.Constant;
 import com.diakonovtomer.projektObjektorientierung.game.PathManager;
+import com.diakonovtomer.projektObjektorientierung.game.PathMode;
 import com.diakonovtomer.projektObjektorientierung.model.map.MapManager;
+import java.util.concurrent.CompletableFuture;
 import javafx.scene.canvas.GraphicsContext;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;        
 
 /**
  * Represents the player entity within the game.
@@ -60,8 +59,20 @@ public class Player {
     /** Movement speed in pixels per second */
     private double playerSpeed;
     
-    /** Path to follow, stored as tile coordinates (Y, X) */
-    private Queue<int[]> path = new LinkedList<>();
+    /** Path to follow, stored as packed tile indices ({@code y * width + x}); grows, never shrinks */
+    private int[] path = new int[0];
+    
+    /** Number of valid waypoints in {@link #path} */
+    private int pathLength = 0;
+    
+    /** Index of the next waypoint to walk to */
+    private int pathCursor = 0;
+    
+    /** Background search started by the last click, applied in {@link #update(double)} */
+    private CompletableFuture<int[]> pendingPath;
+    
+    /** True while a sliced search started by the last click is still running */
+    private boolean slicing = false;
     
     /** Target pixel Y position for smooth movement */
     private double targetPosY;
@@ -69,6 +80,12 @@ public class Player {
     /** Target pixel X position for smooth movement */
     private double targetPosX;
     
+    /** Unit vector (Y component) of the current straight segment, computed once per waypoint */
+    private double stepY;
+    
+    /** Unit vector (X component) of the current straight segment, computed once per waypoint */
+    private double stepX;
+    
     /** Indicates whether player is currently moving */
     private boolean moving = false;
     
@@ -130,26 +147,157 @@ public class Player {
 
     /**
      * Initiates pathfinding and sets movement toward the target tile.
+     * If the target tile cannot be reached (wall, void, an area sealed off by grates),
+     * the closest tile the player can walk to is used instead. In asynchronous mode the search runs in the background
+     * and the path is picked up by a later {@link #update(double)}; the player finishes its current
+     * segment meanwhile and the search starts where that segment ends, so a late result
+     * never leads back to where the player was at the click. In sliced mode
+     * every update advances the search, which also starts where the current segment ends,
+     * and the player already walks toward the best partial node, taking a newer route
+     * at each waypoint; in incremental mode the path is repaired when tiles change.
      *
      * @param tileY target tile Y
      * @param tileX target tile X
      */
     public void goTo(int tileY, int tileX) {
-        List<int[]> newPath = pathManager.findPath(getPositionTeilY(), getPositionTeilX(), tileY, tileX);
-        if (!newPath.isEmpty()) {
-            newPath.remove(0); // Skip current tile
-            path.clear();
-            if (newPath != null && !newPath.isEmpty()) {
-                path.addAll(newPath);
-                // Let's set the first goal (first step)
-                int[] first = path.poll();
-                if (first != null) {
-                    targetPosY = first[0] * Constant.TILE_H;
-                    targetPosX = first[1] * Constant.TILE_W;
-                    moving = true;
-                }
+        int target = mapManager.getNearestReachable(getPositionTeilY(), getPositionTeilX(), tileY, tileX);
+        if (target < 0) return; // outside the map
+        tileY = target / mapManager.getWidth();
+        tileX = target % mapManager.getWidth();
+        
+        switch (pathManager.getPathMode()) {
+            case ASYNC -> {
+                int from = stopTile();
+                pathLength = pathCursor; // finish the current step, drop the rest of the old path
+                // Supersedes (and cancels) the search of a previous click
+                pendingPath = pathManager.requestPath(from / mapManager.getWidth(), from % mapManager.getWidth(), tileY, tileX);
+                return;
+            }
+            case INCREMENTAL -> {
+                followPath(pathManager.getPath(),
+                        pathManager.startIncrementalPath(getPositionTeilY(), getPositionTeilX(), tileY, tileX));
+                return;
+            }
+            case SLICED -> {
+                int from = stopTile();
+                pathLength = pathCursor; // finish the current step, drop the rest of the old path
+                slicing = pathManager.startSlicedPath(from / mapManager.getWidth(), from % mapManager.getWidth(), tileY, tileX);
+                return;
             }
+            default -> { }
+        }
+        int length = pathManager.findPath(getPositionTeilY(), getPositionTeilX(), tileY, tileX);
+        followPath(pathManager.getPath(), length);
+    }
+    
+    /**
+     * Starts walking along a freshly computed path.
+     * The path is collapsed into any-angle waypoints first, so the player walks
+     * straight segments instead of stepping from tile to tile.
+     * Does nothing for an empty or single-tile path.
+     *
+     * @param cells  packed tile indices from the search start to the goal
+     * @param length number of valid entries in {@code cells}
+     */
+    private void followPath(int[] cells, int length) {
+        if (length <= 1) return;
+        if (path.length < length) path = new int[length];
+        System.arraycopy(cells, 0, path, 0, length);
+        int count = pathManager.smoothPath(path, length);
+        // Skip the start tile if the player stands exactly on it, otherwise walk back to
+        // its centre first: segments are only guaranteed walkable between tile centres
+        int width = mapManager.getWidth();
+        int first = path[0] / width * Constant.TILE_H == positionY
+                && path[0] % width * Constant.TILE_W == positionX ? 1 : 0;
+        System.arraycopy(path, first, path, 0, count - first);
+        pathLength = count - first;
+        pathCursor = 0;
+        // Let's set the first goal (first step)
+        setTarget(path[pathCursor++]);
+        moving = true;
+    }
+    
+    /**
+     * Returns the tile the player stands on once it has finished its current step:
+     * the target of the current segment while moving, otherwise its own tile.
+     *
+     * @return packed tile index ({@code y * width + x})
+     */
+    private int stopTile() {
+        if (!moving) return positionTileY * mapManager.getWidth() + positionTileX;
+        return (int) Math.round(targetPosY / Constant.TILE_H) * mapManager.getWidth()
+                + (int) Math.round(targetPosX / Constant.TILE_W);
+    }
+    
+    /**
+     * Applies the result of a finished background search.
+     * The path starts at the tile the current step ends on (see {@link #stopTile()}),
+     * so the player either is there already or continues its step toward it.
+     * Cancelled or failed searches are dropped.
+     */
+    private void applyPendingPath() {
+        if (pendingPath == null || !pendingPath.isDone()) return;
+        CompletableFuture<int[]> done = pendingPath;
+        pendingPath = null;
+        if (done.isCompletedExceptionally()) return;
+        int[] cells = done.join();
+        followPath(cells, cells.length);
+    }
+    
+    /**
+     * Repairs the path of the incremental planner after tile changes (doors opening or
+     * closing) and continues along the repaired path without a new search.
+     */
+    private void repairIncrementalPath() {
+        if (pathManager.getPathMode() != PathMode.INCREMENTAL || !moving) return;
+        int length = pathManager.updateIncrementalPath(positionTileY, positionTileX);
+        if (length == 0) {
+            pathLength = pathCursor; // goal cut off: finish the current step and stop
+        } else if (length > 1) {
+            followPath(pathManager.getPath(), length);
+        }
+    }
+    
+    /**
+     * Advances a running sliced search by one frame budget and switches to the new
+     * route when its end (the best partial node or the goal) has changed. Routes are
+     * only switched on a tile centre (at a waypoint or when standing): mid-segment,
+     * a new route would send the player back to the centre of its tile first.
+     */
+    private void stepSlicedPath() {
+        if (!slicing) return;
+        pathManager.stepSlicedPath();
+        if (moving && !(positionY == positionTileY * Constant.TILE_H && positionX == positionTileX * Constant.TILE_W)) return;
+        boolean finished = !pathManager.isSlicedPathRunning();
+        int length = pathManager.routeSlicedPath(positionTileY, positionTileX);
+        int[] cells = pathManager.getPath();
+        if (length > 1 && (pathLength == 0 || cells[length - 1] != path[pathLength - 1] || !moving)) {
+            followPath(cells, length);
         }
+        if (finished) slicing = false; // the final route is taken
+    }
+    
+    /**
+     * Sets the pixel target of the next movement segment, precomputes its direction
+     * vector and turns the player toward it.
+     *
+     * @param cell packed tile index of the waypoint
+     */
+    private void setTarget(int cell) {
+        int width = mapManager.getWidth();
+        targetPosY = (cell / width) * Constant.TILE_H;
+        targetPosX = (cell % width) * Constant.TILE_W;
+
+        double vectorDX = targetPosX - positionX;
+        double vectorDY = targetPosY - positionY;
+        double dist = Math.sqrt(vectorDX * vectorDX + vectorDY * vectorDY);
+        stepX = dist > 0 ? vectorDX / dist : 0;
+        stepY = dist > 0 ? vectorDY / dist : 0;
+
+        // Nearest of the 8 directions: a component counts once it exceeds ~27 degrees
+        int sx = Math.abs(vectorDX) * 2 > Math.abs(vectorDY) ? (int) Math.signum(vectorDX) : 0;
+        int sy = Math.abs(vectorDY) * 2 > Math.abs(vectorDX) ? (int) Math.signum(vectorDY) : 0;
+        this.setDirection(positionTileY + sy, positionTileX + sx);
     }
 
     /**
@@ -158,39 +306,35 @@ public class Player {
      * @param deltaTime time since last update, in seconds
      */
     public void update(double deltaTime) {
+        applyPendingPath();
+        stepSlicedPath();
+        repairIncrementalPath();
         if (!moving) return;
 
-        double vectorDX = targetPosX - positionX;
-        double vectorDY = targetPosY - positionY;
-
-        double dist = Math.sqrt(vectorDX * vectorDX + vectorDY * vectorDY);
+        // Distance left along the segment; no square root needed per frame
+        double remaining = (targetPosX - positionX) * stepX + (targetPosY - positionY) * stepY;
         
-        if (dist < playerSpeed * deltaTime) {
-            // Reached the goal, set the position exactly on the tile
+        if (remaining <= playerSpeed * deltaTime) {
+            // Reached the waypoint, set the position exactly on the tile
             positionX = targetPosX;
             positionY = targetPosY;
-
-            // Updating logical coordinates
-            int nextX = (int) Math.round(positionX / Constant.TILE_W);
-            int nextY = (int) Math.round(positionY / Constant.TILE_H);
-            
-            this.setDirection(nextY, nextX); // setting direction
-            
-            this.setPositionTileX(nextX);
-            this.setPositionTileY(nextY);
+            positionTileX = (int) Math.round(positionX / Constant.TILE_W);
+            positionTileY = (int) Math.round(positionY / Constant.TILE_H);
 
             // We move on to the next waypoint, if there is one.
-            if (!path.isEmpty()) {
-                int[] next = path.poll();
-                targetPosY = next[0] * Constant.TILE_H;
-                targetPosX = next[1] * Constant.TILE_W;
+            if (pathCursor < pathLength) {
+                setTarget(path[pathCursor++]);
             } else {
                 moving = false; // The path has been passed
+                if (pathManager.getPathMode() == PathMode.INCREMENTAL) pathManager.stopIncrementalPath();
             }
         } else {
-            // We move towards the goal at a constant speed
-            positionX += vectorDX / dist * playerSpeed * deltaTime;
-            positionY += vectorDY / dist * playerSpeed * deltaTime;
+            // We move towards the waypoint at a constant speed
+            positionX += stepX * playerSpeed * deltaTime;
+            positionY += stepY * playerSpeed * deltaTime;
+            // Segments span several tiles: keep the logical tile in step with the pixels
+            positionTileX = (int) Math.round(positionX / Constant.TILE_W);
+            positionTileY = (int) Math.round(positionY / Constant.TILE_H);
         }
     }
     
@@ -0,0 +1,282 @@
+package com.diakonovtomer.projektObjektorientierung.model.map;
+
+import java.util.Arrays;
+
+/**
+ * Connected components of the passable tiles of a large map, stored per chunk.
+ * <p>
+ * The map is cut into {@link ChunkedWorld#CHUNK_SIZE}-sized square chunks. Every chunk
+ * labels its own passable tiles (orthogonal flood fill inside the chunk) and keeps only
+ * the labels of its border tiles. A union-find over all chunk-local components, joined
+ * where their border tiles touch, yields the map-wide components. Two tiles get the
+ * same label exactly when {@link ComponentIndex} would give them the same label, but
+ * the index keeps about a quarter byte per tile instead of eight: the tile labels of a
+ * chunk are recomputed when one of its tiles is asked about, and the last few chunks
+ * stay cached.
+ * </p>
+ *
+ * <p>
+ * A tile change relabels its chunk and marks the union-find as stale; the next query
+ * rebuilds it from the stored border labels without reading any tiles.
+ * </p>
+ *
+ * @author adiakonov
+ */
+final class ChunkComponentIndex {
+
+    /** Label of impassable tiles. */
+    static final int NONE = ComponentIndex.NONE;
+
+    /** Edge length of a chunk in tiles. */
+    private static final int CHUNK = ChunkedWorld.CHUNK_SIZE;
+
+    /** Border labels per chunk: top row, bottom row, left column, right column. */
+    private static final int BORDER = 4 * CHUNK;
+
+    /** Chunks whose tile labels are kept; a ring scan around a tile touches up to 9. */
+    private static final int CACHED_CHUNKS = 16;
+
+    /** Passability of the map. */
+    private final PassabilityMask tiles;
+
+    /** Map size in tiles. */
+    private final int width, height;
+
+    /** Map size in chunks. */
+    private final int chunksX, chunksY;
+
+    /** Local labels of the border tiles of every chunk, 0 for impassable or off-map tiles. */
+    private final short[] border;
+
+    /** Number of local components of every chunk. */
+    private final int[] counts;
+
+    /** First union-find entry of every chunk's components. */
+    private final int[] base;
+
+    /** Union-find parents of all chunk-local components. */
+    private int[] parent = new int[0];
+
+    /** True if a chunk was relabeled since the union-find was built. */
+    private boolean dirty = true;
+
+    /** Chunks whose tile labels are cached (-1 for a free slot), and their labels. */
+    private final int[] cachedChunk = new int[CACHED_CHUNKS];
+    private final short[][] cachedLabels = new short[CACHED_CHUNKS][CHUNK * CHUNK];
+
+    /** Cache slot replaced next (round robin). */
+    private int nextSlot = 0;
+
+    /** Scratch labels and flood-fill queue of one chunk. */
+    private final short[] scratch = new short[CHUNK * CHUNK];
+    private final int[] queue = new int[CHUNK * CHUNK];
+
+    /**
+     * Labels all chunks of a map.
+     *
+     * @param tiles passability of the map; later changes must be reported with
+     *              {@link #onTileChanged(int, int)}
+     */
+    ChunkComponentIndex(PassabilityMask tiles) {
+        this.tiles = tiles;
+        this.height = tiles.getHeight();
+        this.width = tiles.getWidth();
+        this.chunksX = (width + CHUNK - 1) / CHUNK;
+        this.chunksY = (height + CHUNK - 1) / CHUNK;
+        int chunks = chunksX * chunksY;
+        this.border = new short[chunks * BORDER];
+        this.counts = new int[chunks];
+        this.base = new int[chunks + 1];
+        Arrays.fill(cachedChunk, -1);
+        for (int c = 0; c < chunks; c++) relabel(c);
+    }
+
+    /**
+     * Returns the component label of a tile.
+     *
+     * @param tileY tile row index
+     * @param tileX tile column index
+     * @return the label, or {@link #NONE} for impassable tiles
+     */
+    int get(int tileY, int tileX) {
+        if (!tiles.isPassable(tileY, tileX)) return NONE;
+        if (dirty) link();
+        int c = (tileY / CHUNK) * chunksX + tileX / CHUNK;
+        int local = labels(c)[(tileY % CHUNK) * CHUNK + tileX % CHUNK];
+        return find(base[c] + local - 1) + 1;
+    }
+
+    /**
+     * Finds the tile of a component closest to a given tile (Chebyshev distance) by
+     * scanning square rings around it, nearest ring first, like
+     * {@link ComponentIndex#findNearest(int, int, int)}.
+     *
+     * @param label     component label to look for
+     * @param tileY     tile row index
+     * @param tileX     tile column index
+     * @param maxRadius largest ring distance scanned
+     * @return packed index of the closest tile with that label, or -1 if there is none
+     *         within {@code maxRadius}
+     */
+    int findNearest(int label, int tileY, int tileX, int maxRadius) {
+        if (get(tileY, tileX) == label) return tileY * width + tileX;
+        int radius = Math.min(maxRadius,
+                Math.max(Math.max(tileY, height - 1 - tileY), Math.max(tileX, width - 1 - tileX)));
+        for (int r = 1; r <= radius; r++) {
+            for (int d = 0; d <= r; d++) {
+                int found = match(label, tileY - r, tileX - d, tileY - r, tileX + d);
+                if (found < 0) found = match(label, tileY + r, tileX - d, tileY + r, tileX + d);
+                if (found < 0) found = match(label, tileY - d, tileX - r, tileY + d, tileX - r);
+                if (found < 0) found = match(label, tileY - d, tileX + r, tileY + d, tileX + r);
+                if (found >= 0) return found;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Updates the index after the passability of a single tile changed.
+     *
+     * @param tileY row of the changed tile
+     * @param tileX column of the changed tile
+     */
+    void onTileChanged(int tileY, int tileX) {
+        int c = (tileY / CHUNK) * chunksX + tileX / CHUNK;
+        relabel(c);
+        for (int i = 0; i < CACHED_CHUNKS; i++) {
+            if (cachedChunk[i] == c) cachedChunk[i] = -1;
+        }
+        dirty = true;
+    }
+
+    /**
+     * Checks the tiles {@code (y1, x1)} and {@code (y2, x2)} for a label.
+     *
+     * @return packed index of the first matching tile, or -1
+     */
+    private int match(int label, int y1, int x1, int y2, int x2) {
+        if (tiles.contains(y1, x1) && get(y1, x1) == label) return y1 * width + x1;
+        if (tiles.contains(y2, x2) && get(y2, x2) == label) return y2 * width + x2;
+        return -1;
+    }
+
+    // === CHUNKS ===
+
+    /**
+     * Returns the tile labels of a chunk, labeling it if it is not cached.
+     */
+    private short[] labels(int c) {
+        for (int i = 0; i < CACHED_CHUNKS; i++) {
+            if (cachedChunk[i] == c) return cachedLabels[i];
+        }
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % CACHED_CHUNKS;
+        label(c, cachedLabels[slot]);
+        cachedChunk[slot] = c;
+        return cachedLabels[slot];
+    }
+
+    /**
+     * Labels a chunk and stores its component count and border labels.
+     */
+    private void relabel(int c) {
+        counts[c] = label(c, scratch);
+        int b = c * BORDER;
+        int h = Math.min(CHUNK, height - (c / chunksX) * CHUNK);
+        int w = Math.min(CHUNK, width - (c % chunksX) * CHUNK);
+        for (int i = 0; i < CHUNK; i++) {
+            border[b + i]             = scratch[i];                          // top row
+            border[b + CHUNK + i]     = scratch[(h - 1) * CHUNK + i];        // bottom row
+            border[b + 2 * CHUNK + i] = scratch[i * CHUNK];                  // left column
+            border[b + 3 * CHUNK + i] = scratch[i * CHUNK + w - 1];          // right column
+        }
+    }
+
+    /**
+     * Labels the passable tiles of a chunk with 1, 2, ... in scan order; the order only
+     * depends on the tiles, so relabeling a chunk reproduces its stored labels.
+     *
+     * @param c      chunk index
+     * @param labels receives the label of every tile ({@code ly * CHUNK + lx}), 0 if impassable
+     * @return the number of components in the chunk
+     */
+    private int label(int c, short[] labels) {
+        int y0 = (c / chunksX) * CHUNK, x0 = (c % chunksX) * CHUNK;
+        int h = Math.min(CHUNK, height - y0), w = Math.min(CHUNK, width - x0);
+        Arrays.fill(labels, (short) 0);
+        int count = 0;
+        for (int ly = 0; ly < h; ly++) {
+            for (int lx = 0; lx < w; lx++) {
+                int i = ly * CHUNK + lx;
+                if (labels[i] != 0 || !tiles.isPassable(y0 + ly, x0 + lx)) continue;
+                short value = (short) ++count;
+                int head = 0, tail = 0;
+                labels[i] = value;
+                queue[tail++] = i;
+                while (head < tail) {
+                    int cell = queue[head++];
+                    int y = cell / CHUNK, x = cell % CHUNK;
+                    if (y > 0)     tail = visit(labels, y0, x0, y - 1, x, value, tail);
+                    if (y < h - 1) tail = visit(labels, y0, x0, y + 1, x, value, tail);
+                    if (x > 0)     tail = visit(labels, y0, x0, y, x - 1, value, tail);
+                    if (x < w - 1) tail = visit(labels, y0, x0, y, x + 1, value, tail);
+                }
+            }
+        }
+        return count;
+    }
+
+    private int visit(short[] labels, int y0, int x0, int y, int x, short value, int tail) {
+        int i = y * CHUNK + x;
+        if (labels[i] != 0 || !tiles.isPassable(y0 + y, x0 + x)) return tail;
+        labels[i] = value;
+        queue[tail] = i;
+        return tail + 1;
+    }
+
+    // === UNION-FIND ===
+
+    /**
+     * Rebuilds the union-find from the border labels: components of neighbouring
+     * chunks whose border tiles touch are merged.
+     */
+    private void link() {
+        int total = 0;
+        for (int c = 0; c < counts.length; c++) {
+            base[c] = total;
+            total += counts[c];
+        }
+        base[counts.length] = total;
+        if (parent.length < total) parent = new int[total];
+        for (int i = 0; i < total; i++) parent[i] = i;
+
+        for (int cy = 0; cy < chunksY; cy++) {
+            for (int cx = 0; cx < chunksX; cx++) {
+                int c = cy * chunksX + cx;
+                if (cx + 1 < chunksX) join(c, 3 * CHUNK, c + 1, 2 * CHUNK);       // right column to left column
+                if (cy + 1 < chunksY) join(c, CHUNK, c + chunksX, 0);            // bottom row to top row
+            }
+        }
+        dirty = false;
+    }
+
+    /**
+     * Merges the components of two chunks along a shared edge.
+     */
+    private void join(int a, int edgeA, int b, int edgeB) {
+        for (int i = 0; i < CHUNK; i++) {
+            int la = border[a * BORDER + edgeA + i], lb = border[b * BORDER + edgeB + i];
+            if (la == 0 || lb == 0) continue;
+            int ra = find(base[a] + la - 1), rb = find(base[b] + lb - 1);
+            if (ra != rb) parent[ra] = rb;
+        }
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]]; // path halving
+            i = parent[i];
+        }
+        return i;
+    }
+}
@@ -0,0 +1,347 @@
+package com.diakonovtomer.projektObjektorientierung.model.map;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * World whose tiles are streamed from disk in fixed-size square chunks.
+ * <p>
+ * The file stores the map chunk by chunk ({@link #CHUNK_SIZE} x {@link #CHUNK_SIZE}
+ * tiles each, edge chunks padded), so a chunk is one contiguous read. Chunks are
+ * loaded on first access and kept in an LRU cache bounded by a byte budget; the
+ * least recently used chunk is written back (if changed) and dropped when the budget
+ * is exceeded, so the heap held for tiles is bounded by the cache, not by the map size.
+ * </p>
+ *
+ * <p>
+ * Not everything else is bounded by the cache. {@link MapManager} reads every chunk
+ * once when the world opens to build its passability mask (one bit per tile), and once
+ * more for its {@link ChunkComponentIndex} (a quarter byte per tile). Path searches
+ * with the default settings allocate their state page by page for the area they
+ * search, so their memory depends on the path, not on the map. The incremental
+ * planner, the indexed heap and bucket open lists and flow fields still hold arrays
+ * for the whole map. The other per-tile navigation data is not built for file-backed
+ * worlds (see {@link TileSource#isFileBacked()}).
+ * </p>
+ *
+ * <p>
+ * {@link #prefetch(int, int, int, int, int)} is called with the camera centre every
+ * frame: it loads the chunks in view and one ring further in the direction the
+ * player is moving, so tiles are usually resident before they are drawn.
+ * </p>
+ *
+ * <p>
+ * File layout (big-endian): a 32-byte header (magic "JGPC", format version, width,
+ * height, chunk size, player start row and column, reserved) followed by the chunks
+ * in row-major chunk order. Not thread-safe; it is used from the game thread.
+ * </p>
+ *
+ * @author adiakonov
+ */
+public final class ChunkedWorld extends TileSource implements AutoCloseable {
+
+    /** Edge length of a chunk in tiles. */
+    public static final int CHUNK_SIZE = 32;
+
+    /** File magic, "JGPC". */
+    private static final int MAGIC = 0x4A475043;
+
+    /** Current file format version. */
+    public static final int FORMAT_VERSION = 1;
+
+    /** Size of the header in bytes. */
+    private static final int HEADER_SIZE = 32;
+
+    /** Bytes of tile data per chunk. */
+    private static final int CHUNK_BYTES = CHUNK_SIZE * CHUNK_SIZE;
+
+    /** Estimated heap cost of a cached chunk: tile bytes plus array, entry and object headers. */
+    private static final int CHUNK_FOOTPRINT = CHUNK_BYTES + 96;
+
+    /** Fewest chunks kept, so a single view never thrashes. */
+    private static final int MIN_CHUNKS = 16;
+
+    /** Open channel of the world file. */
+    private final FileChannel channel;
+
+    private final int width;
+    private final int height;
+
+    /** Map size in chunks. */
+    private final int chunksX, chunksY;
+
+    /** Player start position from the header. */
+    private int startY, startX;
+
+    /** Loaded chunks by chunk index, in access order (least recent first). */
+    private final LinkedHashMap<Integer, Chunk> cache;
+
+    /** Most recently used chunk; skips the hash lookup for runs of tiles in the same chunk. */
+    private Chunk last;
+
+    /** Chunks read from disk since opening (for profiling). */
+    private long loads;
+
+    /** Changed chunks written back since opening (for profiling). */
+    private long writes;
+
+    /**
+     * A loaded chunk.
+     */
+    private static final class Chunk {
+        final int index;
+        final byte[] cells = new byte[CHUNK_BYTES];
+        boolean dirty;
+
+        Chunk(int index) { this.index = index; }
+    }
+
+    private ChunkedWorld(FileChannel channel, int width, int height, long cacheBytes) {
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.chunksX = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.chunksY = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final int capacity = (int) Math.max(MIN_CHUNKS, Math.min(Integer.MAX_VALUE, cacheBytes / CHUNK_FOOTPRINT));
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Chunk> eldest) {
+                if (size() <= capacity) return false;
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Writes a chunked world file for the given tiles, replacing an existing file,
+     * and opens it. The tiles are copied chunk row by chunk row.
+     *
+     * @param file       the world file
+     * @param tiles      the tiles to store
+     * @param startY     player start row
+     * @param startX     player start column
+     * @param cacheBytes heap budget of the chunk cache
+     * @return the opened world
+     * @throws IOException if the file cannot be written
+     */
+    public static ChunkedWorld create(Path file, TileSource tiles, int startY, int startX, long cacheBytes) throws IOException {
+        int width = tiles.getWidth(), height = tiles.getHeight();
+        int chunksX = (width + CHUNK_SIZE - 1) / CHUNK_SIZE, chunksY = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeFully(out, header(width, height, startY, startX), 0);
+            ByteBuffer row = ByteBuffer.allocate(chunksX * CHUNK_BYTES);
+            for (int cy = 0; cy < chunksY; cy++) {
+                row.clear();
+                for (int cx = 0; cx < chunksX; cx++) {
+                    for (int ly = 0; ly < CHUNK_SIZE; ly++) {
+                        for (int lx = 0; lx < CHUNK_SIZE; lx++) {
+                            int y = cy * CHUNK_SIZE + ly, x = cx * CHUNK_SIZE + lx;
+                            row.put(y < height && x < width ? (byte) tiles.getType(y, x).ordinal() : 0);
+                        }
+                    }
+                }
+                row.flip();
+                writeFully(out, row, HEADER_SIZE + (long) cy * chunksX * CHUNK_BYTES);
+            }
+        }
+        return open(file, cacheBytes);
+    }
+
+    /**
+     * Opens a chunked world file. Only the header is read; chunks load on access.
+     *
+     * @param file       the world file
+     * @param cacheBytes heap budget of the chunk cache
+     * @return the opened world
+     * @throws IOException if the file cannot be read or is not a chunked world file
+     */
+    public static ChunkedWorld open(Path file, long cacheBytes) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC) throw new IOException("Not a chunked world file: " + file);
+            if (header.getInt(4) != FORMAT_VERSION) throw new IOException("Unsupported world format " + header.getInt(4) + ": " + file);
+            int width = header.getInt(8), height = header.getInt(12);
+            if (width <= 0 || height <= 0 || header.getInt(16) != CHUNK_SIZE) {
+                throw new IOException("Corrupt world header (" + width + "x" + height + ", chunk " + header.getInt(16) + "): " + file);
+            }
+            ChunkedWorld world = new ChunkedWorld(channel, width, height, cacheBytes);
+            if (channel.size() != HEADER_SIZE + (long) world.chunksX * world.chunksY * CHUNK_BYTES) {
+                throw new IOException("Truncated world file: " + file);
+            }
+            world.startY = header.getInt(20);
+            world.startX = header.getInt(24);
+            return world;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // === GETTERS ===
+
+    @Override
+    public int getWidth() { return width; }
+
+    @Override
+    public int getHeight() { return height; }
+
+    @Override
+    public TileType getType(int y, int x) {
+        Chunk chunk = chunk((y / CHUNK_SIZE) * chunksX + x / CHUNK_SIZE);
+        return TYPES[chunk.cells[(y % CHUNK_SIZE) * CHUNK_SIZE + x % CHUNK_SIZE]];
+    }
+
+    public int getStartY() { return startY; }
+
+    public int getStartX() { return startX; }
+
+    public int getLoadedChunks() { return cache.size(); }
+
+    public long getLoads() { return loads; }
+
+    public long getWrites() { return writes; }
+
+    @Override
+    public boolean isFileBacked() { return true; }
+
+    // === SETTERS ===
+
+    @Override
+    void setType(int y, int x, TileType type) {
+        Chunk chunk = chunk((y / CHUNK_SIZE) * chunksX + x / CHUNK_SIZE);
+        chunk.cells[(y % CHUNK_SIZE) * CHUNK_SIZE + x % CHUNK_SIZE] = (byte) type.ordinal();
+        chunk.dirty = true;
+    }
+
+    /**
+     * Stores the player start position; written to the header by {@link #flush()}.
+     *
+     * @param startY player start row
+     * @param startX player start column
+     */
+    public void setStart(int startY, int startX) {
+        this.startY = startY;
+        this.startX = startX;
+    }
+
+    // === METHODS ===
+
+    /**
+     * Loads the chunks around a tile, plus one ring of chunks further in the
+     * direction of movement.
+     *
+     * @param tileY  centre row (e.g. the player's tile)
+     * @param tileX  centre column
+     * @param radius half the view size in tiles
+     * @param dirY   vertical movement direction (-1, 0 or 1)
+     * @param dirX   horizontal movement direction (-1, 0 or 1)
+     */
+    public void prefetch(int tileY, int tileX, int radius, int dirY, int dirX) {
+        int cy0 = Math.max(0, (tileY - radius) / CHUNK_SIZE), cy1 = Math.min(chunksY - 1, (tileY + radius) / CHUNK_SIZE);
+        int cx0 = Math.max(0, (tileX - radius) / CHUNK_SIZE), cx1 = Math.min(chunksX - 1, (tileX + radius) / CHUNK_SIZE);
+        // One ring ahead; a direction never widens the area on the side the player leaves
+        if (dirY < 0) cy0 = Math.max(0, cy0 - 1);
+        if (dirY > 0) cy1 = Math.min(chunksY - 1, cy1 + 1);
+        if (dirX < 0) cx0 = Math.max(0, cx0 - 1);
+        if (dirX > 0) cx1 = Math.min(chunksX - 1, cx1 + 1);
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) chunk(cy * chunksX + cx);
+        }
+    }
+
+    /**
+     * Writes all changed chunks and the header to the file and forces them to disk.
+     *
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        for (Chunk chunk : cache.values()) {
+            if (chunk.dirty) write(chunk);
+        }
+        writeFully(channel, header(width, height, startY, startX), 0);
+        channel.force(false);
+    }
+
+    /**
+     * Flushes and closes the file. The world must not be used afterwards.
+     *
+     * @throws IOException if writing or closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        cache.clear();
+        last = null;
+        channel.close();
+    }
+
+    /**
+     * Returns a loaded chunk, reading it from disk if needed.
+     */
+    private Chunk chunk(int index) {
+        Chunk chunk = last;
+        if (chunk != null && chunk.index == index) return chunk;
+        chunk = cache.get(index); // also marks it as most recently used
+        if (chunk == null) {
+            chunk = new Chunk(index);
+            try {
+                readFully(channel, ByteBuffer.wrap(chunk.cells), offset(index));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load chunk " + index, e);
+            }
+            loads++;
+            cache.put(index, chunk); // may evict the least recently used chunk
+        }
+        last = chunk;
+        return chunk;
+    }
+
+    /**
+     * Writes a chunk back before it leaves the cache.
+     */
+    private void evict(Chunk chunk) {
+        if (chunk == last) last = null;
+        if (!chunk.dirty) return;
+        try {
+            write(chunk);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write chunk " + chunk.index, e);
+        }
+    }
+
+    private void write(Chunk chunk) throws IOException {
+        writeFully(channel, ByteBuffer.wrap(chunk.cells), offset(chunk.index));
+        chunk.dirty = false;
+        writes++;
+    }
+
+    private static long offset(int index) { return HEADER_SIZE + (long) index * CHUNK_BYTES; }
+
+    private static ByteBuffer header(int width, int height, int startY, int startX) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(width).putInt(height)
+              .putInt(CHUNK_SIZE).putInt(startY).putInt(startX).putInt(0);
+        return header.flip();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of world file");
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer, position + buffer.position());
+    }
+}
@@ -0,0 +1,191 @@
+package com.diakonovtomer.projektObjektorientierung.model.map;
+
+/**
+ * Connected-component labeling of the passable tiles of a map.
+ * <p>
+ * Two passable tiles share a label exactly when a walking path exists between them.
+ * Diagonal steps are only allowed when both orthogonal neighbours are passable, so
+ * 8-directional reachability is the same as 4-directional connectivity; the labeling
+ * therefore only follows orthogonal neighbours.
+ * </p>
+ *
+ * <p>
+ * The labels are computed in one linear flood-fill pass and patched locally when a
+ * single tile changes: opening a tile merges the components around it, closing one
+ * re-floods only the component it belonged to.
+ * </p>
+ *
+ * @author adiakonov
+ */
+final class ComponentIndex {
+
+    /** Label of impassable tiles. */
+    static final int NONE = 0;
+
+    /** Map width in tiles. */
+    private final int width;
+
+    /** Map height in tiles. */
+    private final int height;
+
+    /** Component label of every tile ({@code y * width + x}), {@link #NONE} if impassable. */
+    private final int[] labels;
+
+    /** Scratch queue of the flood fill. */
+    private final int[] queue;
+
+    /** Next unused label. */
+    private int nextLabel = 1;
+
+    /**
+     * Labels all passable tiles of a grid.
+     *
+     * @param tiles passability of the map
+     */
+    ComponentIndex(PassabilityMask tiles) {
+        this.height = tiles.getHeight();
+        this.width = tiles.getWidth();
+        this.labels = new int[width * height];
+        this.queue = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int cell = y * width + x;
+                if (labels[cell] == NONE && tiles.isPassable(y, x)) flood(tiles, cell, NONE, nextLabel++);
+            }
+        }
+    }
+
+    /**
+     * Returns the component label of a tile.
+     *
+     * @param tileY tile row index
+     * @param tileX tile column index
+     * @return the label, or {@link #NONE} for impassable tiles
+     */
+    int get(int tileY, int tileX) { return labels[tileY * width + tileX]; }
+
+    /**
+     * Finds the tile of a component closest to a given tile (Chebyshev distance) by
+     * scanning square rings around it, nearest ring first. Within a ring the tiles
+     * closest to the ring's side centres are tried first, so ties resolve to the
+     * straightest direction.
+     *
+     * @param label component label to look for
+     * @param tileY tile row index
+     * @param tileX tile column index
+     * @return packed index of the closest tile with that label, or -1 if there is none
+     */
+    int findNearest(int label, int tileY, int tileX) {
+        if (labels[tileY * width + tileX] == label) return tileY * width + tileX;
+        int maxRadius = Math.max(Math.max(tileY, height - 1 - tileY), Math.max(tileX, width - 1 - tileX));
+        for (int r = 1; r <= maxRadius; r++) {
+            for (int d = 0; d <= r; d++) {
+                int found = match(label, tileY - r, tileX - d, tileX + d);
+                if (found < 0) found = match(label, tileY + r, tileX - d, tileX + d);
+                if (found < 0) found = matchColumn(label, tileX - r, tileY - d, tileY + d);
+                if (found < 0) found = matchColumn(label, tileX + r, tileY - d, tileY + d);
+                if (found >= 0) return found;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks the tiles {@code (y, x1)} and {@code (y, x2)} for a label.
+     *
+     * @return packed index of the first matching tile, or -1
+     */
+    private int match(int label, int y, int x1, int x2) {
+        if (y < 0 || y >= height) return -1;
+        if (x1 >= 0 && labels[y * width + x1] == label) return y * width + x1;
+        if (x2 < width && labels[y * width + x2] == label) return y * width + x2;
+        return -1;
+    }
+
+    /**
+     * Checks the tiles {@code (y1, x)} and {@code (y2, x)} for a label.
+     *
+     * @return packed index of the first matching tile, or -1
+     */
+    private int matchColumn(int label, int x, int y1, int y2) {
+        if (x < 0 || x >= width) return -1;
+        if (y1 >= 0 && labels[y1 * width + x] == label) return y1 * width + x;
+        if (y2 < height && labels[y2 * width + x] == label) return y2 * width + x;
+        return -1;
+    }
+
+    /**
+     * Updates the labels after the passability of a single tile changed.
+     *
+     * @param tiles passability of the map, already containing the new tile
+     * @param tileY row of the changed tile
+     * @param tileX column of the changed tile
+     */
+    void onTileChanged(PassabilityMask tiles, int tileY, int tileX) {
+        int cell = tileY * width + tileX;
+        boolean passable = tiles.isPassable(tileY, tileX);
+        if (passable == (labels[cell] != NONE)) return;
+
+        if (!passable) {
+            int old = labels[cell];
+            labels[cell] = NONE;
+            // Each side still carrying the old label starts its own component
+            for (int n : neighbours(tileY, tileX)) {
+                if (n >= 0 && labels[n] == old) flood(tiles, n, old, nextLabel++);
+            }
+            return;
+        }
+
+        int target = NONE;
+        for (int n : neighbours(tileY, tileX)) {
+            if (n >= 0 && labels[n] != NONE) { target = labels[n]; break; }
+        }
+        if (target == NONE) {
+            labels[cell] = nextLabel++;
+            return;
+        }
+        labels[cell] = target;
+        // Absorb every other component touching the opened tile
+        for (int n : neighbours(tileY, tileX)) {
+            if (n >= 0 && labels[n] != NONE && labels[n] != target) flood(tiles, n, labels[n], target);
+        }
+    }
+
+    /**
+     * Returns the orthogonal neighbours of a tile, -1 for positions outside the map.
+     */
+    private int[] neighbours(int y, int x) {
+        int cell = y * width + x;
+        return new int[] {
+            y > 0          ? cell - width : -1,
+            y < height - 1 ? cell + width : -1,
+            x > 0          ? cell - 1     : -1,
+            x < width - 1  ? cell + 1     : -1
+        };
+    }
+
+    /**
+     * Breadth-first relabeling of the passable tiles reachable from {@code start}
+     * that currently carry label {@code from}.
+     */
+    private void flood(PassabilityMask tiles, int start, int from, int to) {
+        int head = 0, tail = 0;
+        labels[start] = to;
+        queue[tail++] = start;
+        while (head < tail) {
+            int cell = queue[head++];
+            int y = cell / width, x = cell - y * width;
+            if (y > 0)          tail = visit(tiles, cell - width, from, to, tail);
+            if (y < height - 1) tail = visit(tiles, cell + width, from, to, tail);
+            if (x > 0)          tail = visit(tiles, cell - 1, from, to, tail);
+            if (x < width - 1)  tail = visit(tiles, cell + 1, from, to, tail);
+        }
+    }
+
+    private int visit(PassabilityMask tiles, int cell, int from, int to, int tail) {
+        if (labels[cell] != from || !tiles.isPassable(cell / width, cell % width)) return tail;
+        labels[cell] = to;
+        queue[tail] = cell;
+        return tail + 1;
+    }
+}
@@ -0,0 +1,280 @@
+package com.diakonovtomer.projektObjektorientierung.model.map;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+
+/**
+ * Encodes and decodes maps for save games and files.
+ * <p>
+ * Two formats are supported:
+ * </p>
+ * <ul>
+ *   <li>{@link Format#ASCII}: one {@link TileType#getSymbol() symbol} per tile, row by row,
+ *       without a header (the size is known from the game). Symbols are translated with
+ *       lookup tables in both directions.</li>
+ *   <li>{@link Format#BINARY}: a header (magic "JGPM", format version, width, height)
+ *       followed by run-length encoded tile ordinals. A run byte holds the ordinal in its
+ *       low 5 bits and the run length 1..7 in its high 3 bits; a length of 0 there means
+ *       the length follows as an unsigned LEB128 varint. Short runs thus cost one byte like
+ *       ASCII, while the long runs of wall, floor and void cost two or three.</li>
+ * </ul>
+ *
+ * <p>
+ * Both are streamed ({@link Appendable}/{@link Reader}, {@link OutputStream}/{@link InputStream}).
+ * Save games are JSON strings, so {@link #encode(TileSource, Format)} stores binary maps as
+ * Base64 behind {@link #BINARY_PREFIX}; {@link #decode(String, int, int)} detects the
+ * format from that prefix and reads older ASCII saves unchanged.
+ * </p>
+ *
+ * @author adiakonov
+ */
+public final class MapCodec {
+
+    /** Map encodings. */
+    public enum Format { ASCII, BINARY }
+
+    /** Marks a Base64 binary map inside a save string. */
+    public static final String BINARY_PREFIX = "JGPM:";
+
+    /** Binary file magic, "JGPM". */
+    private static final int MAGIC = 0x4A47504D;
+
+    /** Current binary format version. */
+    public static final int FORMAT_VERSION = 1;
+
+    /** Bits of a run byte holding the tile ordinal. */
+    private static final int ORDINAL_BITS = 5;
+
+    /** Longest run stored inside the run byte. */
+    private static final int SHORT_RUN = (1 << (8 - ORDINAL_BITS)) - 1;
+
+    /** Tile types by ordinal. */
+    private static final TileType[] TYPES = TileType.values();
+
+    /** ASCII symbol of every ordinal. */
+    private static final char[] SYMBOLS = new char[TYPES.length];
+
+    static {
+        for (TileType type : TYPES) SYMBOLS[type.ordinal()] = type.getSymbol();
+        if (TYPES.length > 1 << ORDINAL_BITS) throw new ExceptionInInitializerError("Too many tile types for the binary map format");
+    }
+
+    /** Prevent instantiation of static utility class */
+    private MapCodec() {}
+
+    // === ASCII ===
+
+    /**
+     * Writes the symbols of all tiles, row by row.
+     *
+     * @param tiles the map
+     * @param out   receives {@code width * height} characters
+     * @throws IOException if {@code out} fails
+     */
+    public static void writeAscii(TileSource tiles, Appendable out) throws IOException {
+        final int width = tiles.getWidth(), height = tiles.getHeight();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                out.append(SYMBOLS[tiles.getType(y, x).ordinal()]);
+            }
+        }
+    }
+
+    /**
+     * Returns the map as an ASCII string.
+     *
+     * @param tiles the map
+     * @return {@code width * height} symbols, row by row
+     */
+    public static String toAscii(TileSource tiles) {
+        StringBuilder out = new StringBuilder(tiles.getWidth() * tiles.getHeight());
+        try {
+            writeAscii(tiles, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder does not throw
+        }
+        return out.toString();
+    }
+
+    /**
+     * Reads an ASCII map of a known size. Unknown symbols become {@link TileType#IMPASS}.
+     *
+     * @param ascii  {@code width * height} symbols, row by row
+     * @param width  map width in tiles
+     * @param height map height in tiles
+     * @return the decoded grid
+     */
+    public static TileGrid readAscii(CharSequence ascii, int width, int height) {
+        if (ascii.length() < width * height) {
+            throw new IllegalArgumentException("ASCII map too short: " + ascii.length() + " < " + width * height);
+        }
+        TileGrid grid = new TileGrid(width, height);
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                grid.setType(y, x, TileType.fromChar(ascii.charAt(i)));
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Reads an ASCII map of a known size from a character stream.
+     *
+     * @param in     the stream, {@code width * height} symbols, row by row
+     * @param width  map width in tiles
+     * @param height map height in tiles
+     * @return the decoded grid
+     * @throws IOException if reading fails or the stream ends early
+     */
+    public static TileGrid readAscii(Reader in, int width, int height) throws IOException {
+        TileGrid grid = new TileGrid(width, height);
+        char[] buffer = new char[8192];
+        int cell = 0, cells = width * height;
+        while (cell < cells) {
+            int read = in.read(buffer, 0, Math.min(buffer.length, cells - cell));
+            if (read < 0) throw new EOFException("ASCII map too short: " + cell + " < " + cells);
+            for (int i = 0; i < read; i++, cell++) {
+                grid.setType(cell / width, cell % width, TileType.fromChar(buffer[i]));
+            }
+        }
+        return grid;
+    }
+
+    // === BINARY ===
+
+    /**
+     * Writes the map in the binary format. {@code out} should be buffered.
+     *
+     * @param tiles the map
+     * @param out   the target stream; not closed
+     * @throws IOException if writing fails
+     */
+    public static void writeBinary(TileSource tiles, OutputStream out) throws IOException {
+        final int width = tiles.getWidth(), height = tiles.getHeight();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeInt(width);
+        data.writeInt(height);
+        int run = 0, current = -1;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int ordinal = tiles.getType(y, x).ordinal();
+                if (ordinal == current) {
+                    run++;
+                    continue;
+                }
+                if (run > 0) writeRun(data, current, run);
+                current = ordinal;
+                run = 1;
+            }
+        }
+        if (run > 0) writeRun(data, current, run);
+        data.flush();
+    }
+
+    /**
+     * Reads a map in the binary format. {@code in} should be buffered.
+     *
+     * @param in the source stream; not closed
+     * @return the decoded grid
+     * @throws IOException if reading fails or the data is not a valid binary map
+     */
+    public static TileGrid readBinary(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) throw new IOException("Not a binary map");
+        int version = data.readInt();
+        if (version != FORMAT_VERSION) throw new IOException("Unsupported map format " + version);
+        int width = data.readInt(), height = data.readInt();
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IOException("Invalid map size " + width + "x" + height);
+        }
+        TileGrid grid = new TileGrid(width, height);
+        int cell = 0, cells = width * height;
+        while (cell < cells) {
+            int head = data.readUnsignedByte();
+            int ordinal = head & ((1 << ORDINAL_BITS) - 1);
+            int run = head >>> ORDINAL_BITS;
+            if (run == 0) run = readVarInt(data);
+            if (ordinal >= TYPES.length || run <= 0 || run > cells - cell) {
+                throw new IOException("Corrupt run at tile " + cell);
+            }
+            TileType type = TYPES[ordinal];
+            for (int end = cell + run; cell < end; cell++) grid.setType(cell / width, cell % width, type);
+        }
+        return grid;
+    }
+
+    // === SAVE STRINGS ===
+
+    /**
+     * Encodes a map for a save game.
+     *
+     * @param tiles  the map
+     * @param format the encoding
+     * @return the ASCII text, or {@link #BINARY_PREFIX} followed by the Base64 binary map
+     */
+    public static String encode(TileSource tiles, Format format) {
+        if (format == Format.ASCII) return toAscii(tiles);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeBinary(tiles, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream does not throw
+        }
+        return BINARY_PREFIX + Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Decodes a map from a save game, detecting the format.
+     *
+     * @param encoded a string produced by {@link #encode(TileSource, Format)}
+     * @param width   width of ASCII maps (binary maps carry their own size)
+     * @param height  height of ASCII maps
+     * @return the decoded grid
+     * @throws IllegalArgumentException if the string is not a valid map
+     */
+    public static TileGrid decode(String encoded, int width, int height) {
+        if (!encoded.startsWith(BINARY_PREFIX)) return readAscii(encoded, width, height);
+        byte[] bytes = Base64.getDecoder().decode(encoded.substring(BINARY_PREFIX.length()));
+        try {
+            return readBinary(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid binary map: " + e.getMessage(), e);
+        }
+    }
+
+    // === VARINTS ===
+
+    private static void writeRun(DataOutputStream out, int ordinal, int run) throws IOException {
+        if (run <= SHORT_RUN) {
+            out.writeByte(ordinal | run << ORDINAL_BITS);
+            return;
+        }
+        out.writeByte(ordinal);
+        while ((run & ~0x7F) != 0) {
+            out.writeByte((run & 0x7F) | 0x80);
+            run >>>= 7;
+        }
+        out.writeByte(run);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Varint too long");
+    }
+}
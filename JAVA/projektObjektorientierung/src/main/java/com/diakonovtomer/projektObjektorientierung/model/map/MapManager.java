@@ -1,14 +1,29 @@
 package com.diakonovtomer.projektObjektorientierung.model.map;
 
+import com.diakonovtomer.projektObjektorientierung.Config;
 import com.diakonovtomer.projektObjektorientierung.Constant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
 
 /**
  * Manages the internal map state for the game, including converting raw map data
- * (from ASCII or external generator) into usable {@link Tile} objects, tracking
+ * (from ASCII or external generator) into a compact {@link TileGrid}, tracking
  * player spawn point, and checking map bounds.
  * <p>
- * Provides abstraction between raw tile data ({@code TileType[][]}) and structured
- * tile objects with coordinates ({@code Tile[][]}).
+ * Tiles are stored as one type byte each; {@link Tile} objects are only created on
+ * request ({@link TileSource#getTile(int, int)}), so large maps load quickly and stay small.
+ * </p>
+ *
+ * <p>
+ * The navigation data derived from the tiles is built on first use: connected
+ * components, nearest passable tiles (4 + 4 bytes per tile each) and the room graph.
+ * For worlds kept in a file ({@link TileSource#isFileBacked()}) none of the per-tile
+ * data is built, only the passability mask (one bit per tile) and a
+ * {@link ChunkComponentIndex} (about a quarter byte per tile): reachability is still
+ * answered without a search, clicks on walls resolve by scanning the rings around the
+ * click, and room routing is off. Path searches allocate their buffers for the area
+ * they search, so with the default settings nothing else grows with the map.
  * </p>
  *
  * Supports two construction modes:
@@ -21,34 +36,48 @@ import com.diakonovtomer.projektObjektorientierung.Constant;
  */
 public class MapManager {
    
-    private TileType[][] sourceMap; // Raw map loaded from source
-    private Tile[][] newMap; // Converted Tile objects
+    private final TileSource grid; // Tile types, in one buffer or in chunks
+    private PassabilityMask passability; // One bit per tile, read by pathfinding and picking
     private int startPlayerPositionCellY = 0;
     private int startPlayerPositionCellX = 0;
     private final int width;
     private final int height;
     
+    /** Largest ring distance scanned for a passable tile when there is no {@link #nearestPassable} field */
+    private static final int NEAREST_SCAN_RADIUS = 32;
+    
+    /** False for file-backed worlds: the per-tile navigation data below is never built */
+    private final boolean tileIndexes;
+    
+    /** Connected components of the passable tiles; built on first use, then kept in sync with {@link #grid} */
+    private ComponentIndex components;
+    
+    /** Components of file-backed worlds, stored per chunk; built on first use, then kept in sync with {@link #grid} */
+    private ChunkComponentIndex chunkComponents;
+    
+    /** Closest passable tile of every tile; built on first use, rebuilt lazily after tile changes */
+    private NearestPassableField nearestPassable;
+    
+    /** Rooms, doors and portal distances for coarse routing; created on first use, rebuilt lazily after tile changes */
+    private RoomGraph roomGraph;
+    
+    /** Incremented on every tile change; lets derived data (path caches) detect stale entries */
+    private int version = 0;
+    
+    /** Callbacks notified with (tileY, tileX) after a tile changed its type */
+    private final List<BiConsumer<Integer, Integer>> tileListeners = new ArrayList<>();
+    
     /**
-     * Constructs map manager from an ASCII string.
-     * The string must be of size height * width.
+     * Constructs map manager from a saved map string (see {@link MapCodec#decode(String, int, int)}).
+     * An ASCII string must be of size {@code MAP_HEIGHT * MAP_WIDTH}; a binary map
+     * carries its own size.
      *
-     * @param ascii full ASCII string representing the map
+     * @param encoded full ASCII or binary map string
      */
-    public MapManager(String ascii, int positionTileY, int positionTileX) {
-        this.width  = Constant.MAP_WIDTH;
-        this.height = Constant.MAP_HEIGHT;
-
-        this.sourceMap = new TileType[height][width];
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                char c = ascii.charAt(y * width + x);
-                sourceMap[y][x] = TileType.fromChar(c);
-            }
-        }
+    public MapManager(String encoded, int positionTileY, int positionTileX) {
+        this(MapCodec.decode(encoded, Constant.MAP_WIDTH, Constant.MAP_HEIGHT));
         startPlayerPositionCellY = positionTileY;
         startPlayerPositionCellX = positionTileX;
-        this.setTiles();  // Convert TileType[][] to Tile[][]
     }
 
     /**
@@ -59,11 +88,44 @@ public class MapManager {
      * @param rawMap 2D array of TileType representing the map
      */
     public MapManager(TileType[][] rawMap) {
-        this.width  = rawMap[0].length;
-        this.height = rawMap.length;
-        this.sourceMap = rawMap;
+        this(new TileGrid(rawMap));
+    }
+
+    /**
+     * Constructs map manager from existing tile storage (a grid read from a save
+     * file, a {@link WorldStore} or a {@link ChunkedWorld}). The storage is taken
+     * over, not copied. A PLAYER tile is replaced with FLOOR and its position saved
+     * as the start point.
+     *
+     * @param grid the tile storage
+     */
+    public MapManager(TileSource grid) {
+        this.width  = grid.getWidth();
+        this.height = grid.getHeight();
+        this.grid = grid;
+        this.tileIndexes = !grid.isFileBacked();
         this.setStartPlayerPositionCell(); // Find PLAYER tile
-        this.setTiles(); // Convert TileType[][] to Tile[][]
+        this.setTiles(); // Build the derived navigation data
+    }
+    
+    /**
+     * Constructs map manager from tile storage whose start point is already known,
+     * such as a {@link WorldStore} or {@link ChunkedWorld} with the start in its header.
+     * The tiles are not searched for a PLAYER tile, so opening a large world does
+     * not read every tile for it.
+     *
+     * @param grid          the tile storage
+     * @param positionTileY player start row
+     * @param positionTileX player start column
+     */
+    public MapManager(TileSource grid, int positionTileY, int positionTileX) {
+        this.width  = grid.getWidth();
+        this.height = grid.getHeight();
+        this.grid = grid;
+        this.tileIndexes = !grid.isFileBacked();
+        this.startPlayerPositionCellY = positionTileY;
+        this.startPlayerPositionCellX = positionTileX;
+        this.setTiles(); // Build the derived navigation data
     }
     
     // === GETTERS ===
@@ -72,21 +134,153 @@ public class MapManager {
     
     public int getHeight(){ return height; }
     
-    public TileType[][] getSourceMap() { return sourceMap; }
+    public TileType getSourceMapCell(int y, int x) { return grid.getType(y, x); }
     
-    public TileType getSourceMapCell(int y, int x) { return sourceMap[y][x]; }
+    public TileSource getGrid() { return grid; }
     
-    public Tile[][] getMap() { return newMap; }
+    public PassabilityMask getPassability() { return passability; }
     
     public int getStartPlayerPositionCellY(){ return startPlayerPositionCellY; }
     
     public int getStartPlayerPositionCellX(){ return startPlayerPositionCellX; }
     
+    public int getVersion(){ return version; }
+    
+    /**
+     * Returns the room/portal graph of the map, creating it on first use.
+     * Its routing tables are built by the first query and limited to
+     * {@code PATH_ROOM_MAX_PORTALS} portals (see {@link RoomGraph#isRoutable()});
+     * file-backed worlds get a graph that is never routable.
+     *
+     * @return the room graph
+     */
+    public RoomGraph getRoomGraph(){
+        if (roomGraph == null) {
+            int maxPortals = tileIndexes ? Integer.parseInt(Config.get("PATH_ROOM_MAX_PORTALS", "1024")) : 0;
+            roomGraph = new RoomGraph(grid, maxPortals);
+        }
+        return roomGraph;
+    }
+    
+    /**
+     * Returns the connected component of a tile.
+     * Two tiles with the same non-zero component are connected by a walkable path.
+     * File-backed worlds read the labels from a {@link ChunkComponentIndex}, which
+     * relabels the tile's chunk unless it is one of the last few asked about.
+     *
+     * @param tileY tile row index
+     * @param tileX tile column index
+     * @return the component label, 0 for impassable or out-of-bounds tiles
+     */
+    public int getComponent(int tileY, int tileX){
+        if (!checkMapBoundaries(tileY, tileX)) return ComponentIndex.NONE;
+        if (!tileIndexes) return chunkComponents().get(tileY, tileX);
+        return components().get(tileY, tileX);
+    }
+    
+    /**
+     * Checks in O(1) whether a walkable path between two tiles exists
+     * (on file-backed worlds: in time bounded by a chunk, see {@link #getComponent(int, int)}).
+     *
+     * @param fromY start tile row
+     * @param fromX start tile column
+     * @param toY   goal tile row
+     * @param toX   goal tile column
+     * @return true if both tiles are passable and in the same component
+     */
+    public boolean isReachable(int fromY, int fromX, int toY, int toX){
+        int component = getComponent(fromY, fromX);
+        return component != ComponentIndex.NONE && component == getComponent(toY, toX);
+    }
+    
+    /**
+     * Returns the passable tile closest to the given tile (Chebyshev distance).
+     * Passable tiles return themselves. Used to turn clicks on walls or void into
+     * a reachable walking target without running a second search. File-backed worlds
+     * scan the rings around the tile instead, up to {@value #NEAREST_SCAN_RADIUS} tiles.
+     *
+     * @param tileY tile row index
+     * @param tileX tile column index
+     * @return packed index ({@code y * width + x}) of the closest passable tile,
+     *         or -1 if the coordinates are outside the map or no tile is passable
+     *         (within the scan radius)
+     */
+    public int getNearestPassable(int tileY, int tileX){
+        if (!checkMapBoundaries(tileY, tileX)) return NearestPassableField.NONE;
+        if (passability.isPassable(tileY, tileX)) return tileY * width + tileX; // common click, no rebuild
+        if (!tileIndexes) return passability.findNearest(tileY, tileX, NEAREST_SCAN_RADIUS);
+        return nearestPassable().get(passability, tileY, tileX);
+    }
+    
+    /**
+     * Returns the tile closest to the given tile (Chebyshev distance) that can be
+     * walked to from a start tile. Unlike {@link #getNearestPassable(int, int)} the
+     * result lies in the start's connected component, so a click next to an area
+     * sealed off by grates still resolves to a target the walker can reach.
+     * The O(1) nearest-passable lookup answers most clicks; only if its tile lies in
+     * another component are the tiles around the click scanned ring by ring.
+     * File-backed worlds have no nearest-passable field and only scan the rings, up to
+     * {@value #NEAREST_SCAN_RADIUS} tiles.
+     *
+     * @param fromY start tile row index
+     * @param fromX start tile column index
+     * @param tileY target tile row index
+     * @param tileX target tile column index
+     * @return packed index ({@code y * width + x}) of the closest reachable tile, or -1
+     *         if the target is outside the map or the start is not on a passable tile
+     *         (or, on file-backed worlds, no reachable tile is within the scan radius)
+     */
+    public int getNearestReachable(int fromY, int fromX, int tileY, int tileX){
+        if (!checkMapBoundaries(tileY, tileX)) return NearestPassableField.NONE;
+        int component = getComponent(fromY, fromX);
+        if (component == ComponentIndex.NONE) return NearestPassableField.NONE;
+        if (!tileIndexes) return chunkComponents.findNearest(component, tileY, tileX, NEAREST_SCAN_RADIUS);
+        if (components.get(tileY, tileX) == component) return tileY * width + tileX;
+        int nearest = nearestPassable().get(passability, tileY, tileX);
+        if (nearest >= 0 && components.get(nearest / width, nearest % width) == component) return nearest;
+        return components.findNearest(component, tileY, tileX);
+    }
+    
     // === SETTERS ===
     public void setStartPlayerPositionCellY(int value){ startPlayerPositionCellY = value; }
     
     public void setStartPlayerPositionCellX(int value){ startPlayerPositionCellX = value; }
     
+    /**
+     * Changes the type of a single tile (e.g. a door opening) and notifies
+     * all tile listeners. Does nothing if the type is unchanged.
+     *
+     * @param tileY tile row index
+     * @param tileX tile column index
+     * @param type  the new tile type
+     */
+    public void setTileType(int tileY, int tileX, TileType type){
+        if (grid.getType(tileY, tileX) == type) return;
+        grid.setType(tileY, tileX, type);
+        passability.set(tileY, tileX, type.isPassable());
+        version++;
+        if (components != null) components.onTileChanged(passability, tileY, tileX);
+        if (chunkComponents != null) chunkComponents.onTileChanged(tileY, tileX);
+        if (nearestPassable != null) nearestPassable.invalidate();
+        if (roomGraph != null) roomGraph.invalidate();
+        for (BiConsumer<Integer, Integer> listener : tileListeners) listener.accept(tileY, tileX);
+    }
+    
+    /**
+     * Registers a callback invoked with (tileY, tileX) after a tile changed.
+     * Used by derived data (navigation layers, caches) to update incrementally.
+     *
+     * @param listener the callback
+     */
+    public void addTileListener(BiConsumer<Integer, Integer> listener){ tileListeners.add(listener); }
+    
+    /**
+     * Removes a callback registered with {@link #addTileListener(BiConsumer)}.
+     *
+     * @param listener the callback
+     */
+    public void removeTileListener(BiConsumer<Integer, Integer> listener){ tileListeners.remove(listener); }
+    
     // === METHODS ===
 
     /**
@@ -95,30 +289,51 @@ public class MapManager {
      */
     private void setStartPlayerPositionCell(){
         System.out.println("*setStartPlayerPositionCell  " + TileType.PLAYER.toString() );
-        for (int y = 0; y < sourceMap.length; y++) {
-            for (int x = 0; x < sourceMap[y].length; x++) {
-                if (sourceMap[y][x] == TileType.PLAYER) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (grid.getType(y, x) == TileType.PLAYER) {
                     startPlayerPositionCellY = y;
                     System.out.println("set" + y + " " + x);
                     startPlayerPositionCellX = x;
-                    sourceMap[y][x] = TileType.FLOOR;
+                    grid.setType(y, x, TileType.FLOOR);
                 }
             }
         }
     }
     
     /**
-     * Converts the raw TileType 2D array into a 2D array of Tile objects.
+     * Builds the passability mask. The per-tile navigation data derived from it
+     * (components, nearest passable tiles, room graph) is built on first use;
+     * file-backed worlds only get components stored per chunk.
      */
     private void setTiles(){
-        this.newMap = new Tile[height][width];
-        for (int y = 0; y < sourceMap.length; y++) {
-            for (int x = 0; x < sourceMap[y].length; x++) {
-                newMap[y][x] = new Tile(sourceMap[y][x], y, x);
-            }
-        }    
+        this.passability = new PassabilityMask(grid);
     }  
     
+    /**
+     * Returns the component index, labeling the map on first use.
+     */
+    private ComponentIndex components(){
+        if (components == null) components = new ComponentIndex(passability);
+        return components;
+    }
+    
+    /**
+     * Returns the per-chunk component index of a file-backed world, labeling it on first use.
+     */
+    private ChunkComponentIndex chunkComponents(){
+        if (chunkComponents == null) chunkComponents = new ChunkComponentIndex(passability);
+        return chunkComponents;
+    }
+    
+    /**
+     * Returns the nearest-passable field, building it on first use.
+     */
+    private NearestPassableField nearestPassable(){
+        if (nearestPassable == null) nearestPassable = new NearestPassableField(passability);
+        return nearestPassable;
+    }
+    
     /**
      * Checks if a given tile coordinate is within the bounds of the map.
      *
@@ -131,18 +346,22 @@ public class MapManager {
     }
     
     /**
-     * Converts the current Tile[][] map to an ASCII string.
+     * Converts the current map to an ASCII string.
      * Useful for debugging or exporting the map state.
      *
      * @return ASCII string representing the map
      */
     public String getAsciiMap(){
-        String result = "";
-        for (int y = 0; y < newMap.length; y++) {
-            for (int x = 0; x < newMap[y].length; x++) {
-                result += newMap[y][x].getSymbol();
-            }
-        }
-        return result;
+        return MapCodec.toAscii(grid);
+    }
+    
+    /**
+     * Encodes the current map for a save game.
+     *
+     * @param format ASCII text or run-length encoded binary
+     * @return the encoded map, readable by {@link #MapManager(String, int, int)}
+     */
+    public String getEncodedMap(MapCodec.Format format){
+        return MapCodec.encode(grid, format);
     }
 }
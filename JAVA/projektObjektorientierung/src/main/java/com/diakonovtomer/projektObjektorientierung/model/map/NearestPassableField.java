@@ -0,0 +1,105 @@
+package com.diakonovtomer.projektObjektorientierung.model.map;
+
+/**
+ * Precomputed lookup of the closest passable tile for every tile of the map.
+ * <p>
+ * Built with a single multi-source breadth-first search seeded with all passable
+ * tiles and expanding over the 8 neighbours, so every impassable tile ends up
+ * pointing at a passable tile at minimal Chebyshev distance. Passable tiles point
+ * at themselves. Building the field is one linear pass over the map.
+ * </p>
+ *
+ * <p>
+ * The field is built on the first lookup. Tile changes only mark it as stale; it is
+ * rebuilt on the next lookup, so a burst of changes costs at most one more pass.
+ * </p>
+ *
+ * @author adiakonov
+ */
+final class NearestPassableField {
+
+    /** Value of {@link #nearest} when the map has no passable tile at all. */
+    static final int NONE = -1;
+
+    /** Map width in tiles. */
+    private final int width;
+
+    /** Map height in tiles. */
+    private final int height;
+
+    /** Packed index ({@code y * width + x}) of the closest passable tile of every tile. */
+    private final int[] nearest;
+
+    /** BFS queue, reused between rebuilds. */
+    private final int[] queue;
+
+    /** True if a tile changed since the last rebuild. */
+    private boolean dirty = false;
+
+    /**
+     * Builds the field for a tile grid.
+     *
+     * @param tiles passability of the map
+     */
+    NearestPassableField(PassabilityMask tiles) {
+        this.height = tiles.getHeight();
+        this.width = tiles.getWidth();
+        this.nearest = new int[width * height];
+        this.queue = new int[width * height];
+        build(tiles);
+    }
+
+    /**
+     * Marks the field as stale after a tile changed.
+     */
+    void invalidate() { dirty = true; }
+
+    /**
+     * Returns the closest passable tile of a tile.
+     *
+     * @param tiles passability of the map
+     * @param tileY tile row index
+     * @param tileX tile column index
+     * @return packed index of the closest passable tile, or {@link #NONE}
+     */
+    int get(PassabilityMask tiles, int tileY, int tileX) {
+        if (dirty) build(tiles);
+        return nearest[tileY * width + tileX];
+    }
+
+    /**
+     * Recomputes the field with a multi-source BFS from all passable tiles.
+     */
+    private void build(PassabilityMask tiles) {
+        int head = 0, tail = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int cell = y * width + x;
+                if (tiles.isPassable(y, x)) {
+                    nearest[cell] = cell;
+                    queue[tail++] = cell;
+                } else {
+                    nearest[cell] = NONE;
+                }
+            }
+        }
+        while (head < tail) {
+            int cell = queue[head++];
+            int y = cell / width, x = cell - y * width;
+            for (int dy = -1; dy <= 1; dy++) {
+                int ny = y + dy;
+                if (ny < 0 || ny >= height) continue;
+                for (int dx = -1; dx <= 1; dx++) {
+                    int nx = x + dx;
+                    if (nx < 0 || nx >= width) continue;
+                    int next = ny * width + nx;
+                    if (nearest[next] != NONE) continue;
+                    // Inherit the source of the tile it was reached from
+                    nearest[next] = nearest[cell];
+                    queue[tail++] = next;
+                }
+            }
+        }
+        dirty = false;
+    }
+}
@@ -0,0 +1,170 @@
+package com.diakonovtomer.projektObjektorientierung.model.map;
+
+/**
+ * Bit-packed passability of a tile grid, one bit per tile.
+ * <p>
+ * Pathfinding, picking and line-of-sight code only ask "can I stand on this tile?",
+ * so instead of following a {@link Tile} reference per lookup they read one bit from
+ * a {@code long[]}: a 256 x 256 map fits into 8 KiB and stays in the cache while a
+ * search runs.
+ * </p>
+ *
+ * <p>
+ * The mask is padded with a one-tile impassable border. Rows are {@link #getStride()}
+ * = {@code width + 2} bits long, so {@link #isPassable(int, int)} accepts coordinates
+ * from -1 up to {@code height} / {@code width} without a bounds check: a neighbour
+ * of any map tile is either on the map or on the border, and the border always
+ * reads as blocked.
+ * </p>
+ *
+ * <p>
+ * The mask is owned by {@link MapManager}, which keeps it in sync with
+ * {@link MapManager#setTileType(int, int, TileType)}.
+ * </p>
+ *
+ * @author adiakonov
+ */
+public final class PassabilityMask {
+
+    /** Map width in tiles. */
+    private final int width;
+
+    /** Map height in tiles. */
+    private final int height;
+
+    /** Bits per padded row ({@code width + 2}). */
+    private final int stride;
+
+    /** Passability bits of the padded grid, bit {@code (y + 1) * stride + x + 1} for tile (y, x). */
+    private final long[] bits;
+
+    /**
+     * Builds the mask of a tile grid.
+     *
+     * @param tiles the tile grid
+     */
+    PassabilityMask(TileSource tiles) {
+        this.height = tiles.getHeight();
+        this.width = tiles.getWidth();
+        this.stride = width + 2;
+        this.bits = new long[((height + 2) * stride + 63) >>> 6];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (tiles.isPassable(y, x)) set(y, x, true);
+            }
+        }
+    }
+
+    /**
+     * Copies a mask.
+     *
+     * @param source the mask to copy
+     */
+    private PassabilityMask(PassabilityMask source) {
+        this.height = source.height;
+        this.width = source.width;
+        this.stride = source.stride;
+        this.bits = source.bits.clone();
+    }
+
+    /**
+     * Returns a copy of the mask that later tile changes do not affect, so a search
+     * on another thread can read it while the game thread changes tiles.
+     * Costs one bit per tile.
+     *
+     * @return an independent copy of the mask
+     */
+    public PassabilityMask snapshot() { return new PassabilityMask(this); }
+
+    // === GETTERS ===
+
+    public int getWidth() { return width; }
+
+    public int getHeight() { return height; }
+
+    public int getStride() { return stride; }
+
+    /**
+     * Returns the padded bit index of a tile.
+     * Neighbours differ by {@code ±1} (columns) and {@code ±stride} (rows).
+     *
+     * @param y tile row, -1..height
+     * @param x tile column, -1..width
+     * @return index usable with {@link #isPassable(int)}
+     */
+    public int index(int y, int x) { return (y + 1) * stride + x + 1; }
+
+    /**
+     * Checks whether a tile can be walked on.
+     * Coordinates one tile outside the map read the impassable border.
+     *
+     * @param y tile row, -1..height
+     * @param x tile column, -1..width
+     * @return true if the tile is passable
+     */
+    public boolean isPassable(int y, int x) {
+        return isPassable((y + 1) * stride + x + 1);
+    }
+
+    /**
+     * Checks whether the tile at a padded bit index can be walked on.
+     *
+     * @param index index from {@link #index(int, int)}
+     * @return true if the tile is passable
+     */
+    public boolean isPassable(int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0; // shift distance is taken mod 64
+    }
+
+    /**
+     * Checks whether coordinates lie on the map.
+     *
+     * @param y tile row
+     * @param x tile column
+     * @return true if the tile is inside the map
+     */
+    public boolean contains(int y, int x) {
+        return y >= 0 && y < height && x >= 0 && x < width;
+    }
+
+    /**
+     * Finds a passable tile closest to a tile (Chebyshev distance) by scanning the
+     * rings around it. Costs {@code O(maxRadius²)} bit reads at most and no memory;
+     * used where no precomputed {@link NearestPassableField} exists.
+     *
+     * @param y         tile row
+     * @param x         tile column
+     * @param maxRadius largest ring distance scanned
+     * @return packed index ({@code y * width + x}) of the tile, -1 if none lies within {@code maxRadius}
+     */
+    int findNearest(int y, int x, int maxRadius) {
+        if (isPassable(y, x)) return y * width + x;
+        for (int r = 1; r <= maxRadius; r++) {
+            if (y - r < 0 && y + r >= height && x - r < 0 && x + r >= width) break; // ring is off the map
+            for (int d = -r; d <= r; d++) {
+                // Top and bottom rows, then left and right columns without the corners
+                if (contains(y - r, x + d) && isPassable(y - r, x + d)) return (y - r) * width + x + d;
+                if (contains(y + r, x + d) && isPassable(y + r, x + d)) return (y + r) * width + x + d;
+                if (d == -r || d == r) continue;
+                if (contains(y + d, x - r) && isPassable(y + d, x - r)) return (y + d) * width + x - r;
+                if (contains(y + d, x + r) && isPassable(y + d, x + r)) return (y + d) * width + x + r;
+            }
+        }
+        return -1;
+    }
+
+    // === SETTERS ===
+
+    /**
+     * Updates the passability of a single tile.
+     *
+     * @param y        tile row
+     * @param x        tile column
+     * @param passable the new state
+     */
+    void set(int y, int x, boolean passable) {
+        int index = index(y, x);
+        if (passable) bits[index >>> 6] |= 1L << index;
+        else bits[index >>> 6] &= ~(1L << index);
+    }
+}
@@ -0,0 +1,497 @@
+package com.diakonovtomer.projektObjektorientierung.model.map;
+
+import java.util.Arrays;
+
+/**
+ * Room/portal graph of a dungeon-style map.
+ * <p>
+ * Passable door and arch tiles ({@link TileType#DOOR}, {@link TileType#DOORGRATE},
+ * {@link TileType#ARCH}) are portals; a door that cannot be walked through is a wall
+ * like any other impassable tile. Orthogonally adjacent portal tiles form one
+ * portal (a wide door). The remaining passable tiles fall apart into regions: rooms
+ * and the corridors between them. A region is closed under single steps (with the
+ * no-corner-cutting rule), so any walk from one region to another crosses a portal.
+ * </p>
+ *
+ * <p>
+ * Every portal is represented by its most central tile. When the graph is built, a
+ * Dijkstra from every portal through its neighbouring regions yields the walking
+ * cost to the portals it borders; a Dijkstra over that small graph from every portal
+ * then gives the all-pairs portal distances and predecessors. A long query only
+ * connects start and goal to the portals of their own regions and combines the
+ * precomputed distances, so the search never touches the tiles of the rooms in
+ * between. The result is the chain of portal tiles to walk through; the caller fills
+ * in the short legs between them.
+ * </p>
+ *
+ * <p>
+ * Step costs are those of the octile pathfinder (10 straight, 14 diagonal). Routes
+ * pass through portal centres, so they can be a few steps longer than the optimum.
+ * The graph is built on the first query; tile changes mark it as stale and it is
+ * rebuilt on the next query.
+ * </p>
+ *
+ * <p>
+ * The portal distance tables grow with the square of the portal count. Maps with
+ * more portals than the configured limit only get their regions and portals labeled;
+ * {@link #isRoutable()} is then false and callers route with another search.
+ * </p>
+ *
+ * @author adiakonov
+ */
+public final class RoomGraph {
+
+    /** Marks an unreachable pair / missing entry. */
+    public static final int INF = Integer.MAX_VALUE / 4;
+
+    /** Region label of impassable and portal tiles. */
+    public static final int NONE = 0;
+
+    private static final int STRAIGHT = 10;
+    private static final int DIAGONAL = 14;
+
+    private static final int[] DY = { -1, 1, 0, 0, -1, -1, 1, 1 };
+    private static final int[] DX = { 0, 0, -1, 1, -1, 1, -1, 1 };
+
+    /** Largest portal count whose {@code n * n} tables still fit into an int index. */
+    private static final int PORTAL_INDEX_LIMIT = 46340;
+
+    /** The tile grid of the map (same instance as {@link MapManager#getGrid()}). */
+    private final TileSource tiles;
+
+    /** Map width in tiles. */
+    private final int width;
+
+    /** Map height in tiles. */
+    private final int height;
+
+    /** Most portals for which the distance tables are built. */
+    private final int maxPortals;
+
+    /** Region label of every tile, {@link #NONE} for impassable and portal tiles; allocated by the first build. */
+    private int[] regions;
+
+    /** Portal index of every tile, -1 for non-portal tiles; allocated by the first build. */
+    private int[] portalOf;
+
+    /** Number of regions (labels run from 1 to {@code regionCount}). */
+    private int regionCount;
+
+    /** Number of portals. */
+    private int portalCount;
+
+    /** Representative (most central) tile of every portal, packed. */
+    private int[] portalCells = new int[0];
+
+    /** {@code portalCount * portalCount} walking costs between portal tiles. */
+    private int[] distances = new int[0];
+
+    /** Predecessor portal of {@code q} on the shortest route from {@code p}, at {@code p * portalCount + q}. */
+    private int[] predecessors = new int[0];
+
+    /** True if the graph was not built yet or a tile changed since the last build. */
+    private boolean dirty = true;
+
+    // Scratch state of the bounded Dijkstra
+    private int[] dist;
+    private int[] distStamp;
+    private int generation = 0;
+    private long[] heap = new long[256];
+    private int heapSize = 0;
+
+    /** Portals reached by the last bounded Dijkstra, and the number of them. */
+    private int[] reached = new int[16];
+    private int reachedCount = 0;
+
+    /**
+     * Creates the graph of a tile grid. Nothing is extracted until the first query.
+     *
+     * @param tiles      the tile grid; later changes must be reported with {@link #invalidate()}
+     * @param maxPortals most portals for which routing tables are built
+     */
+    RoomGraph(TileSource tiles, int maxPortals) {
+        this.tiles = tiles;
+        this.height = tiles.getHeight();
+        this.width = tiles.getWidth();
+        this.maxPortals = Math.max(0, Math.min(maxPortals, PORTAL_INDEX_LIMIT));
+    }
+
+    /**
+     * Marks the graph as stale after a tile changed.
+     */
+    void invalidate() { dirty = true; }
+
+    // === GETTERS ===
+
+    public int getRegionCount() { ensureBuilt(); return regionCount; }
+
+    public int getPortalCount() { ensureBuilt(); return portalCount; }
+
+    /**
+     * Returns whether {@link #route} can be used: the map has portals, and not more
+     * than the limit given at construction. A limit of 0 disables routing without
+     * extracting anything.
+     *
+     * @return true if routing tables are available
+     */
+    public boolean isRoutable() {
+        if (maxPortals == 0) return false;
+        ensureBuilt();
+        return portalCount > 0 && portalCount <= maxPortals;
+    }
+
+    /**
+     * Returns the region (room or corridor) of a tile.
+     *
+     * @param tileY tile row
+     * @param tileX tile column
+     * @return the region label, {@link #NONE} for impassable and portal tiles
+     */
+    public int getRegion(int tileY, int tileX) {
+        ensureBuilt();
+        return regions[tileY * width + tileX];
+    }
+
+    /**
+     * Returns the portal a tile belongs to.
+     *
+     * @param tileY tile row
+     * @param tileX tile column
+     * @return the portal index, or -1 if the tile is not a door or arch
+     */
+    public int getPortal(int tileY, int tileX) {
+        ensureBuilt();
+        return portalOf[tileY * width + tileX];
+    }
+
+    /**
+     * @param portal portal index
+     * @return packed index ({@code y * width + x}) of the portal's representative tile
+     */
+    public int getPortalCell(int portal) {
+        ensureBuilt();
+        return portalCells[portal];
+    }
+
+    /**
+     * Returns the precomputed walking cost between two portals.
+     *
+     * @param from first portal
+     * @param to   second portal
+     * @return the cost, or {@link #INF} if the portals are not connected or the map
+     *         has too many portals for routing tables
+     */
+    public int getDistance(int from, int to) {
+        if (!isRoutable()) return INF;
+        return distances[from * portalCount + to];
+    }
+
+    // === QUERY ===
+
+    /**
+     * Plans a coarse route between two tiles.
+     *
+     * @param startY start row
+     * @param startX start column
+     * @param goalY  goal row
+     * @param goalX  goal column
+     * @return packed tiles to walk through: the start, the portal tiles in order, and
+     *         the goal; {@code [start, goal]} if both lie in the same region; or
+     *         {@code null} if the goal cannot be reached or the graph is not
+     *         {@link #isRoutable() routable}
+     */
+    public int[] route(int startY, int startX, int goalY, int goalX) {
+        if (!isRoutable()) return null;
+        int start = startY * width + startX, goal = goalY * width + goalX;
+        if (!tiles.isPassable(startY, startX) || !tiles.isPassable(goalY, goalX)) return null;
+        if (start == goal || (regions[start] != NONE && regions[start] == regions[goal])) {
+            return new int[]{ start, goal };
+        }
+
+        // Costs from the start to the portals of its region (and the goal, if it is close)
+        dijkstra(start);
+        int direct = distance(goal);
+        int[] fromPortals = Arrays.copyOf(reached, reachedCount);
+        int[] fromCosts = new int[fromPortals.length];
+        for (int i = 0; i < fromPortals.length; i++) fromCosts[i] = distance(portalCells[fromPortals[i]]);
+
+        // Steps are symmetric: the same search from the goal gives the costs into it
+        dijkstra(goal);
+        int best = direct, bestFrom = -1, bestTo = -1;
+        for (int i = 0; i < fromPortals.length; i++) {
+            int a = fromPortals[i];
+            for (int j = 0; j < reachedCount; j++) {
+                int b = reached[j];
+                int between = distances[a * portalCount + b];
+                if (between == INF) continue;
+                int cost = fromCosts[i] + between + distance(portalCells[b]);
+                if (cost < best) {
+                    best = cost;
+                    bestFrom = a;
+                    bestTo = b;
+                }
+            }
+        }
+        if (best == INF) return null;
+        if (bestFrom < 0) return new int[]{ start, goal };
+
+        int hops = 1;
+        for (int p = bestTo; p != bestFrom; p = predecessors[bestFrom * portalCount + p]) hops++;
+        int[] route = new int[hops + 2];
+        route[0] = start;
+        route[hops + 1] = goal;
+        int i = hops;
+        for (int p = bestTo; ; p = predecessors[bestFrom * portalCount + p]) {
+            route[i--] = portalCells[p];
+            if (p == bestFrom) break;
+        }
+        return route;
+    }
+
+    // === BUILD ===
+
+    private void ensureBuilt() {
+        if (dirty) build();
+    }
+
+    /**
+     * Labels portals and regions and precomputes the portal distances
+     * (unless there are more portals than {@link #maxPortals}).
+     */
+    private void build() {
+        dirty = false;
+        if (regions == null) {
+            regions = new int[width * height];
+            portalOf = new int[width * height];
+            dist = new int[width * height];
+            distStamp = new int[width * height];
+        }
+        Arrays.fill(regions, NONE);
+        Arrays.fill(portalOf, -1);
+        int[] queue = new int[width * height];
+
+        // Portals: 4-connected groups of door/arch tiles
+        portalCount = 0;
+        int[] centres = new int[16];
+        for (int cell = 0; cell < regions.length; cell++) {
+            if (portalOf[cell] >= 0 || !isPortalTile(cell)) continue;
+            if (portalCount == centres.length) centres = Arrays.copyOf(centres, portalCount * 2);
+            centres[portalCount] = floodPortal(cell, portalCount, queue);
+            portalCount++;
+        }
+        portalCells = Arrays.copyOf(centres, portalCount);
+
+        // Regions: the remaining passable tiles, connected by single steps
+        regionCount = 0;
+        for (int cell = 0; cell < regions.length; cell++) {
+            if (regions[cell] != NONE || portalOf[cell] >= 0 || !passable(cell)) continue;
+            floodRegion(cell, ++regionCount, queue);
+        }
+
+        distances = new int[0];
+        predecessors = new int[0];
+        if (portalCount > maxPortals) return; // tables would be too large, see isRoutable()
+
+        // Edges to the portals bordering the same regions
+        int n = portalCount;
+        int[][] edgeTo = new int[n][];
+        int[][] edgeCost = new int[n][];
+        for (int p = 0; p < n; p++) {
+            dijkstra(portalCells[p]);
+            edgeTo[p] = new int[reachedCount];
+            edgeCost[p] = new int[reachedCount];
+            for (int i = 0; i < reachedCount; i++) {
+                edgeTo[p][i] = reached[i];
+                edgeCost[p][i] = distance(portalCells[reached[i]]);
+            }
+        }
+
+        // All pairs: one Dijkstra over the portal graph per portal
+        distances = new int[n * n];
+        predecessors = new int[n * n];
+        Arrays.fill(distances, INF);
+        long[] open = new long[16];
+        for (int p = 0; p < n; p++) {
+            int row = p * n;
+            distances[row + p] = 0;
+            predecessors[row + p] = p;
+            int size = 0;
+            open[size++] = p; // cost 0
+            while (size > 0) {
+                long top = open[0];
+                open[0] = open[--size];
+                siftDown(open, size, 0);
+                int u = (int) top, d = (int) (top >>> 32);
+                if (d > distances[row + u]) continue;
+                for (int i = 0; i < edgeTo[u].length; i++) {
+                    int v = edgeTo[u][i], nd = d + edgeCost[u][i];
+                    if (nd >= distances[row + v]) continue;
+                    distances[row + v] = nd;
+                    predecessors[row + v] = u;
+                    if (size == open.length) open = Arrays.copyOf(open, size * 2);
+                    siftUp(open, size++, ((long) nd << 32) | v);
+                }
+            }
+        }
+    }
+
+    /**
+     * Floods one portal and returns its tile closest to the centroid.
+     */
+    private int floodPortal(int seed, int portal, int[] queue) {
+        int head = 0, tail = 0;
+        queue[tail++] = seed;
+        portalOf[seed] = portal;
+        long sumY = 0, sumX = 0;
+        while (head < tail) {
+            int cell = queue[head++];
+            int y = cell / width, x = cell - y * width;
+            sumY += y;
+            sumX += x;
+            for (int d = 0; d < 4; d++) {
+                int ny = y + DY[d], nx = x + DX[d];
+                if (ny < 0 || ny >= height || nx < 0 || nx >= width) continue;
+                int next = ny * width + nx;
+                if (portalOf[next] >= 0 || !isPortalTile(next)) continue;
+                portalOf[next] = portal;
+                queue[tail++] = next;
+            }
+        }
+        double cy = (double) sumY / tail, cx = (double) sumX / tail;
+        int centre = seed;
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < tail; i++) {
+            int y = queue[i] / width, x = queue[i] % width;
+            double d = (y - cy) * (y - cy) + (x - cx) * (x - cx);
+            if (d < best) {
+                best = d;
+                centre = queue[i];
+            }
+        }
+        return centre;
+    }
+
+    /**
+     * Floods one region over the non-portal passable tiles.
+     */
+    private void floodRegion(int seed, int label, int[] queue) {
+        int head = 0, tail = 0;
+        queue[tail++] = seed;
+        regions[seed] = label;
+        while (head < tail) {
+            int cell = queue[head++];
+            int y = cell / width, x = cell - y * width;
+            for (int d = 0; d < DY.length; d++) {
+                int ny = y + DY[d], nx = x + DX[d];
+                if (!canStep(y, x, ny, nx)) continue;
+                int next = ny * width + nx;
+                if (regions[next] != NONE || portalOf[next] >= 0) continue;
+                regions[next] = label;
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    // === BOUNDED DIJKSTRA ===
+
+    /**
+     * Dijkstra from a tile that stays inside the regions around it: tiles of other
+     * portals are entered, but left only toward tiles of the same portal. Portals
+     * whose representative tile was reached are collected in {@link #reached}.
+     */
+    private void dijkstra(int source) {
+        if (++generation == 0) {
+            Arrays.fill(distStamp, 0);
+            generation = 1;
+        }
+        reachedCount = 0;
+        heapSize = 0;
+        int own = portalOf[source];
+        setDistance(source, 0);
+        push(source, 0);
+        while (heapSize > 0) {
+            long top = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, 0);
+            int cell = (int) top, d = (int) (top >>> 32);
+            if (d > distance(cell)) continue; // stale entry
+            int portal = portalOf[cell];
+            if (portal >= 0 && portal != own && portalCells[portal] == cell) addReached(portal);
+
+            int y = cell / width, x = cell - y * width;
+            for (int i = 0; i < DY.length; i++) {
+                int ny = y + DY[i], nx = x + DX[i];
+                if (!canStep(y, x, ny, nx)) continue;
+                int next = ny * width + nx;
+                // Inside a foreign portal only its own tiles are walked (to its centre)
+                if (portal >= 0 && portal != own && portalOf[next] != portal) continue;
+                int nd = d + (i < 4 ? STRAIGHT : DIAGONAL);
+                if (nd >= distance(next)) continue;
+                setDistance(next, nd);
+                push(next, nd);
+            }
+        }
+    }
+
+    private int distance(int cell) { return distStamp[cell] == generation ? dist[cell] : INF; }
+
+    private void setDistance(int cell, int d) {
+        distStamp[cell] = generation;
+        dist[cell] = d;
+    }
+
+    private void addReached(int portal) {
+        if (reachedCount == reached.length) reached = Arrays.copyOf(reached, reachedCount * 2);
+        reached[reachedCount++] = portal;
+    }
+
+    private void push(int cell, int d) {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+        siftUp(heap, heapSize++, ((long) d << 32) | cell);
+    }
+
+    /** Min-heap of packed {@code (cost << 32) | id} entries. */
+    private static void siftUp(long[] h, int i, long value) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (h[parent] <= value) break;
+            h[i] = h[parent];
+            i = parent;
+        }
+        h[i] = value;
+    }
+
+    private static void siftDown(long[] h, int size, int i) {
+        if (size == 0) return;
+        long value = h[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && h[child + 1] < h[child]) child++;
+            if (h[child] >= value) break;
+            h[i] = h[child];
+            i = child;
+        }
+        h[i] = value;
+    }
+
+    // === TILES ===
+
+    private boolean passable(int cell) {
+        return tiles.isPassable(cell / width, cell % width);
+    }
+
+    private boolean isPortalTile(int cell) {
+        TileType type = tiles.getType(cell / width, cell % width);
+        if (!type.isPassable()) return false; // the Dijkstras only walk passable tiles
+        return type == TileType.DOOR || type == TileType.DOORGRATE || type == TileType.ARCH;
+    }
+
+    /**
+     * Checks a single step between neighbouring tiles; diagonals must not cut a corner.
+     */
+    private boolean canStep(int y, int x, int ny, int nx) {
+        if (ny < 0 || ny >= height || nx < 0 || nx >= width || !tiles.isPassable(ny, nx)) return false;
+        return ny == y || nx == x || (tiles.isPassable(y, nx) && tiles.isPassable(ny, x));
+    }
+}
@@ -0,0 +1,157 @@
+package com.diakonovtomer.projektObjektorientierung.model.map;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact storage of the tile types of a map: one byte per tile.
+ * <p>
+ * Colour, symbol and passability are properties of the {@link TileType}, and a
+ * tile's coordinates and pixel position follow from its index, so the grid only
+ * keeps the type ordinal of every tile in a byte buffer (indexed
+ * {@code y * width + x}). A 1024 x 1024 map takes 1 MiB instead of a million
+ * {@link Tile} objects.
+ * </p>
+ *
+ * <p>
+ * The buffer is either on the heap or a memory-mapped file of a {@link WorldStore};
+ * in the second case tile reads and writes go straight to the mapped pages.
+ * </p>
+ *
+ * <p>
+ * The few tiles that need state of their own (a trap's charge, the contents of a
+ * chest) keep it in a sparse map next to the bytes. Changing the type of a tile
+ * drops its state.
+ * </p>
+ *
+ * <p>
+ * Readers (renderers, pathfinding, saving) use the accessors directly. Changes go
+ * through {@link MapManager#setTileType(int, int, TileType)}, which keeps the
+ * derived data in sync.
+ * </p>
+ *
+ * @author adiakonov
+ */
+public final class TileGrid extends TileSource {
+
+    /** Map width in tiles. */
+    private final int width;
+
+    /** Map height in tiles. */
+    private final int height;
+
+    /** Type ordinal of every tile ({@code y * width + x}), absolute indexing only. */
+    private final ByteBuffer cells;
+
+    /** Per-tile state of the few tiles that have any, keyed by packed index. */
+    private final Map<Integer, Object> states = new HashMap<>();
+
+    /**
+     * Creates a grid filled with {@link TileType#IMPASS}.
+     *
+     * @param width  map width in tiles
+     * @param height map height in tiles
+     */
+    public TileGrid(int width, int height) {
+        this(width, height, ByteBuffer.allocate(width * height)); // IMPASS is ordinal 0
+    }
+
+    /**
+     * Creates a grid over an existing buffer of type ordinals, without copying.
+     *
+     * @param width  map width in tiles
+     * @param height map height in tiles
+     * @param cells  buffer whose first {@code width * height} bytes are the tiles
+     */
+    TileGrid(int width, int height, ByteBuffer cells) {
+        this.width = width;
+        this.height = height;
+        this.cells = cells;
+    }
+
+    /**
+     * Creates a grid from a 2D array of tile types.
+     *
+     * @param types tile types indexed {@code [y][x]}
+     */
+    public TileGrid(TileType[][] types) {
+        this(types[0].length, types.length);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                cells.put(y * width + x, (byte) types[y][x].ordinal());
+            }
+        }
+    }
+
+    // === GETTERS ===
+
+    @Override
+    public int getWidth() { return width; }
+
+    @Override
+    public int getHeight() { return height; }
+
+    @Override
+    public TileType getType(int y, int x) { return TYPES[cells.get(y * width + x)]; }
+
+    /**
+     * @param index packed tile index {@code y * width + x}
+     * @return the type of the tile
+     */
+    public TileType getType(int index) { return TYPES[cells.get(index)]; }
+
+    /**
+     * @param index packed tile index {@code y * width + x}
+     * @return the {@link TileType#ordinal()} of the tile
+     */
+    public int getOrdinal(int index) { return cells.get(index); }
+
+    /**
+     * @return the backing buffer of type ordinals (shared, absolute indexing)
+     */
+    ByteBuffer getCells() { return cells; }
+
+    /**
+     * @return true if the buffer is the mapping of a {@link WorldStore}
+     */
+    @Override
+    public boolean isFileBacked() { return cells.isDirect(); }
+
+    /**
+     * Returns the state stored for a tile.
+     *
+     * @param y tile row
+     * @param x tile column
+     * @return the state, or null if the tile has none
+     */
+    public Object getState(int y, int x) { return states.get(y * width + x); }
+
+    // === SETTERS ===
+
+    /**
+     * Stores state for a tile; {@code null} removes it.
+     *
+     * @param y     tile row
+     * @param x     tile column
+     * @param state the state object
+     */
+    public void setState(int y, int x, Object state) {
+        if (state == null) states.remove(y * width + x);
+        else states.put(y * width + x, state);
+    }
+
+    /**
+     * Changes the type of a tile and drops its state.
+     * Only {@link MapManager} calls this, so derived data stays in sync.
+     *
+     * @param y    tile row
+     * @param x    tile column
+     * @param type the new type
+     */
+    @Override
+    void setType(int y, int x, TileType type) {
+        cells.put(y * width + x, (byte) type.ordinal());
+        if (!states.isEmpty()) states.remove(y * width + x);
+    }
+}
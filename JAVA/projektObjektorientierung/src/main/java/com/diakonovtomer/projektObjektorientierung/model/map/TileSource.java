@@ -0,0 +1,90 @@
+package com.diakonovtomer.projektObjektorientierung.model.map;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Read access to the tile types of a map, independent of where they are stored.
+ * <p>
+ * Implemented by {@link TileGrid} (the whole map in one buffer, on the heap or
+ * memory-mapped) and {@link ChunkedWorld} (fixed-size chunks streamed from disk).
+ * Renderers and the navigation data of {@link MapManager} only use this class, so
+ * they work the same over both.
+ * </p>
+ *
+ * <p>
+ * Worlds kept in a file ({@link #isFileBacked()}) are meant to be larger than the
+ * heap would allow for per-tile data; {@link MapManager} builds only its one-bit
+ * passability mask for them.
+ * </p>
+ *
+ * <p>
+ * Tile types are changed through {@link MapManager#setTileType(int, int, TileType)}
+ * only, which keeps the derived data in sync; the mutator is therefore package-private
+ * and the class cannot be extended outside this package.
+ * </p>
+ *
+ * @author adiakonov
+ */
+public abstract class TileSource {
+
+    /** Tile types by ordinal; {@code values()} copies the array on every call. */
+    static final TileType[] TYPES = TileType.values();
+
+    /** Only tile stores of this package. */
+    TileSource() {}
+
+    // === GETTERS ===
+
+    /**
+     * @return map width in tiles
+     */
+    public abstract int getWidth();
+
+    /**
+     * @return map height in tiles
+     */
+    public abstract int getHeight();
+
+    /**
+     * Returns the type of a tile.
+     *
+     * @param y tile row
+     * @param x tile column
+     * @return the tile type
+     */
+    public abstract TileType getType(int y, int x);
+
+    public boolean isPassable(int y, int x) { return getType(y, x).isPassable(); }
+
+    public Color getColor(int y, int x) { return getType(y, x).getColor(); }
+
+    public char getSymbol(int y, int x) { return getType(y, x).getSymbol(); }
+
+    /**
+     * Creates a {@link Tile} view of a single tile for code that wants the object API.
+     * The tile is not stored; later type changes are not reflected.
+     *
+     * @param y tile row
+     * @param x tile column
+     * @return a new tile object
+     */
+    public Tile getTile(int y, int x) { return new Tile(getType(y, x), y, x); }
+
+    /**
+     * Returns whether the tiles live in a file (mapped or streamed) rather than on the heap.
+     *
+     * @return true for file-backed tile stores
+     */
+    public boolean isFileBacked() { return false; }
+
+    // === SETTERS ===
+
+    /**
+     * Changes the type of a tile. Only {@link MapManager} calls this.
+     *
+     * @param y    tile row
+     * @param x    tile column
+     * @param type the new type
+     */
+    abstract void setType(int y, int x, TileType type);
+}
@@ -43,6 +43,13 @@ public enum TileType {
     /** Color used for rendering */
     private final Color color;
     
+    /** Tile type of every ASCII character, null for unknown characters */
+    private static final TileType[] BY_CHAR = new TileType[128];
+    
+    static {
+        for (TileType t : values()) BY_CHAR[t.symbol] = t;
+    }
+    
     TileType(char symbol, boolean passable, Color color) {
         this.symbol = symbol;
         this.passable = passable;
@@ -56,11 +63,10 @@ public enum TileType {
     /**
      * Converts a character from ASCII map into a TileType enum.
      * If character is unknown, returns IMPASS as fallback.
+     * Uses a lookup table, so decoding a map is one array read per tile.
      */
     public static TileType fromChar(char c) {
-        for (TileType t : values()) {
-            if (t.getSymbol() == c) return t;
-        }
-        return IMPASS;
+        TileType t = c < BY_CHAR.length ? BY_CHAR[c] : null;
+        return t != null ? t : IMPASS;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,194 @@
+package com.diakonovtomer.projektObjektorientierung.model.map;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * File-backed world: a {@link TileGrid} whose bytes live in a memory-mapped file.
+ * <p>
+ * Opening a world maps the file instead of parsing it, so even maps of several
+ * thousand tiles per side are ready at once and do not occupy the Java heap; the
+ * operating system pages tiles in as they are read. Tile changes made through
+ * {@link MapManager#setTileType(int, int, TileType)} write straight into the
+ * mapping and reach the file with the next {@link #flush()}.
+ * </p>
+ *
+ * <p>
+ * File layout (big-endian):
+ * </p>
+ * <pre>
+ *  0  int  magic "JGPW"
+ *  4  int  format version ({@link #FORMAT_VERSION})
+ *  8  int  width in tiles
+ * 12  int  height in tiles
+ * 16  int  player start row
+ * 20  int  player start column
+ * 24  int  CRC32 of the tile bytes
+ * 28  int  reserved
+ * 32       width * height tile type ordinals, row by row
+ * </pre>
+ *
+ * <p>
+ * The checksum is written by {@link #flush()} and only compared on request
+ * ({@link #verify()}), because checking it means reading the whole map.
+ * A mapping stays valid until its buffer is garbage collected; {@link #close()}
+ * flushes and releases the file channel.
+ * </p>
+ *
+ * @author adiakonov
+ */
+public final class WorldStore implements AutoCloseable {
+
+    /** File magic, "JGPW". */
+    private static final int MAGIC = 0x4A475057;
+
+    /** Current file format version. */
+    public static final int FORMAT_VERSION = 1;
+
+    /** Size of the header in bytes. */
+    private static final int HEADER_SIZE = 32;
+
+    private static final int OFFSET_START_Y = 16;
+    private static final int OFFSET_START_X = 20;
+    private static final int OFFSET_CHECKSUM = 24;
+
+    /** Open channel of the world file. */
+    private final FileChannel channel;
+
+    /** Mapping of the whole file (header and tiles). */
+    private final MappedByteBuffer mapping;
+
+    /** Tile grid backed by the mapping. */
+    private final TileGrid grid;
+
+    private WorldStore(FileChannel channel, MappedByteBuffer mapping, int width, int height) {
+        this.channel = channel;
+        this.mapping = mapping;
+        this.grid = new TileGrid(width, height, mapping.slice(HEADER_SIZE, width * height));
+    }
+
+    /**
+     * Writes a world file for a tile grid, replacing an existing file,
+     * and opens it.
+     *
+     * @param file   the world file
+     * @param tiles  the tiles to store
+     * @param startY player start row
+     * @param startX player start column
+     * @return the opened store, backed by the new file
+     * @throws IOException if the file cannot be written
+     */
+    public static WorldStore create(Path file, TileGrid tiles, int startY, int startX) throws IOException {
+        int width = tiles.getWidth(), height = tiles.getHeight();
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) width * height);
+            mapping.putInt(0, MAGIC);
+            mapping.putInt(4, FORMAT_VERSION);
+            mapping.putInt(8, width);
+            mapping.putInt(12, height);
+            mapping.putInt(OFFSET_START_Y, startY);
+            mapping.putInt(OFFSET_START_X, startX);
+            mapping.put(HEADER_SIZE, tiles.getCells(), 0, width * height);
+            WorldStore store = new WorldStore(channel, mapping, width, height);
+            store.flush();
+            return store;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing world file by mapping it. Only the header is read.
+     *
+     * @param file the world file
+     * @return the opened store
+     * @throws IOException if the file cannot be read or is not a valid world file
+     */
+    public static WorldStore open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) throw new IOException("World file too small: " + file);
+            // Mapping is lazy: only the header page is touched until tiles are read
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (mapping.getInt(0) != MAGIC) throw new IOException("Not a world file: " + file);
+            if (mapping.getInt(4) != FORMAT_VERSION) throw new IOException("Unsupported world format " + mapping.getInt(4) + ": " + file);
+            int width = mapping.getInt(8), height = mapping.getInt(12);
+            if (width <= 0 || height <= 0 || size != HEADER_SIZE + (long) width * height) {
+                throw new IOException("Corrupt world header (" + width + "x" + height + ", " + size + " bytes): " + file);
+            }
+            return new WorldStore(channel, mapping, width, height);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // === GETTERS ===
+
+    /**
+     * @return the tile grid backed by the file; pass it with the start to {@link MapManager#MapManager(TileSource, int, int)}
+     */
+    public TileGrid getGrid() { return grid; }
+
+    public int getStartY() { return mapping.getInt(OFFSET_START_Y); }
+
+    public int getStartX() { return mapping.getInt(OFFSET_START_X); }
+
+    // === SETTERS ===
+
+    /**
+     * Stores the player start position in the header.
+     *
+     * @param startY player start row
+     * @param startX player start column
+     */
+    public void setStart(int startY, int startX) {
+        mapping.putInt(OFFSET_START_Y, startY);
+        mapping.putInt(OFFSET_START_X, startX);
+    }
+
+    // === METHODS ===
+
+    /**
+     * Recomputes the checksum of the tiles and compares it with the header.
+     *
+     * @return true if the tiles match the stored checksum
+     */
+    public boolean verify() {
+        return checksum() == mapping.getInt(OFFSET_CHECKSUM);
+    }
+
+    /**
+     * Updates the checksum and forces all changes to the storage device.
+     */
+    public void flush() {
+        mapping.putInt(OFFSET_CHECKSUM, checksum());
+        mapping.force();
+    }
+
+    /**
+     * Flushes and closes the file channel. The grid stays usable until it is no
+     * longer referenced, but later changes are neither checksummed nor forced.
+     *
+     * @throws IOException if closing the channel fails
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private int checksum() {
+        CRC32 crc = new CRC32();
+        crc.update(grid.getCells().duplicate().clear()); // the whole slice, independent of its position
+        return (int) crc.getValue();
+    }
+}
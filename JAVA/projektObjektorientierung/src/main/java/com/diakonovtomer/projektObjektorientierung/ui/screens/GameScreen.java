@@ -14,10 +14,12 @@ import java.util.Optional;
 import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
 import javafx.scene.canvas.Canvas;
+import javafx.scene.shape.Rectangle;
 import javafx.geometry.Pos;
 
 import static javafx.scene.input.KeyCode.ESCAPE;
@@ -31,6 +33,9 @@ import static javafx.scene.input.KeyCode.ESCAPE;
  * - Handling resize events
  * - Handling pause via ESC key
  * - Saving game progress
+ * 
+ * The game is drawn on three stacked canvases (map, entities, UI) so that
+ * each layer is redrawn only when its content changes.
  */
 public class GameScreen {
     private final NavigationManager navigationManager;
@@ -69,12 +74,25 @@ public class GameScreen {
         topBox.setAlignment(Pos.CENTER);
         topBox.setPadding(new javafx.geometry.Insets(Constant.BOX_PADDING)); // отступ от края
         
-        /* ---- Canvas and Engine ---- */
+        /* ---- Canvas layers and Engine ---- */
         Canvas canvas = new Canvas(Constant.APP_SETTINGS_WIDTH, Constant.APP_SETTINGS_HEIGHT); // Задай нужный размер
-        this.engine = new GameEngine(canvas, asciiMap, positionTileY, positionTileX);
+        Canvas mapCanvas = new Canvas();    // sized by the engine: view plus scroll margin
+        Canvas entityCanvas = new Canvas();
+        mapCanvas.setMouseTransparent(true);
+        entityCanvas.setMouseTransparent(true);
+        Pane layers = new Pane(mapCanvas, entityCanvas, canvas);
+        // The map layer is larger than the view; only the view area is shown
+        Rectangle clip = new Rectangle();
+        clip.widthProperty().bind(canvas.widthProperty());
+        clip.heightProperty().bind(canvas.heightProperty());
+        layers.setClip(clip);
+        layers.prefWidthProperty().bind(canvas.widthProperty());
+        layers.prefHeightProperty().bind(canvas.heightProperty());
+        layers.setMaxSize(Pane.USE_PREF_SIZE, Pane.USE_PREF_SIZE);
+        this.engine = new GameEngine(mapCanvas, entityCanvas, canvas, asciiMap, positionTileY, positionTileX);
         this.gameLoop = new GameLoop(engine);
         this.gameLoop.startLoop();
-        root.setCenter(canvas);
+        root.setCenter(layers);
         
         /* ---- Scene ---- */
         scene = new Scene(root, Constant.APP_SETTINGS_WIDTH, Constant.APP_SETTINGS_HEIGHT);
@@ -128,6 +146,7 @@ public class GameScreen {
             /* saveLavel */
             () -> {
                 gameLoop.stop();
+                engine.flushWorld();
                 SaveGame saveGame = createSaveGame();
                 String json = new com.google.gson.Gson().toJson(saveGame);
                 ApiService.save(saveGame)
@@ -164,7 +183,7 @@ public class GameScreen {
     private SaveGame createSaveGame() {
         return new SaveGame(
             engine.getCurrentLevel(),
-            engine.getAsciiMapRepresentation(),
+            engine.getMapRepresentation(),
             engine.getHeroStats(),
             engine.getHeroPosition()
         );